@@ -0,0 +1,213 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * @description JMH benchmarks of the simulation hot paths, run with
+ * "ant bench", see build.xml. Every environment is generated from a fixed
+ * seed, so the same parameters measure the same simulations on every run.
+ *
+ * Node movement and the statistics are measured in a steady state, the
+ * calls that change the message state of the nodes (setEligibleNeighbors,
+ * broadcast, a run of ticks) get a freshly generated environment before
+ * every invocation, outside of the measured time. rangeSort() and infect()
+ * are private and measured through broadcast(), the infect model sorts its
+ * uninfected neighbors with rangeSort(). extractSimData() is measured as
+ * the SimulationResult.finish() calls it consists of.
+ * @author Brian Spain
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulationBenchmarks {
+
+    private static final long SEED = 42;
+    private static final int SIZE = 500, MAX_TIME = 20;
+
+    /**
+     * @description one environment, generated once per trial
+     */
+
+    @State(Scope.Thread)
+    public static class Environment {
+        @Param({"100", "400"})
+        public int population;
+        @Param({"75", "150"})
+        public int range;
+        @Param({"0", "11"})
+        public int transmitTime;
+
+        SimulationEnvironment environment;
+        ArrayList<Node> nodes;
+        int sender, reciever;
+
+        @Setup(Level.Trial)
+        public void generate(){
+            environment = new SimulationEnvironment(SIZE, SIZE, population, 0,
+                    range, range, transmitTime, 1, 1, false, false);
+            regenerate();
+        }
+
+        void regenerate(){
+            environment.setSeed(SEED);
+            environment.GenerateEnvironments();
+            nodes = environment.getSimEnvironment(0);
+            sender = environment.getSender(0);
+            reciever = environment.getReciever(0);
+        }
+    }
+
+    /**
+     * @description the same environment, generated again before every
+     * invocation, and a data set the simulations are added to. The data set
+     * is large (a quantile sketch per statistic and the coverage curves), so
+     * it is created once per trial instead of in the measured methods.
+     */
+
+    @State(Scope.Thread)
+    public static class FreshEnvironment extends Environment {
+        SimulationResult result = new SimulationResult();
+        dataCompiler compiler;
+
+        @Setup(Level.Trial)
+        public void compiler(){
+            compiler = new dataCompiler();
+        }
+
+        @Setup(Level.Invocation)
+        public void reset(){
+            regenerate();
+            result.clear();
+        }
+    }
+
+    /**
+     * @description a fresh environment and the message type to measure
+     */
+
+    @State(Scope.Thread)
+    public static class MessageType extends FreshEnvironment {
+        @Param({"0", "1", "2", "3"})
+        public int messageType;
+    }
+
+    /**
+     * @description the sender took its first picture, ready to broadcast
+     */
+
+    @State(Scope.Thread)
+    public static class ReadyToBroadcast extends MessageType {
+        /*
+            Runs after FreshEnvironment.reset(), superclass setups first.
+        */
+        @Setup(Level.Invocation)
+        public void picture(){
+            nodes.get(sender).setEligibleNeighbors(messageType, nodes, result);
+        }
+    }
+
+    /**
+     * @description a complete simulation of the environment and a data set
+     * it was added to
+     */
+
+    @State(Scope.Thread)
+    public static class Simulated extends Environment {
+        SimulationResult result;
+        dataCompiler compiler;
+        int[] outcomes = new int[4];
+        int[] senderNeighbors = new int[4];
+
+        /*
+            Uses the nodes generate() made. JMH runs the @Setup methods of
+            a superclass before those of its subclasses at the same level,
+            so Environment.generate() has run by now.
+        */
+        @Setup(Level.Trial)
+        public void simulate(){
+            compiler = new dataCompiler();
+            result = new SimulationResult();
+            new Simulate(nodes, MAX_TIME, sender, reciever, compiler,
+                    NullEventSink.INSTANCE, result).run();
+            for(int messageType = 0; messageType < 4; messageType++){
+                outcomes[messageType] =
+                        result.getProtocol(messageType).successGeneration;
+                senderNeighbors[messageType] =
+                        result.getProtocol(messageType).senderNeighbors;
+            }
+        }
+    }
+
+    @Benchmark
+    public void updateNode(Environment state, Blackhole blackhole){
+        for(Node node : state.nodes){
+            blackhole.consume(node.updateNode());
+        }
+    }
+
+    @Benchmark
+    public void setEligibleNeighbors(MessageType state){
+        state.nodes.get(state.sender).setEligibleNeighbors(state.messageType,
+                state.nodes, state.result);
+    }
+
+    @Benchmark
+    public void broadcast(ReadyToBroadcast state){
+        state.nodes.get(state.sender).broadcast(state.messageType,
+                state.reciever, state.nodes, NullEventSink.INSTANCE,
+                state.result);
+    }
+
+    @Benchmark
+    public void incrementTime(FreshEnvironment state){
+        Simulate simulate = new Simulate(state.nodes, MAX_TIME, state.sender,
+                state.reciever, state.compiler, NullEventSink.INSTANCE,
+                state.result);
+        for(int t = 0; t < MAX_TIME; t++){
+            state.result.tick(t);
+            simulate.incrementTime();
+        }
+    }
+
+    @Benchmark
+    public void simulate(FreshEnvironment state){
+        new Simulate(state.nodes, MAX_TIME, state.sender, state.reciever,
+                state.compiler, NullEventSink.INSTANCE, state.result).run();
+    }
+
+    @Benchmark
+    public void extractSimData(Simulated state){
+        for(int messageType = 0; messageType < 4; messageType++){
+            state.result.finish(messageType, state.outcomes[messageType],
+                    state.senderNeighbors[messageType]);
+        }
+    }
+
+    @Benchmark
+    public void addData(Simulated state){
+        state.compiler.addData(state.result);
+    }
+
+    @Benchmark
+    public void compile(Simulated state){
+        state.compiler.compile();
+    }
+}
@@ -0,0 +1,299 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @description writes traces on a background thread. Simulations record into
+ * a StreamingTraceSink, which hands full chunks of events to this writer
+ * through a bounded queue. Only the writer thread opens and writes files, so
+ * simulation threads never wait on the disk; they only wait when the queue is
+ * full (back-pressure), which keeps the memory used by traces bounded no
+ * matter how long the simulations run.
+ *
+ * A trace is written to a temporary file that is renamed to its final name
+ * once the trace is closed, so a finished file is never half written.
+ * @author Brian Spain
+ */
+
+public class AsyncTraceWriter implements Closeable {
+
+    public static final int DEFAULT_CHUNK_EVENTS = 4096;
+    public static final int DEFAULT_QUEUED_CHUNKS = 64;
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+
+    private static final Chunk SHUTDOWN = new Chunk(null, null, true);
+
+    private final BlockingQueue<Chunk> queue;
+    private final ConcurrentLinkedQueue<RecordingEventSink> pool;
+    private final int chunkEvents;
+    private final Thread thread;
+    private volatile int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+    private volatile boolean closed;
+
+    public AsyncTraceWriter(){
+        this(DEFAULT_CHUNK_EVENTS, DEFAULT_QUEUED_CHUNKS);
+    }
+
+    /**
+     * @param chunkEvents events buffered by a sink before the chunk is handed
+     * to the writer
+     * @param queuedChunks chunks that can wait for the writer before sinks
+     * block
+     */
+
+    public AsyncTraceWriter(int chunkEvents, int queuedChunks){
+        this.chunkEvents = chunkEvents;
+        this.queue = new ArrayBlockingQueue<>(queuedChunks);
+        this.pool = new ConcurrentLinkedQueue<>();
+        this.thread = new Thread(this::drain, "Trace writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * @description starts a new trace. Nothing is written until the first
+     * chunk reaches the writer thread.
+     * @param file final name of the trace file
+     * @param format format the trace is written in
+     * @param parameters simulation parameters of the trace
+     * @return sink the simulation records into, must be closed when the
+     * simulation is over
+     */
+
+    public StreamingTraceSink open(File file, TraceFormat format,
+            TraceParameters parameters){
+        return open(file, format, parameters, 0, null);
+    }
+
+    /**
+     * @description starts a new trace that is added to manifest once it has
+     * been written.
+     * @param file final name of the trace file
+     * @param format format the trace is written in
+     * @param parameters simulation parameters of the trace
+     * @param seed seed the simulation was generated from
+     * @param manifest manifest the finished trace is listed in, may be null
+     * @return sink the simulation records into, must be closed when the
+     * simulation is over
+     * @throws IllegalArgumentException if the format cannot encode a trace
+     * with these parameters, checked here so nothing is queued for it
+     */
+
+    public StreamingTraceSink open(File file, TraceFormat format,
+            TraceParameters parameters, long seed, TraceManifest manifest){
+        if(closed) throw new IllegalStateException("Trace writer is closed");
+        if(format != TraceFormat.TEXT){
+            BinaryTraceEncoder.checkParameters(parameters);
+        }
+        return new StreamingTraceSink(this, 
+                new Trace(file, format, parameters, seed, manifest,
+                        format == TraceFormat.TEXT ? 0 : keyframeInterval));
+    }
+
+    /**
+     * @description sets how often traces opened from now on ask for a
+     * keyframe. Only binary traces store keyframes, text traces never ask.
+     * @param interval ticks between keyframes, 0 for no keyframes
+     */
+
+    public void setKeyframeInterval(int interval){
+        this.keyframeInterval = interval;
+    }
+
+    public int getKeyframeInterval(){
+        return keyframeInterval;
+    }
+
+    /**
+     * @return an empty chunk, reused if one is available
+     */
+
+    RecordingEventSink chunk(){
+        RecordingEventSink chunk = pool.poll();
+        return chunk != null ? chunk : new RecordingEventSink(chunkEvents);
+    }
+
+    int getChunkEvents(){
+        return chunkEvents;
+    }
+
+    /**
+     * @description queues a chunk for the writer thread, waiting while the
+     * queue is full
+     * @param trace trace the events belong to
+     * @param events the events, owned by the writer from now on
+     * @param last true if this is the final chunk of the trace
+     */
+
+    void submit(Trace trace, RecordingEventSink events, boolean last){
+        boolean interrupted = false;
+        while(true){
+            try {
+                queue.put(new Chunk(trace, events, last));
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * @description writer thread, writes chunks until shutdown. A trace that
+     * fails, with an IOException or any RuntimeException, is aborted and its
+     * remaining chunks are discarded.
+     */
+
+    private void drain(){
+        while(true){
+            Chunk chunk;
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException ex) {
+                continue;
+            }
+            if(chunk == SHUTDOWN) return;
+            Trace trace = chunk.trace;
+            if(!trace.failed){
+                try {
+                    Object flush = JfrEvents.traceFlush();
+                    if(trace.output == null) trace.open();
+                    chunk.events.replayTo(trace.output);
+                    JfrEvents.traceFlush(flush, trace.file.getName(), 
+                            chunk.events.size(), chunk.last);
+                    if(chunk.last) trace.close();
+                } catch (IOException | RuntimeException ex) {
+                    //a failed trace is dropped, the writer keeps draining so
+                    //simulations waiting on the queue are never stuck
+                    trace.failed = true;
+                    trace.abort();
+                    Logger.getLogger(AsyncTraceWriter.class.getName()).log(
+                            Level.SEVERE, "Could not write trace " + trace.file, ex);
+                }
+            }
+            chunk.events.clear();
+            pool.offer(chunk.events);
+        }
+    }
+
+    /**
+     * @description waits until every queued chunk has been written, then
+     * stops the writer thread. Traces that were never closed are left as
+     * temporary files.
+     */
+
+    @Override
+    public void close(){
+        if(closed) return;
+        closed = true;
+        boolean interrupted = false;
+        while(true){
+            try {
+                queue.put(SHUTDOWN);
+                thread.join();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static final class Chunk {
+        final Trace trace;
+        final RecordingEventSink events;
+        final boolean last;
+
+        Chunk(Trace trace, RecordingEventSink events, boolean last){
+            this.trace = trace;
+            this.events = events;
+            this.last = last;
+        }
+    }
+
+    /**
+     * @description state of one trace file, only touched by the writer thread
+     * once the trace has been opened
+     */
+
+    static final class Trace {
+        final File file;
+        final TraceFormat format;
+        final TraceParameters parameters;
+        final long seed;
+        final TraceManifest manifest;
+        final int keyframeInterval;
+        private final int[] outcome = {-1, -1, -1, -1};
+        private File temporary;
+        private TraceOutput output;
+        private boolean failed;
+
+        Trace(File file, TraceFormat format, TraceParameters parameters,
+                long seed, TraceManifest manifest, int keyframeInterval){
+            this.file = file;
+            this.format = format;
+            this.parameters = parameters;
+            this.seed = seed;
+            this.manifest = manifest;
+            this.keyframeInterval = keyframeInterval;
+        }
+
+        /**
+         * @description called by the simulation thread before the last chunk
+         * is submitted, the queue hands the values to the writer thread
+         */
+
+        void outcome(int flood, int gossip80, int gossip60, int infect){
+            outcome[0] = flood;
+            outcome[1] = gossip80;
+            outcome[2] = gossip60;
+            outcome[3] = infect;
+        }
+
+        private void open() throws IOException{
+            File directory = file.getAbsoluteFile().getParentFile();
+            temporary = File.createTempFile(file.getName(), ".part", directory);
+            output = format.open(new BufferedOutputStream(
+                    new FileOutputStream(temporary)), parameters);
+        }
+
+        private void close() throws IOException{
+            Object checkpoint = JfrEvents.checkpoint();
+            output.close();
+            Files.move(temporary.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            if(manifest != null){
+                try {
+                    manifest.append(file.getName(), parameters, seed, outcome,
+                            file.length(), format.getDataOffset());
+                } catch (IOException ex) {
+                    //the trace itself is complete, only the listing is missing
+                    Logger.getLogger(AsyncTraceWriter.class.getName()).log(
+                            Level.SEVERE, "Could not list trace " + file, ex);
+                }
+            }
+            JfrEvents.checkpoint(checkpoint, file.getName(), file.length());
+        }
+
+        private void abort(){
+            try {
+                if(output != null) output.close();
+            } catch (IOException ex) {
+                //already failed, the original error is reported
+            }
+            if(temporary != null) temporary.delete();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @description progress of a running SimulationBatch: simulations completed
+ * per environment, simulations per second, the estimated time left and the
+ * success rate of every message type so far. The simulation threads count
+ * into atomic counters as they finish and readers compute everything from
+ * them, so neither side ever waits on a lock. The Interface polls it, and
+ * report() writes it to a file periodically for runs without a window.
+ * @author Brian Spain
+ */
+
+public class BatchProgress {
+
+    /**
+     * @description state of the batch
+     */
+
+    public enum State { WAITING, RUNNING, DONE, CANCELLED, OVER_BUDGET }
+
+    private static final String[] MESSAGE_TYPES =
+            {"flood", "gossip80", "gossip60", "infect"};
+
+    private final int environments, rounds;
+    private final AtomicIntegerArray completed;
+    private final AtomicLongArray successes;
+    private volatile State state;
+    private volatile int round;
+    private volatile long startNanos, endNanos;
+    private final SnapshotReporter reporter;
+
+    /**
+     * @param environments environments per round
+     * @param rounds rounds of the batch
+     */
+
+    public BatchProgress(int environments, int rounds){
+        this.environments = environments;
+        this.rounds = rounds;
+        this.completed = new AtomicIntegerArray(environments);
+        this.successes = new AtomicLongArray(MESSAGE_TYPES.length);
+        this.state = State.WAITING;
+        this.reporter = new SnapshotReporter(BatchProgress.class,
+                this::toString, this::writeProperties);
+    }
+
+    /**
+     * @description marks the start of the batch
+     */
+
+    void started(){
+        startNanos = System.nanoTime();
+        state = State.RUNNING;
+    }
+
+    /**
+     * @param round round the batch is running
+     */
+
+    void round(int round){
+        this.round = round;
+    }
+
+    /**
+     * @description counts one finished simulation, called by its thread
+     * @param environment index of the environment
+     * @param result result of the simulation
+     */
+
+    void completed(int environment, SimulationResult result){
+        for(int messageType = 0; messageType < MESSAGE_TYPES.length; messageType++){
+            if(result.getProtocol(messageType).succeeded){
+                successes.incrementAndGet(messageType);
+            }
+        }
+        completed.incrementAndGet(environment);
+    }
+
+    /**
+     * @param state DONE, CANCELLED or OVER_BUDGET
+     */
+
+    void finished(State state){
+        endNanos = System.nanoTime();
+        this.state = state;
+    }
+
+    public State getState(){
+        return state;
+    }
+
+    public int getEnvironments(){
+        return environments;
+    }
+
+    public int getRounds(){
+        return rounds;
+    }
+
+    /**
+     * @return round the batch is running, counted from 0
+     */
+
+    public int getRound(){
+        return round;
+    }
+
+    /**
+     * @param environment index of the environment
+     * @return simulations of environment that finished
+     */
+
+    public int getCompleted(int environment){
+        return completed.get(environment);
+    }
+
+    /**
+     * @return simulations that finished, over all environments
+     */
+
+    public long getCompleted(){
+        long sum = 0;
+        for(int i = 0; i < environments; i++){
+            sum += completed.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * @return simulations of the whole batch
+     */
+
+    public long getTotal(){
+        return (long)environments * rounds;
+    }
+
+    /**
+     * @return nanoseconds since the batch started, until it ended
+     */
+
+    public long getElapsedNanos(){
+        State current = state;
+        if(current == State.WAITING || current == State.OVER_BUDGET) return 0;
+        long end = current == State.RUNNING ? System.nanoTime() : endNanos;
+        return end - startNanos;
+    }
+
+    /**
+     * @return simulations finished per second so far, 0 before the first
+     */
+
+    public double getSimulationsPerSecond(){
+        long nanos = getElapsedNanos();
+        return nanos <= 0 ? 0 : getCompleted() * 1e9 / nanos;
+    }
+
+    /**
+     * @return estimated nanoseconds until the batch is done at the rate so
+     * far, -1 before the first simulation finished, 0 once the batch ended
+     */
+
+    public long getEtaNanos(){
+        if(state != State.RUNNING) return 0;
+        long done = getCompleted();
+        if(done == 0) return -1;
+        return (long)((getTotal() - done) * (double)getElapsedNanos() / done);
+    }
+
+    /**
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @return fraction of the finished simulations in which messageType
+     * reached the reciever, NaN before the first
+     */
+
+    public double getSuccessRate(int messageType){
+        long done = getCompleted();
+        return done == 0 ? Double.NaN :
+                successes.get(messageType) / (double)done;
+    }
+
+    /**
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @return half width of the 95% confidence interval of the success rate,
+     * NaN before the first simulation
+     */
+
+    public double getSuccessMargin(int messageType){
+        long done = getCompleted();
+        double rate = getSuccessRate(messageType);
+        return done == 0 ? Double.NaN :
+                1.96 * Math.sqrt(rate * (1 - rate) / done);
+    }
+
+    /**
+     * @return short text for a label, percent done and time left while
+     * running, the state otherwise
+     */
+
+    public String getStatus(){
+        switch(state){
+            case WAITING: return "Waiting";
+            case DONE: return "Done";
+            case CANCELLED: return "Cancelled";
+            case OVER_BUDGET: return "Exceeds heap budget";
+            default:
+                long total = getTotal();
+                long percent = total == 0 ? 0 : 100 * getCompleted() / total;
+                long eta = getEtaNanos();
+                return percent + "%" + (eta < 0 ? "" : " " + duration(eta) + " left");
+        }
+    }
+
+    private static String duration(long nanos){
+        long seconds = nanos / 1000000000L;
+        if(seconds < 60) return seconds + "s";
+        if(seconds < 3600) return seconds / 60 + "m " + seconds % 60 + "s";
+        return seconds / 3600 + "h " + seconds / 60 % 60 + "m";
+    }
+
+    /**
+     * @return the progress as one line
+     */
+
+    @Override
+    public String toString(){
+        StringBuilder line = new StringBuilder();
+        line.append(state.name().toLowerCase()).append(" round ")
+                .append(getRound() + 1).append('/').append(rounds).append(' ')
+                .append(getCompleted()).append('/').append(getTotal())
+                .append(String.format(" %.1f sims/s", getSimulationsPerSecond()));
+        long eta = getEtaNanos();
+        if(eta > 0) line.append(" eta ").append(duration(eta));
+        for(int messageType = 0; messageType < MESSAGE_TYPES.length; messageType++){
+            line.append(' ').append(MESSAGE_TYPES[messageType]).append(
+                    String.format("=%.3f", getSuccessRate(messageType)));
+        }
+        return line.toString();
+    }
+
+    /**
+     * @description writes the progress as properties, replacing file as a
+     * whole so readers never see half of it
+     * @param file destination
+     * @throws IOException if the file cannot be written
+     */
+
+    public void writeSnapshot(File file) throws IOException{
+        reporter.write(file);
+    }
+
+    private void writeProperties(Writer output) throws IOException{
+        output.write("state=" + state.name().toLowerCase() + "\n");
+        output.write("round=" + getRound() + "\n");
+        output.write("rounds=" + rounds + "\n");
+        output.write("completed=" + getCompleted() + "\n");
+        output.write("total=" + getTotal() + "\n");
+        output.write("elapsedMillis=" + getElapsedNanos() / 1000000 + "\n");
+        output.write("simsPerSecond=" + getSimulationsPerSecond() + "\n");
+        output.write("etaMillis=" + getEtaNanos() / 1000000 + "\n");
+        for(int messageType = 0; messageType < MESSAGE_TYPES.length; messageType++){
+            output.write("success." + MESSAGE_TYPES[messageType] + "=" +
+                    getSuccessRate(messageType) + "\n");
+            output.write("margin." + MESSAGE_TYPES[messageType] + "=" +
+                    getSuccessMargin(messageType) + "\n");
+        }
+        for(int i = 0; i < environments; i++){
+            output.write("completed." + i + "=" + completed.get(i) + "\n");
+        }
+    }
+
+    /**
+     * @description writes the progress every period milliseconds until
+     * stopReporting() is called
+     * @param file progress file, null logs the progress instead
+     * @param period milliseconds between snapshots
+     */
+
+    public void report(File file, long period){
+        reporter.start(file, period);
+    }
+
+    /**
+     * @description stops the reporter started by report()
+     */
+
+    public void stopReporting(){
+        reporter.stop();
+    }
+
+    /**
+     * @description writes the progress once to file or the log
+     * @param file progress file, null logs the progress instead
+     */
+
+    public void export(File file){
+        reporter.export(file);
+    }
+}
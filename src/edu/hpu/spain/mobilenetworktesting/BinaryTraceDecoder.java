@@ -0,0 +1,321 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * @description reads binary traces written by BinaryTraceEncoder and replays
+ * them into a SimulationEventSink. See BinaryTraceEncoder for the layout.
+ * Close the decoder when done, which frees the native memory of the
+ * Inflater of a deflated trace.
+ * @author Brian Spain
+ */
+
+public class BinaryTraceDecoder implements AutoCloseable {
+
+    private final ByteBuffer buffer;
+    private final TraceParameters parameters;
+    private final boolean compressed;
+    private final int blockSize, firstBlock;
+    private final int[] keyframeTicks, keyframeOffsets;
+    private final Inflater inflater;
+    private byte[] stored;
+    private ByteBuffer raw;
+
+    /**
+     * @param buffer complete trace, starting at the header
+     * @throws IOException if the header is not a supported binary trace header
+     */
+
+    public BinaryTraceDecoder(ByteBuffer buffer) throws IOException{
+        this.buffer = buffer.duplicate();
+        if(this.buffer.remaining() < BinaryTraceEncoder.HEADER_BYTES ||
+                this.buffer.getInt() != BinaryTraceEncoder.MAGIC){
+            throw new IOException("Not a binary trace");
+        }
+        int version = this.buffer.get() & 0xff;
+        if(version > BinaryTraceEncoder.VERSION){
+            throw new IOException("Unsupported binary trace version " + version);
+        }
+        compressed = (this.buffer.get() & BinaryTraceEncoder.FLAG_DEFLATE) != 0;
+        blockSize = this.buffer.getInt();
+        parameters = new TraceParameters(this.buffer.getInt(),
+                this.buffer.getInt(), this.buffer.getInt(), this.buffer.getInt(),
+                this.buffer.getInt(), this.buffer.getInt(),
+                this.buffer.getDouble());
+        firstBlock = this.buffer.position();
+        inflater = compressed ? new Inflater() : null;
+        raw = ByteBuffer.allocate(blockSize + 64);
+
+        int limit = this.buffer.limit();
+        int index = limit >= firstBlock + 8 &&
+                this.buffer.getInt(limit - 4) == BinaryTraceEncoder.INDEX_MAGIC ?
+                this.buffer.getInt(limit - 8) : -1;
+        if(version < 3 || index < firstBlock || index + 4 > limit - 8){
+            keyframeTicks = new int[0];
+            keyframeOffsets = new int[0];
+            return;
+        }
+        int keyframes = this.buffer.getInt(index);
+        if(keyframes < 0 || index + 4 + keyframes * 8L > limit - 8){
+            throw new IOException("Corrupt keyframe index");
+        }
+        keyframeTicks = new int[keyframes];
+        keyframeOffsets = new int[keyframes];
+        for(int i = 0; i < keyframes; i++){
+            keyframeTicks[i] = this.buffer.getInt(index + 4 + i*8);
+            keyframeOffsets[i] = this.buffer.getInt(index + 8 + i*8);
+        }
+    }
+
+    /**
+     * @description memory maps a binary trace file
+     * @param file binary trace
+     * @return decoder over the mapped file
+     * @throws IOException if the file cannot be mapped or is not a binary trace
+     */
+
+    public static BinaryTraceDecoder open(File file) throws IOException{
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+                FileChannel channel = input.getChannel()) {
+            return new BinaryTraceDecoder(channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public TraceParameters getParameters(){
+        return parameters;
+    }
+
+    public boolean isCompressed(){
+        return compressed;
+    }
+
+    /**
+     * @return ticks of the keyframes in the index, in increasing order. Empty
+     * for traces without keyframes.
+     */
+
+    public int[] getKeyframeTicks(){
+        return keyframeTicks.clone();
+    }
+
+    /**
+     * @description replays every record of the trace into sink
+     * @param sink receives the events
+     * @throws IOException if the trace is truncated or corrupt
+     */
+
+    public void replay(SimulationEventSink sink) throws IOException{
+        replay(firstBlock, Integer.MAX_VALUE, sink);
+    }
+
+    /**
+     * @description replays the events from the last keyframe at or before
+     * tick up to and including the tick(tick) event, so sink sees the state
+     * at the start of tick. Without a keyframe the trace is replayed from
+     * the start.
+     * @param tick tick to seek to
+     * @param sink receives the events
+     * @throws IOException if the trace is truncated or corrupt
+     */
+
+    public void seek(int tick, SimulationEventSink sink) throws IOException{
+        int offset = firstBlock;
+        for(int i = 0; i < keyframeTicks.length && keyframeTicks[i] <= tick; i++){
+            offset = keyframeOffsets[i];
+        }
+        replay(offset, tick, sink);
+    }
+
+    /**
+     * @param tick tick to seek to
+     * @return state of every node at the start of tick
+     * @throws IOException if the trace is truncated or corrupt
+     * @see #seek(int, SimulationEventSink)
+     */
+
+    public TraceState stateAt(int tick) throws IOException{
+        TraceState state = new TraceState();
+        seek(tick, state);
+        return state;
+    }
+
+    /**
+     * @description replays blocks starting at offset until the end marker or
+     * the first tick event at or after untilTick, which is still replayed
+     */
+
+    private void replay(int offset, int untilTick, SimulationEventSink sink)
+            throws IOException{
+        while(true){
+            int next = replayBlock(offset, untilTick, sink);
+            if(next < 0) return;
+            offset = next;
+        }
+    }
+
+    /**
+     * @description replays the records of the block starting at offset
+     * @param offset byte offset of the block in the trace
+     * @param untilTick the block is left at the first tick event at or
+     * after untilTick, after replaying it
+     * @param sink receives the events
+     * @return offset of the next block, or -1 at the end marker or untilTick
+     * @throws IOException if the block is truncated or corrupt
+     */
+
+    int replayBlock(int offset, int untilTick, SimulationEventSink sink)
+            throws IOException{
+        ByteBuffer records = readBlock(offset);
+        if(records == null) return -1;
+        int tick = 0, x = 0, y = 0;
+        try {
+            while(records.hasRemaining()){
+                int kind = records.get();
+                switch(kind){
+                    case BinaryTraceEncoder.HEADER:
+                        sink.header(records.getInt(), records.getInt(),
+                                records.getInt(), records.getInt());
+                        break;
+                    case BinaryTraceEncoder.TICK:
+                        tick += records.getShort() & 0xffff;
+                        sink.tick(tick);
+                        if(tick >= untilTick) return -1;
+                        break;
+                    case BinaryTraceEncoder.START: {
+                        int id = records.getInt();
+                        x += records.getShort();
+                        y += records.getShort();
+                        sink.start(id, x, y, records.getShort(),
+                                records.getShort());
+                        break;
+                    }
+                    case BinaryTraceEncoder.TURN:
+                        sink.turn(records.getInt(),
+                                records.getInt() / BinaryTraceEncoder.FIXED_POINT,
+                                records.getInt() / BinaryTraceEncoder.FIXED_POINT,
+                                records.getShort());
+                        break;
+                    case BinaryTraceEncoder.BROADCAST: {
+                        int id = records.getInt();
+                        int messageType = records.get();
+                        x += records.getShort();
+                        y += records.getShort();
+                        sink.broadcast(id, messageType, x, y);
+                        break;
+                    }
+                    case BinaryTraceEncoder.MESSAGE: {
+                        int sender = records.getInt();
+                        int target = records.getInt();
+                        int messageType = records.get();
+                        x += records.getShort();
+                        y += records.getShort();
+                        sink.message(sender, target, messageType, x, y);
+                        break;
+                    }
+                    case BinaryTraceEncoder.INFECT_MESSAGE:
+                        sink.infectMessage(records.getInt(), records.getInt(),
+                                records.getDouble(), records.getDouble(),
+                                records.getDouble());
+                        break;
+                    case BinaryTraceEncoder.FINISH:
+                        sink.finish(records.getInt(), records.getInt(),
+                                records.getInt(), records.getInt());
+                        break;
+                    case BinaryTraceEncoder.NODE_RESULT:
+                        sink.nodeResult(records.getInt(), records.get(),
+                                records.getInt(), records.getInt(),
+                                records.getInt(), records.getInt(),
+                                records.getInt(), records.getDouble());
+                        break;
+                    case BinaryTraceEncoder.KEYFRAME:
+                        sink.keyframe(records.getInt(), records.getInt());
+                        break;
+                    case BinaryTraceEncoder.NODE_STATE:
+                        sink.nodeState(records.getInt(),
+                                records.getInt() / BinaryTraceEncoder.FIXED_POINT,
+                                records.getInt() / BinaryTraceEncoder.FIXED_POINT,
+                                records.getShort(), records.getInt(),
+                                records.getInt(), records.getInt(),
+                                records.getInt());
+                        break;
+                    default:
+                        throw new IOException("Unknown record " + kind +
+                                " in block at " + offset);
+                }
+            }
+        } catch (java.nio.BufferUnderflowException ex) {
+            throw new IOException("Truncated record in block at " + offset, ex);
+        }
+        return nextBlock(offset);
+    }
+
+    /**
+     * @param offset byte offset of a block
+     * @return offset of the block after it
+     */
+
+    private int nextBlock(int offset){
+        return offset + 8 + buffer.getInt(offset + 4);
+    }
+
+    /**
+     * @param offset byte offset of a block
+     * @return the uncompressed records of the block, or null at the end marker
+     * @throws IOException if the block is truncated or cannot be inflated
+     */
+
+    private ByteBuffer readBlock(int offset) throws IOException{
+        if(offset + 4 > buffer.limit()){
+            throw new IOException("Trace ends without end marker");
+        }
+        int rawLength = buffer.getInt(offset);
+        if(rawLength == 0) return null;
+        int storedLength = buffer.getInt(offset + 4);
+        if(rawLength < 0 || storedLength < 0 ||
+                offset + 8 + storedLength > buffer.limit()){
+            throw new IOException("Truncated block at " + offset);
+        }
+        ByteBuffer block = buffer.duplicate();
+        block.position(offset + 8);
+        block.limit(offset + 8 + storedLength);
+        if(!compressed) return block.slice();
+
+        if(stored == null || stored.length < storedLength){
+            stored = new byte[storedLength];
+        }
+        if(raw.capacity() < rawLength){
+            raw = ByteBuffer.allocate(rawLength);
+        }
+        block.get(stored, 0, storedLength);
+        inflater.reset();
+        inflater.setInput(stored, 0, storedLength);
+        try {
+            int length = inflater.inflate(raw.array(), 0, rawLength);
+            if(length != rawLength){
+                throw new IOException("Short block at " + offset);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupt block at " + offset, ex);
+        }
+        raw.clear();
+        raw.limit(rawLength);
+        return raw;
+    }
+
+    /**
+     * @description frees the Inflater, the decoder cannot be used afterwards
+     */
+
+    @Override
+    public void close(){
+        if(inflater != null) inflater.end();
+    }
+}
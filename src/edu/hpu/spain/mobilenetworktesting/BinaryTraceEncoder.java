@@ -0,0 +1,370 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * @description SimulationEventSink that writes a compact binary trace.
+ *
+ * File layout (big endian):
+ * <pre>
+ * header  : magic "MNTB", u8 version, u8 flags (1 = deflated blocks),
+ *           i32 blockSize, i32 length, i32 width, i32 population,
+ *           i32 maxBuffer, i32 transmitTime, i32 simulation, f64 beta
+ * blocks  : i32 rawLength, i32 storedLength, storedLength bytes
+ * end     : i32 0 (a block with rawLength 0)
+ * index   : i32 count, count x (i32 tick, i32 offset of the keyframe block)
+ * trailer : i32 offset of the index, magic "MNTI"
+ * </pre>
+ * A block holds whole records and is decoded on its own: the tick and
+ * position deltas start from 0 again at the beginning of every block.
+ *
+ * Records are fixed width per kind (first byte):
+ * <pre>
+ * 0 header    i32 senderX, i32 senderY, i32 recieverX, i32 recieverY
+ * 1 tick      u16 tick delta
+ * 2 start     i32 id, i16 dx, i16 dy, i16 direction, i16 buffer
+ * 3 turn      i32 id, i32 x*1024, i32 y*1024, i16 direction
+ * 4 broadcast i32 id, u8 messageType, i16 dx, i16 dy
+ * 5 message   i32 sender, i32 target, u8 messageType, i16 dx, i16 dy
+ * 6 infect    i32 sender, i32 target, f64 k, f64 k2, f64 alpha
+ * 7 finish    i32 x 4 generation of success per message type, -1 failed
+ * 8 keyframe  i32 tick, i32 population
+ * 9 state     i32 id, i32 x*1024, i32 y*1024, i16 direction,
+ *             i32 x 4 generation per message type, -1 not infected
+ * 10 result   i32 id, u8 messageType, i32 generation, i32 received,
+ *             i32 children, i32 neighbors, i32 uninfectedNeighbors, f64 alpha
+ * </pre>
+ * Version 2 added the finish record, version 3 keyframes and the index,
+ * version 4 the node results.
+ * Every keyframe starts a new block and is followed by one state record per
+ * node, so a reader can start decoding at any keyframe listed in the index.
+ * dx and dy are relative to the previous integer position in the block.
+ * Turn positions are stored in fixed point with 1/1024 precision.
+ * @author Brian Spain
+ */
+
+public class BinaryTraceEncoder implements TraceOutput {
+
+    static final int MAGIC = 0x4d4e5442; //"MNTB"
+    static final int VERSION = 4;
+    static final int INDEX_MAGIC = 0x4d4e5449; //"MNTI"
+    static final int FLAG_DEFLATE = 1;
+    static final int HEADER_BYTES = 46;
+    static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+    static final double FIXED_POINT = 1024.0;
+
+    static final int HEADER = 0, TICK = 1, START = 2, TURN = 3, BROADCAST = 4,
+            MESSAGE = 5, INFECT_MESSAGE = 6, FINISH = 7, KEYFRAME = 8,
+            NODE_STATE = 9, NODE_RESULT = 10;
+
+    private final DataOutputStream out;
+    private final Deflater deflater;
+    private final int blockSize;
+    private byte[] block, stored;
+    private int position;
+    private int lastTick, lastX, lastY;
+    private int[] keyframeTicks, keyframeOffsets;
+    private int keyframes;
+    private IOException error;
+
+    /**
+     * @param out where the trace is written, closed by close()
+     * @param parameters simulation parameters stored in the header
+     * @param compress deflate every block
+     * @throws IOException if the header cannot be written
+     */
+
+    public BinaryTraceEncoder(OutputStream out, TraceParameters parameters,
+            boolean compress) throws IOException{
+        this(out, parameters, compress, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param out where the trace is written, closed by close()
+     * @param parameters simulation parameters stored in the header
+     * @param compress deflate every block
+     * @param blockSize bytes of records per block
+     * @throws IOException if the header cannot be written
+     */
+
+    public BinaryTraceEncoder(OutputStream out, TraceParameters parameters,
+            boolean compress, int blockSize) throws IOException{
+        checkParameters(parameters);
+        this.out = new DataOutputStream(out);
+        this.blockSize = Math.max(blockSize, 64);
+        this.block = new byte[this.blockSize + 64];
+        this.deflater = compress ? new Deflater() : null;
+        this.keyframeTicks = new int[16];
+        this.keyframeOffsets = new int[16];
+
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeByte(compress ? FLAG_DEFLATE : 0);
+        this.out.writeInt(this.blockSize);
+        this.out.writeInt(parameters.getLength());
+        this.out.writeInt(parameters.getWidth());
+        this.out.writeInt(parameters.getPopulation());
+        this.out.writeInt(parameters.getMaxBuffer());
+        this.out.writeInt(parameters.getTransmitTime());
+        this.out.writeInt(parameters.getSimulation());
+        this.out.writeDouble(parameters.getBeta());
+    }
+
+    /**
+     * @description checks that a trace with these parameters can be encoded
+     * @param parameters simulation parameters of the trace
+     * @throws IllegalArgumentException if the domain does not fit the 16 bit
+     * position deltas
+     */
+
+    static void checkParameters(TraceParameters parameters){
+        if(parameters.getLength() > Short.MAX_VALUE ||
+                parameters.getWidth() > Short.MAX_VALUE){
+            throw new IllegalArgumentException(
+                    "Domain too large for 16 bit position deltas");
+        }
+    }
+
+    /**
+     * @return number of bytes written to the underlying stream so far
+     */
+
+    public int bytesWritten(){
+        return out.size();
+    }
+
+    /**
+     * @description writes the buffered records as one block. The next record
+     * starts a new block, so its deltas start from 0.
+     */
+
+    public void flushBlock(){
+        if(position == 0 || error != null) return;
+        try {
+            out.writeInt(position);
+            if(deflater == null){
+                out.writeInt(position);
+                out.write(block, 0, position);
+            }
+            else{
+                if(stored == null || stored.length < block.length + 64){
+                    stored = new byte[block.length + 64];
+                }
+                deflater.reset();
+                deflater.setInput(block, 0, position);
+                deflater.finish();
+                int length = 0;
+                while(!deflater.finished()){
+                    if(length == stored.length){
+                        stored = Arrays.copyOf(stored, stored.length * 2);
+                    }
+                    length += deflater.deflate(stored, length, stored.length - length);
+                }
+                out.writeInt(length);
+                out.write(stored, 0, length);
+            }
+        } catch (IOException ex) {
+            error = ex;
+        }
+        position = 0;
+        lastTick = 0;
+        lastX = 0;
+        lastY = 0;
+    }
+
+    private void begin(int kind){
+        if(position >= blockSize) flushBlock();
+        block[position++] = (byte)kind;
+    }
+
+    private void putByte(int value){
+        block[position++] = (byte)value;
+    }
+
+    private void putShort(int value){
+        block[position++] = (byte)(value >>> 8);
+        block[position++] = (byte)value;
+    }
+
+    private void putInt(int value){
+        block[position++] = (byte)(value >>> 24);
+        block[position++] = (byte)(value >>> 16);
+        block[position++] = (byte)(value >>> 8);
+        block[position++] = (byte)value;
+    }
+
+    private void putDouble(double value){
+        long bits = Double.doubleToLongBits(value);
+        putInt((int)(bits >>> 32));
+        putInt((int)bits);
+    }
+
+    private void putPosition(int x, int y){
+        putShort(x - lastX);
+        putShort(y - lastY);
+        lastX = x;
+        lastY = y;
+    }
+
+    @Override
+    public void header(int senderX, int senderY, int recieverX, int recieverY) {
+        begin(HEADER);
+        putInt(senderX);
+        putInt(senderY);
+        putInt(recieverX);
+        putInt(recieverY);
+    }
+
+    @Override
+    public void tick(int t) {
+        while(true){
+            begin(TICK); //may start a new block, which resets lastTick
+            int delta = Math.min(t - lastTick, 0xffff);
+            putShort(delta);
+            lastTick += delta;
+            if(lastTick == t) return;
+        }
+    }
+
+    /**
+     * @description the simulation decides when to ask for keyframes, an
+     * encoder replays the keyframes it is given
+     */
+
+    @Override
+    public boolean keyframeDue(int t) {
+        return false;
+    }
+
+    @Override
+    public void keyframe(int t, int population) {
+        flushBlock();
+        if(keyframes == keyframeTicks.length){
+            keyframeTicks = Arrays.copyOf(keyframeTicks, keyframes * 2);
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+        }
+        keyframeTicks[keyframes] = t;
+        keyframeOffsets[keyframes++] = out.size();
+        begin(KEYFRAME);
+        putInt(t);
+        putInt(population);
+    }
+
+    @Override
+    public void nodeState(int id, double x, double y, int direction,
+            int flood, int gossip80, int gossip60, int infect) {
+        begin(NODE_STATE);
+        putInt(id);
+        putInt((int)Math.round(x * FIXED_POINT));
+        putInt((int)Math.round(y * FIXED_POINT));
+        putShort(direction);
+        putInt(flood);
+        putInt(gossip80);
+        putInt(gossip60);
+        putInt(infect);
+    }
+
+    @Override
+    public void start(int id, int x, int y, int direction, int buffer) {
+        begin(START);
+        putInt(id);
+        putPosition(x, y);
+        putShort(direction);
+        putShort(buffer);
+    }
+
+    @Override
+    public void turn(int id, double x, double y, int direction) {
+        begin(TURN);
+        putInt(id);
+        putInt((int)Math.round(x * FIXED_POINT));
+        putInt((int)Math.round(y * FIXED_POINT));
+        putShort(direction);
+    }
+
+    @Override
+    public void broadcast(int id, int messageType, int x, int y) {
+        begin(BROADCAST);
+        putInt(id);
+        putByte(messageType);
+        putPosition(x, y);
+    }
+
+    @Override
+    public void message(int sender, int target, int messageType, int x, int y) {
+        begin(MESSAGE);
+        putInt(sender);
+        putInt(target);
+        putByte(messageType);
+        putPosition(x, y);
+    }
+
+    @Override
+    public void infectMessage(int sender, int target, double k, double k2,
+            double alpha) {
+        begin(INFECT_MESSAGE);
+        putInt(sender);
+        putInt(target);
+        putDouble(k);
+        putDouble(k2);
+        putDouble(alpha);
+    }
+
+    @Override
+    public void nodeResult(int id, int messageType, int generation,
+            int received, int children, int neighbors, int uninfectedNeighbors,
+            double alpha) {
+        begin(NODE_RESULT);
+        putInt(id);
+        putByte(messageType);
+        putInt(generation);
+        putInt(received);
+        putInt(children);
+        putInt(neighbors);
+        putInt(uninfectedNeighbors);
+        putDouble(alpha);
+    }
+
+    @Override
+    public void finish(int flood, int gossip80, int gossip60, int infect) {
+        begin(FINISH);
+        putInt(flood);
+        putInt(gossip80);
+        putInt(gossip60);
+        putInt(infect);
+    }
+
+    /**
+     * @description writes the last block, the end marker and the keyframe
+     * index, then closes the stream.
+     * @throws IOException the first error hit while writing, or the error
+     * from closing the stream
+     */
+
+    @Override
+    public void close() throws IOException {
+        flushBlock();
+        try {
+            if(error == null){
+                out.writeInt(0);
+                int index = out.size();
+                out.writeInt(keyframes);
+                for(int i = 0; i < keyframes; i++){
+                    out.writeInt(keyframeTicks[i]);
+                    out.writeInt(keyframeOffsets[i]);
+                }
+                out.writeInt(index);
+                out.writeInt(INDEX_MAGIC);
+            }
+        } finally {
+            out.close();
+            if(deflater != null) deflater.end();
+        }
+        if(error != null) throw error;
+    }
+}
@@ -0,0 +1,150 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.Arrays;
+
+/**
+ * @description coverage of one message type over time, aggregated over many
+ * simulations. The ticks are grouped into buckets of a fixed number of
+ * ticks, every bucket keeps the running mean of the infected nodes at its
+ * end and of the broadcasts within it, and a QuantileSketch of the infected
+ * nodes, so the memory is fixed per bucket whatever the number of
+ * simulations. Buckets are added as longer simulations come in.
+ * @author Brian Spain
+ */
+
+public class CoverageCurve {
+
+    private static final int COVERAGE = 0, BROADCASTS = 1;
+
+    private final int interval;
+    private RunningStatistics[] statistics;
+    private QuantileSketch[] coverage;
+    private final double[] values;
+
+    public CoverageCurve(){
+        this(1);
+    }
+
+    /**
+     * @param interval ticks per bucket, 1 keeps every tick
+     */
+
+    public CoverageCurve(int interval){
+        this.interval = Math.max(1, interval);
+        this.statistics = new RunningStatistics[0];
+        this.coverage = new QuantileSketch[0];
+        this.values = new double[2];
+    }
+
+    /**
+     * @description adds the curve of one simulation
+     * @param protocol counters of the message type
+     * @param ticks number of ticks the simulation ran
+     */
+
+    public void add(SimulationResult.Protocol protocol, int ticks){
+        ensureBuckets((ticks + interval - 1) / interval);
+        int infected = 0;
+        for(int bucket = 0; bucket * interval < ticks; bucket++){
+            int broadcasts = 0;
+            int end = Math.min(ticks, (bucket + 1) * interval);
+            for(int t = bucket * interval; t < end; t++){
+                infected += protocol.getInfected(t);
+                broadcasts += protocol.getBroadcasts(t);
+            }
+            values[COVERAGE] = infected;
+            values[BROADCASTS] = broadcasts;
+            statistics[bucket].add(values);
+            coverage[bucket].add(infected);
+        }
+    }
+
+    /**
+     * @description adds every curve of other, as if they had been added here
+     * @param other curve with the same interval, not modified
+     */
+
+    public void merge(CoverageCurve other){
+        if(other.interval != interval){
+            throw new IllegalArgumentException("Curves differ in interval");
+        }
+        ensureBuckets(other.statistics.length);
+        for(int bucket = 0; bucket < other.statistics.length; bucket++){
+            statistics[bucket].merge(other.statistics[bucket]);
+            coverage[bucket].merge(other.coverage[bucket]);
+        }
+    }
+
+    private void ensureBuckets(int buckets){
+        if(buckets <= statistics.length) return;
+        int old = statistics.length;
+        statistics = Arrays.copyOf(statistics, buckets);
+        coverage = Arrays.copyOf(coverage, buckets);
+        for(int bucket = old; bucket < buckets; bucket++){
+            statistics[bucket] = new RunningStatistics(values.length);
+            coverage[bucket] = new QuantileSketch(QuantileSketch.DEFAULT_ACCURACY,
+                    0.5, QuantileSketch.DEFAULT_LARGEST);
+        }
+    }
+
+    public int getInterval(){
+        return interval;
+    }
+
+    /**
+     * @return number of buckets, bucket b covers ticks b*interval up to
+     * (b+1)*interval
+     */
+
+    public int getBuckets(){
+        return statistics.length;
+    }
+
+    /**
+     * @param bucket index of the bucket
+     * @return number of simulations that ran into the bucket
+     */
+
+    public long getCount(int bucket){
+        return statistics[bucket].getCount();
+    }
+
+    /**
+     * @param bucket index of the bucket
+     * @return mean infected nodes at the end of the bucket
+     */
+
+    public double getMeanCoverage(int bucket){
+        return statistics[bucket].getMean(COVERAGE);
+    }
+
+    /**
+     * @param bucket index of the bucket
+     * @return standard deviation of the infected nodes at the end of the
+     * bucket
+     */
+
+    public double getCoverageDeviation(int bucket){
+        return statistics[bucket].getStandardDeviation(COVERAGE);
+    }
+
+    /**
+     * @param bucket index of the bucket
+     * @param quantile between 0 and 1
+     * @return quantile of the infected nodes at the end of the bucket
+     */
+
+    public double getCoverageQuantile(int bucket, double quantile){
+        return coverage[bucket].getQuantile(quantile);
+    }
+
+    /**
+     * @param bucket index of the bucket
+     * @return mean broadcasts within the bucket
+     */
+
+    public double getMeanBroadcasts(int bucket){
+        return statistics[bucket].getMean(BROADCASTS);
+    }
+}
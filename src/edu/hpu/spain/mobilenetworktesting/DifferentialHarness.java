@@ -0,0 +1,417 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @description runs the reference engine and an alternative engine on the
+ * same seeded environments and compares every simulation. Both engines get
+ * their own copy of the environment, which generates the same nodes, sender
+ * and reciever for every round.
+ *
+ * EXACT requires the SimulationResult of every simulation to be equal and,
+ * unless turned off, the same events in the same order with the same bits.
+ * It is the check for optimizations that only make the engine faster.
+ * STATISTICAL is for engines that are allowed to take different random
+ * paths: the success rate and the mean of the infected nodes and messages
+ * of every message type must not differ by more than a z score (default
+ * 3.29, a false alarm in a thousand per metric).
+ *
+ * Usage: DifferentialHarness [-statistical] [-z score] [-rounds n]
+ * [-no-events] [-engine class]... [scenario...] compares every engine
+ * (default: the reference with itself, which checks the engine is
+ * deterministic) on the ScalingBenchmark scenarios selected by prefix, up
+ * to 1000 nodes unless named. The exit status is 1 if any engine fails.
+ * @author Brian Spain
+ */
+
+public class DifferentialHarness {
+
+    public enum Mode { EXACT, STATISTICAL }
+
+    public static final double DEFAULT_Z = 3.29;
+    public static final int DEFAULT_ROUNDS = 20;
+
+    private static final int MAX_MISMATCHES = 20;
+    private static final String[] MESSAGE_TYPES =
+            {"flood", "gossip80", "gossip60", "infect"};
+    private static final String[] METRICS = {"success", "infected", "messages"};
+
+    /**
+     * @description one simulation the engines disagree on
+     */
+
+    public static final class Mismatch {
+        private final int round, environment, population;
+        private final long seed;
+        private final String difference;
+
+        Mismatch(int round, int environment, long seed, int population,
+                String difference){
+            this.round = round;
+            this.environment = environment;
+            this.seed = seed;
+            this.population = population;
+            this.difference = difference;
+        }
+
+        public int getRound(){
+            return round;
+        }
+
+        public int getEnvironment(){
+            return environment;
+        }
+
+        public long getSeed(){
+            return seed;
+        }
+
+        public String getDifference(){
+            return difference;
+        }
+
+        @Override
+        public String toString(){
+            return "round " + round + " environment " + environment + " seed " +
+                    seed + " population " + population + ": " + difference;
+        }
+    }
+
+    /**
+     * @description outcome of one comparison
+     */
+
+    public static final class Report {
+        private final Mode mode;
+        private final double z;
+        private final ArrayList<Mismatch> kept = new ArrayList<>();
+        private final RunningStatistics[] reference = statistics(),
+                candidate = statistics();
+        private long simulations, mismatches, referenceNanos, candidateNanos;
+
+        Report(Mode mode, double z){
+            this.mode = mode;
+            this.z = z;
+        }
+
+        private static RunningStatistics[] statistics(){
+            RunningStatistics[] statistics =
+                    new RunningStatistics[MESSAGE_TYPES.length];
+            for(int i = 0; i < statistics.length; i++){
+                statistics[i] = new RunningStatistics(METRICS.length);
+            }
+            return statistics;
+        }
+
+        private static void add(RunningStatistics[] statistics,
+                SimulationResult result){
+            for(int messageType = 0; messageType < statistics.length; messageType++){
+                SimulationResult.Protocol protocol =
+                        result.getProtocol(messageType);
+                statistics[messageType].add(new double[]{
+                    protocol.succeeded ? 1 : 0, protocol.infected,
+                    protocol.messages});
+            }
+        }
+
+        public Mode getMode(){
+            return mode;
+        }
+
+        public long getSimulations(){
+            return simulations;
+        }
+
+        /**
+         * @return simulations whose results or events differ
+         */
+
+        public long getMismatches(){
+            return mismatches;
+        }
+
+        /**
+         * @return the first mismatches found
+         */
+
+        public List<Mismatch> getKeptMismatches(){
+            return Collections.unmodifiableList(kept);
+        }
+
+        /**
+         * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+         * @param metric 0 success rate, 1 infected nodes, 2 messages
+         * @return z score of the difference between the candidate and the
+         * reference mean, 0 if both are equal
+         */
+
+        public double getZ(int messageType, int metric){
+            RunningStatistics a = reference[messageType],
+                    b = candidate[messageType];
+            double difference = b.getMean(metric) - a.getMean(metric);
+            if(difference == 0 || a.getCount() == 0) return 0;
+            double error = Math.sqrt(a.getVariance(metric) / a.getCount() +
+                    b.getVariance(metric) / b.getCount());
+            return error == 0 ? Math.copySign(Double.POSITIVE_INFINITY,
+                    difference) : difference / error;
+        }
+
+        /**
+         * @return time the candidate took relative to the reference, below 1
+         * is faster
+         */
+
+        public double getTimeRatio(){
+            return referenceNanos == 0 ? Double.NaN :
+                    (double)candidateNanos / referenceNanos;
+        }
+
+        /**
+         * @return true if every simulation matched (EXACT) or no metric
+         * differs by more than the z score (STATISTICAL)
+         */
+
+        public boolean passed(){
+            if(mode == Mode.EXACT) return mismatches == 0;
+            for(int messageType = 0; messageType < MESSAGE_TYPES.length; messageType++){
+                for(int metric = 0; metric < METRICS.length; metric++){
+                    if(Math.abs(getZ(messageType, metric)) > z) return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString(){
+            StringBuilder text = new StringBuilder();
+            text.append(passed() ? "passed" : "FAILED").append(' ')
+                    .append(mode.name().toLowerCase()).append(", ")
+                    .append(simulations).append(" simulations, ")
+                    .append(mismatches).append(" mismatches, time ratio ")
+                    .append(String.format(Locale.ROOT, "%.3f", getTimeRatio()));
+            for(int messageType = 0; messageType < MESSAGE_TYPES.length; messageType++){
+                text.append(String.format(Locale.ROOT, "%n  %-9s",
+                        MESSAGE_TYPES[messageType]));
+                for(int metric = 0; metric < METRICS.length; metric++){
+                    text.append(String.format(Locale.ROOT,
+                            " %s %.4g/%.4g z=%.2f", METRICS[metric],
+                            reference[messageType].getMean(metric),
+                            candidate[messageType].getMean(metric),
+                            getZ(messageType, metric)));
+                }
+            }
+            for(Mismatch mismatch : kept){
+                text.append(System.lineSeparator()).append("  ").append(mismatch);
+            }
+            return text.toString();
+        }
+    }
+
+    private final SimulationEnvironment environment;
+    private final int maxTime;
+    private boolean compareEvents;
+
+    /**
+     * @param environment parameters and seed of the environments, it is
+     * copied and not changed
+     * @param maxTime maximum runtime of the simulations
+     */
+
+    public DifferentialHarness(SimulationEnvironment environment, int maxTime){
+        this.environment = environment;
+        this.maxTime = maxTime;
+        this.compareEvents = true;
+    }
+
+    /**
+     * @param compareEvents false compares only the results in EXACT mode,
+     * which saves recording the events of both engines
+     */
+
+    public void setCompareEvents(boolean compareEvents){
+        this.compareEvents = compareEvents;
+    }
+
+    /**
+     * @description runs rounds rounds of every environment on the reference
+     * engine and on candidate, one simulation after the other
+     * @param candidate engine to check
+     * @param rounds rounds to compare
+     * @param mode EXACT or STATISTICAL
+     * @param z largest z score STATISTICAL accepts
+     * @return the comparison
+     */
+
+    public Report compare(SimulationEngine candidate, int rounds, Mode mode,
+            double z){
+        Report report = new Report(mode, z);
+        SimulationEnvironment reference = environment.copy(),
+                alternative = environment.copy();
+        boolean events = compareEvents && mode == Mode.EXACT;
+        RecordingEventSink referenceEvents = new RecordingEventSink(),
+                candidateEvents = new RecordingEventSink();
+        dataCompiler referenceData = new dataCompiler(Math.max(1, maxTime)),
+                candidateData = new dataCompiler(Math.max(1, maxTime));
+        for(int round = 0; round < rounds; round++){
+            reference.GenerateEnvironments();
+            alternative.GenerateEnvironments();
+            for(int i = 0; i < reference.getSimEnvironments().size(); i++){
+                referenceEvents.clear();
+                candidateEvents.clear();
+                SimulationResult referenceResult = new SimulationResult(),
+                        candidateResult = new SimulationResult();
+                long start = System.nanoTime();
+                SimulationEngine.REFERENCE.simulation(
+                        reference.getSimEnvironment(i), maxTime,
+                        reference.getSender(i), reference.getReciever(i),
+                        referenceData, events ? referenceEvents :
+                                NullEventSink.INSTANCE, referenceResult).run();
+                long middle = System.nanoTime();
+                candidate.simulation(alternative.getSimEnvironment(i), maxTime,
+                        alternative.getSender(i), alternative.getReciever(i),
+                        candidateData, events ? candidateEvents :
+                                NullEventSink.INSTANCE, candidateResult).run();
+                report.candidateNanos += System.nanoTime() - middle;
+                report.referenceNanos += middle - start;
+                ++report.simulations;
+                Report.add(report.reference, referenceResult);
+                Report.add(report.candidate, candidateResult);
+                if(mode != Mode.EXACT) continue;
+                String difference = difference(referenceResult, candidateResult);
+                if(difference == null && events){
+                    int event = referenceEvents.firstDifference(candidateEvents);
+                    if(event >= 0){
+                        difference = "event " + event + ": " +
+                                referenceEvents.describe(event) + " / " +
+                                candidateEvents.describe(event);
+                    }
+                }
+                if(difference == null) continue;
+                ++report.mismatches;
+                if(report.kept.size() < MAX_MISMATCHES){
+                    report.kept.add(new Mismatch(round, i,
+                            reference.getEnvironmentSeed(i),
+                            reference.getPopulation(i), difference));
+                }
+            }
+        }
+        return report;
+    }
+
+    /**
+     * @param reference result of the reference engine
+     * @param candidate result of the candidate engine
+     * @return the first field that differs, null if the results are equal
+     */
+
+    static String difference(SimulationResult reference,
+            SimulationResult candidate){
+        if(reference.getTicks() != candidate.getTicks()){
+            return "ticks " + reference.getTicks() + " / " + candidate.getTicks();
+        }
+        for(int messageType = 0; messageType < MESSAGE_TYPES.length; messageType++){
+            SimulationResult.Protocol a = reference.getProtocol(messageType),
+                    b = candidate.getProtocol(messageType);
+            long[][] fields = {
+                {a.successGeneration, b.successGeneration},
+                {a.senderNeighbors, b.senderNeighbors},
+                {a.infected, b.infected},
+                {a.infectedAtSuccess, b.infectedAtSuccess},
+                {a.highestGeneration, b.highestGeneration},
+                {a.activeBefore, b.activeBefore},
+                {a.activeAfter, b.activeAfter},
+                {a.uninfectedActive, b.uninfectedActive},
+                {a.neighbors, b.neighbors},
+                {a.uninfectedNeighbors, b.uninfectedNeighbors},
+                {a.messages, b.messages},
+                {a.alphaBefore, b.alphaBefore},
+                {a.alphaAfter, b.alphaAfter},
+                {a.uninfectedAlpha, b.uninfectedAlpha},
+                {a.parents, b.parents},
+                {a.mostChildren, b.mostChildren},
+                {a.fewestChildren, b.fewestChildren}};
+            String[] names = {"successGeneration", "senderNeighbors",
+                "infected", "infectedAtSuccess", "highestGeneration",
+                "activeBefore", "activeAfter", "uninfectedActive", "neighbors",
+                "uninfectedNeighbors", "messages", "alphaBefore", "alphaAfter",
+                "uninfectedAlpha", "parents", "mostChildren", "fewestChildren"};
+            for(int f = 0; f < fields.length; f++){
+                if(fields[f][0] != fields[f][1]){
+                    return MESSAGE_TYPES[messageType] + " " + names[f] + " " +
+                            fields[f][0] + " / " + fields[f][1];
+                }
+            }
+            for(int t = 0; t < reference.getTicks(); t++){
+                if(a.getInfected(t) != b.getInfected(t) ||
+                        a.getBroadcasts(t) != b.getBroadcasts(t)){
+                    return MESSAGE_TYPES[messageType] + " tick " + t +
+                            " infected " + a.getInfected(t) + " / " +
+                            b.getInfected(t) + " broadcasts " +
+                            a.getBroadcasts(t) + " / " + b.getBroadcasts(t);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param scenario a ScalingBenchmark scenario
+     * @return the environments of scenario, with the seed of the benchmark
+     */
+
+    static SimulationEnvironment environment(ScalingBenchmark.Scenario scenario){
+        SimulationEnvironment environment = new SimulationEnvironment(
+                scenario.size, scenario.size, scenario.population, 0,
+                scenario.range, scenario.range, scenario.transmitTime,
+                scenario.maxBuffer, scenario.threads, false, false);
+        environment.setSeed(ScalingBenchmark.SEED);
+        return environment;
+    }
+
+    public static void main(String[] args){
+        Mode mode = Mode.EXACT;
+        double z = DEFAULT_Z;
+        int rounds = DEFAULT_ROUNDS;
+        boolean events = true;
+        ArrayList<String> engines = new ArrayList<>();
+        ArrayList<String> selected = new ArrayList<>();
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "-statistical": mode = Mode.STATISTICAL;
+                break;
+                case "-z": z = Double.parseDouble(args[++i]);
+                break;
+                case "-rounds": rounds = Integer.parseInt(args[++i]);
+                break;
+                case "-no-events": events = false;
+                break;
+                case "-engine": engines.add(args[++i]);
+                break;
+                default: selected.add(args[i]);
+            }
+        }
+        if(engines.isEmpty()) engines.add("reference");
+        int failures = 0;
+        for(String name : engines){
+            SimulationEngine engine = SimulationEngine.forName(name);
+            for(ScalingBenchmark.Scenario scenario : ScalingBenchmark.scenarios()){
+                if(!ScalingBenchmark.isSelected(scenario, selected)) continue;
+                if(selected.isEmpty() && scenario.population > 1000) continue;
+                DifferentialHarness harness = new DifferentialHarness(
+                        environment(scenario), ScalingBenchmark.MAX_TIME);
+                harness.setCompareEvents(events);
+                Report report = harness.compare(engine, rounds, mode, z);
+                System.out.println(name + " " + scenario.name + ": " + report);
+                if(!report.passed()) ++failures;
+            }
+        }
+        if(failures > 0){
+            System.out.println(failures + " comparisons failed");
+            System.exit(1);
+        }
+    }
+}
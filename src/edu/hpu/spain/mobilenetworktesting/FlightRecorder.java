@@ -0,0 +1,271 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+/**
+ * @description SimulationEventSink that keeps only the last ticks of a
+ * simulation and writes them out when the outcome is interesting. Events are
+ * recorded into two RecordingEventSinks: every window ticks the simulation
+ * sends a keyframe, the older segment is dropped and the recorder continues
+ * in it. At any time the recorder holds between window and 2*window ticks,
+ * starting with a keyframe, so the state can be rebuilt from the first
+ * event kept (see TraceState).
+ *
+ * Simulate sends a recorder neither the start locations nor the node
+ * results, the two passes over every node a recorded simulation makes.
+ * When the simulation finishes the Trigger is asked whether to keep the
+ * recording, if it fires the header and both segments are written as a
+ * trace shard through a ShardedTraceOutput, followed by a closing keyframe
+ * with the final position and generations of every node, rebuilt from the
+ * segments. Otherwise nothing is written and the arrays are reused by the
+ * next simulation, so a recorder allocates nothing once it has grown to the
+ * size of a window.
+ *
+ * One recorder is used by one simulation at a time, call begin() before
+ * constructing each Simulate.
+ * @author Brian Spain
+ */
+
+public class FlightRecorder implements SimulationEventSink {
+
+    public static final int DEFAULT_WINDOW = 100;
+
+    private final ShardedTraceOutput output;
+    private final Trigger trigger;
+    private final int window;
+    private RecordingEventSink current, previous;
+    private TraceParameters parameters;
+    private long seed, started;
+    private final int[] header, outcome;
+    private int dumps;
+
+    /**
+     * @param output where fired recordings are written, binary formats keep
+     * the keyframes and node results
+     * @param trigger decides which simulations are written
+     */
+
+    public FlightRecorder(ShardedTraceOutput output, Trigger trigger){
+        this(output, trigger, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param output where fired recordings are written
+     * @param trigger decides which simulations are written
+     * @param window ticks per segment
+     */
+
+    public FlightRecorder(ShardedTraceOutput output, Trigger trigger,
+            int window){
+        this.output = output;
+        this.trigger = trigger;
+        this.window = Math.max(1, window);
+        this.current = new RecordingEventSink();
+        this.previous = new RecordingEventSink();
+        this.header = new int[4];
+        this.outcome = new int[4];
+    }
+
+    /**
+     * @description starts recording a new simulation, anything kept from the
+     * last one is dropped
+     * @param parameters parameters of the simulation, name the shard if the
+     * recording is written
+     * @param seed seed the environment was generated from
+     */
+
+    public void begin(TraceParameters parameters, long seed){
+        this.parameters = parameters;
+        this.seed = seed;
+        this.started = System.nanoTime();
+        current.clear();
+        previous.clear();
+    }
+
+    /**
+     * @return number of recordings written so far
+     */
+
+    public int getDumps(){
+        return dumps;
+    }
+
+    /**
+     * @description writes the kept events with the outcome to the output
+     */
+
+    private void dump(int flood, int gossip80, int gossip60, int infect){
+        StreamingTraceSink sink = output.open(parameters, seed);
+        sink.header(header[0], header[1], header[2], header[3]);
+        previous.replayTo(sink);
+        current.replayTo(sink);
+        closingKeyframe(sink);
+        sink.finish(flood, gossip80, gossip60, infect);
+        sink.close();
+        ++dumps;
+    }
+
+    /**
+     * @description rebuilds the state of every node at the end of the
+     * simulation from the kept segments, which start with a keyframe, and
+     * sends it as a keyframe after the last tick
+     */
+
+    private void closingKeyframe(SimulationEventSink sink){
+        TraceState state = new TraceState();
+        previous.replayTo(state);
+        current.replayTo(state);
+        //completes the movement of the last tick
+        state.finish(-1, -1, -1, -1);
+        sink.keyframe(state.getTick() + 1, state.getPopulation());
+        for(int id = 0; id < state.getPopulation(); id++){
+            sink.nodeState(id, state.getx(id), state.gety(id),
+                    state.getDirection(id), state.getGeneration(0, id),
+                    state.getGeneration(1, id), state.getGeneration(2, id),
+                    state.getGeneration(3, id));
+        }
+    }
+
+    @Override
+    public void header(int senderX, int senderY, int recieverX, int recieverY) {
+        header[0] = senderX;
+        header[1] = senderY;
+        header[2] = recieverX;
+        header[3] = recieverY;
+    }
+
+    @Override
+    public void tick(int t) {
+        current.tick(t);
+    }
+
+    @Override
+    public boolean keyframeDue(int t) {
+        return t % window == 0;
+    }
+
+    /**
+     * @description starts a new segment, the older one is dropped
+     */
+
+    @Override
+    public void keyframe(int t, int population) {
+        RecordingEventSink dropped = previous;
+        previous = current;
+        current = dropped;
+        current.clear();
+        current.keyframe(t, population);
+    }
+
+    @Override
+    public void nodeState(int id, double x, double y, int direction,
+            int flood, int gossip80, int gossip60, int infect) {
+        current.nodeState(id, x, y, direction, flood, gossip80, gossip60, infect);
+    }
+
+    @Override
+    public void start(int id, int x, int y, int direction, int buffer) {
+        current.start(id, x, y, direction, buffer);
+    }
+
+    @Override
+    public void turn(int id, double x, double y, int direction) {
+        current.turn(id, x, y, direction);
+    }
+
+    @Override
+    public void broadcast(int id, int messageType, int x, int y) {
+        current.broadcast(id, messageType, x, y);
+    }
+
+    @Override
+    public void message(int sender, int target, int messageType, int x, int y) {
+        current.message(sender, target, messageType, x, y);
+    }
+
+    @Override
+    public void infectMessage(int sender, int target, double k, double k2,
+            double alpha) {
+        current.infectMessage(sender, target, k, k2, alpha);
+    }
+
+    @Override
+    public void nodeResult(int id, int messageType, int generation,
+            int received, int children, int neighbors, int uninfectedNeighbors,
+            double alpha) {
+        current.nodeResult(id, messageType, generation, received, children,
+                neighbors, uninfectedNeighbors, alpha);
+    }
+
+    /**
+     * @description asks the trigger and writes the recording if it fires
+     */
+
+    @Override
+    public void finish(int flood, int gossip80, int gossip60, int infect) {
+        long nanos = System.nanoTime() - started;
+        outcome[0] = flood;
+        outcome[1] = gossip80;
+        outcome[2] = gossip60;
+        outcome[3] = infect;
+        if(trigger.fire(outcome, nanos)){
+            dump(flood, gossip80, gossip60, infect);
+        }
+        current.clear();
+        previous.clear();
+    }
+
+    /**
+     * @description decides whether a finished simulation is written
+     */
+
+    public interface Trigger {
+
+        /**
+         * @param outcome generation of success per message type (flood,
+         * gossip80, gossip60, infect), -1 for failure
+         * @param nanos run time of the simulation
+         * @return true to write the recording
+         */
+
+        boolean fire(int[] outcome, long nanos);
+
+        default Trigger or(Trigger other){
+            return (outcome, nanos) -> fire(outcome, nanos) ||
+                    other.fire(outcome, nanos);
+        }
+    }
+
+    /**
+     * @return trigger firing when the Research Infection Model fails while
+     * flood succeeds
+     */
+
+    public static Trigger infectFailsFloodSucceeds(){
+        return (outcome, nanos) -> outcome[3] < 0 && outcome[0] >= 0;
+    }
+
+    /**
+     * @param generation threshold
+     * @return trigger firing when any message type reaches the reciever in a
+     * generation above the threshold
+     */
+
+    public static Trigger generationAbove(int generation){
+        return (outcome, nanos) -> {
+            for(int value : outcome){
+                if(value > generation) return true;
+            }
+            return false;
+        };
+    }
+
+    /**
+     * @param millis threshold
+     * @return trigger firing when the simulation ran longer than millis
+     */
+
+    public static Trigger slowerThan(long millis){
+        long limit = millis * 1000000L;
+        return (outcome, nanos) -> nanos > limit;
+    }
+}
@@ -52,6 +52,8 @@ public class Interface extends javax.swing.JFrame {
         label11 = new java.awt.Label();
         label12 = new java.awt.Label();
         fakeDest = new javax.swing.JCheckBox();
+        sharedBase = new javax.swing.JCheckBox();
+        autoTune = new javax.swing.JCheckBox();
         Running = new java.awt.Label();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
@@ -111,6 +113,10 @@ public class Interface extends javax.swing.JFrame {
 
         fakeDest.setLabel("Use fake destination");
 
+        sharedBase.setText("Share base population");
+
+        autoTune.setText("Auto-tune workers");
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
         layout.setHorizontalGroup(
@@ -129,6 +135,12 @@ public class Interface extends javax.swing.JFrame {
                             .addGroup(layout.createSequentialGroup()
                                 .addComponent(fakeDest)
                                 .addGap(0, 0, Short.MAX_VALUE))
+                            .addGroup(layout.createSequentialGroup()
+                                .addComponent(sharedBase)
+                                .addGap(0, 0, Short.MAX_VALUE))
+                            .addGroup(layout.createSequentialGroup()
+                                .addComponent(autoTune)
+                                .addGap(0, 0, Short.MAX_VALUE))
                             .addGroup(layout.createSequentialGroup()
                                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING)
                                     .addGroup(layout.createSequentialGroup()
@@ -212,6 +224,10 @@ public class Interface extends javax.swing.JFrame {
                     .addComponent(label11, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(fakeDest)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(sharedBase)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(autoTune)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, 24, Short.MAX_VALUE)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(RunButton, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
@@ -223,7 +239,12 @@ public class Interface extends javax.swing.JFrame {
     }// </editor-fold>//GEN-END:initComponents
 
     private void RunButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_RunButtonActionPerformed
-        Thread batch = new Thread(new SimulationBatch(
+        if(running != null){
+            running.cancel();
+            RunButton.setEnabled(false);
+            return;
+        }
+        SimulationBatch started = new SimulationBatch(
                 Integer.parseInt(height.getText()),
                 Integer.parseInt(width.getText()),
                 Integer.parseInt(population.getText()),
@@ -235,10 +256,74 @@ public class Interface extends javax.swing.JFrame {
                 Integer.parseInt(maxRunTime.getText()),
                 Integer.parseInt(iterations.getText()),
                 Integer.parseInt(simulations.getText()),
-                fakeDest.isSelected(), Running), "Simulations");
+                fakeDest.isSelected(), sharedBase.isSelected(), Running);
+        boolean tune = autoTune.isSelected();
+        running = started;
+        Thread batch = new Thread(() -> {
+            if(tune && !confirmAutoTune(started)) return;
+            started.run();
+        }, "Simulations");
+        RunButton.setLabel("Cancel");
+        /*
+            Poll the progress of the batch until it ends, the label shows
+            percent done and time left, the title the whole progress line.
+            Until the batch starts the label keeps what the batch or the
+            calibration set.
+        */
+        javax.swing.Timer poll = new javax.swing.Timer(1000, null);
+        poll.addActionListener((java.awt.event.ActionEvent tick) -> {
+            BatchProgress progress = started.getProgress();
+            if(progress.getState() != BatchProgress.State.WAITING){
+                Running.setText(progress.getStatus());
+                setTitle(progress.toString());
+            }
+            if(!batch.isAlive()){
+                poll.stop();
+                running = null;
+                RunButton.setLabel("Run");
+                RunButton.setEnabled(true);
+            }
+        });
         batch.start();
+        poll.start();
     }//GEN-LAST:event_RunButtonActionPerformed
 
+    /**
+     * @description calibrates the batch, see RuntimeEstimator, and shows the
+     * prediction. Yes runs with the workers it chose, No with one thread per
+     * environment, Cancel not at all. Called on the batch thread.
+     * @param batch the batch to tune
+     * @return true if the batch should run
+     */
+
+    private boolean confirmAutoTune(SimulationBatch batch){
+        Running.setText("Calibrating");
+        RuntimeEstimator.Estimate estimate = batch.estimateRuntime(
+                RuntimeEstimator.DEFAULT_CALIBRATION);
+        int[] answer = new int[1];
+        try {
+            java.awt.EventQueue.invokeAndWait(() -> {
+                javax.swing.JTextArea text = new javax.swing.JTextArea(
+                        estimate.toString() + "\n\nUse the chosen workers?");
+                text.setEditable(false);
+                answer[0] = javax.swing.JOptionPane.showConfirmDialog(this,
+                        text, "Auto-tune",
+                        javax.swing.JOptionPane.YES_NO_CANCEL_OPTION);
+            });
+        } catch (InterruptedException | java.lang.reflect.InvocationTargetException ex) {
+            java.util.logging.Logger.getLogger(Interface.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
+            answer[0] = javax.swing.JOptionPane.CANCEL_OPTION;
+        }
+        if(answer[0] == javax.swing.JOptionPane.YES_OPTION){
+            batch.setWorkers(estimate.getWorkers(), estimate.getSimsPerTask());
+        }
+        else if(answer[0] != javax.swing.JOptionPane.NO_OPTION){
+            Running.setText("Cancelled");
+            return false;
+        }
+        return true;
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -274,9 +359,12 @@ public class Interface extends javax.swing.JFrame {
         });
     }
 
+    private SimulationBatch running;
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private java.awt.Button RunButton;
     private java.awt.Label Running;
+    private javax.swing.JCheckBox autoTune;
     private java.awt.TextField decayThresh;
     private javax.swing.JCheckBox fakeDest;
     private java.awt.TextField height;
@@ -297,6 +385,7 @@ public class Interface extends javax.swing.JFrame {
     private java.awt.TextField maxRunTime;
     private java.awt.TextField popInc;
     private java.awt.TextField population;
+    private javax.swing.JCheckBox sharedBase;
     private java.awt.TextField simulations;
     private java.awt.TextField ticksTransmit;
     private java.awt.TextField transmitRange;
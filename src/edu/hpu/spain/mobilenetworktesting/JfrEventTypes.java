@@ -0,0 +1,232 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * @description the Java Flight Recorder events of the engine. Only JfrEvents
+ * touches this class, and only after it found the JFR classes, so the rest
+ * of the engine runs on JVMs without JFR. Events are passed around as
+ * Object for the same reason.
+ * @author Brian Spain
+ */
+
+final class JfrEventTypes {
+
+    private static final String CATEGORY = "Mobile Network Testing";
+
+    private JfrEventTypes(){
+    }
+
+    static boolean available(){
+        return jdk.jfr.FlightRecorder.isAvailable();
+    }
+
+    @Name("edu.hpu.spain.mobilenetworktesting.Batch")
+    @Label("Simulation Batch")
+    @Description("Run of a SimulationBatch with its parameters")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class BatchEvent extends Event {
+        @Label("Height") int height;
+        @Label("Width") int width;
+        @Label("Population") int population;
+        @Label("Population Increment") int popInc;
+        @Label("Range") int range;
+        @Label("Transmit Time") int transmitTime;
+        @Label("Max Buffer") int maxBuffer;
+        @Label("Max Time") int maxTime;
+        @Label("Environments") int environments;
+        @Label("Rounds") int rounds;
+        @Label("Simulations Run") int simulationsRun;
+    }
+
+    @Name("edu.hpu.spain.mobilenetworktesting.Generation")
+    @Label("Environment Generation")
+    @Description("Generation of the environments of one round")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class GenerationEvent extends Event {
+        @Label("Round") int round;
+        @Label("Environments") int environments;
+    }
+
+    @Name("edu.hpu.spain.mobilenetworktesting.Round")
+    @Label("Round")
+    @Description("One round of a batch, from generation until the last "
+            + "simulation finished")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class RoundEvent extends Event {
+        @Label("Round") int round;
+        @Label("Environments") int environments;
+        @Label("Slowest Environment") int slowestEnvironment;
+        @Label("Slowest Simulation") @Timespan(Timespan.NANOSECONDS)
+        long slowestNanos;
+        @Label("Fastest Simulation") @Timespan(Timespan.NANOSECONDS)
+        long fastestNanos;
+    }
+
+    @Name("edu.hpu.spain.mobilenetworktesting.Simulation")
+    @Label("Simulation")
+    @Description("One simulation with the generation every message type "
+            + "reached the reciever in, -1 if it failed")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class SimulationEvent extends Event {
+        @Label("Round") int round;
+        @Label("Environment") int environment;
+        @Label("Seed") long seed;
+        @Label("Population") int population;
+        @Label("Flood") int flood;
+        @Label("Gossip80") int gossip80;
+        @Label("Gossip60") int gossip60;
+        @Label("Infect") int infect;
+    }
+
+    @Name("edu.hpu.spain.mobilenetworktesting.TraceFlush")
+    @Label("Trace Flush")
+    @Description("A chunk of events written to a trace shard")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class TraceFlushEvent extends Event {
+        @Label("File") String file;
+        @Label("Events") int events;
+        @Label("Last Chunk") boolean last;
+    }
+
+    @Name("edu.hpu.spain.mobilenetworktesting.Checkpoint")
+    @Label("Checkpoint")
+    @Description("A trace shard committed to its manifest or a block of the "
+            + "result store started")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class CheckpointEvent extends Event {
+        @Label("File") String file;
+        @Label("Size") @DataAmount long bytes;
+    }
+
+    static Object begin(Event event){
+        event.begin();
+        return event;
+    }
+
+    static Object batch(){
+        return begin(new BatchEvent());
+    }
+
+    static void batch(Object started, int height, int width, int population,
+            int popInc, int range, int transmitTime, int maxBuffer,
+            int maxTime, int environments, int rounds, int simulationsRun){
+        BatchEvent event = (BatchEvent)started;
+        event.end();
+        if(!event.shouldCommit()) return;
+        event.height = height;
+        event.width = width;
+        event.population = population;
+        event.popInc = popInc;
+        event.range = range;
+        event.transmitTime = transmitTime;
+        event.maxBuffer = maxBuffer;
+        event.maxTime = maxTime;
+        event.environments = environments;
+        event.rounds = rounds;
+        event.simulationsRun = simulationsRun;
+        event.commit();
+    }
+
+    static Object generation(){
+        return begin(new GenerationEvent());
+    }
+
+    static void generation(Object started, int round, int environments){
+        GenerationEvent event = (GenerationEvent)started;
+        event.end();
+        if(!event.shouldCommit()) return;
+        event.round = round;
+        event.environments = environments;
+        event.commit();
+    }
+
+    static Object round(){
+        return begin(new RoundEvent());
+    }
+
+    static void round(Object started, int round, SimulationResult[] results){
+        RoundEvent event = (RoundEvent)started;
+        event.end();
+        if(!event.shouldCommit()) return;
+        event.round = round;
+        event.environments = results.length;
+        event.slowestEnvironment = -1;
+        event.fastestNanos = Long.MAX_VALUE;
+        for(int i = 0; i < results.length; i++){
+            long nanos = results[i].getNanos();
+            if(nanos > event.slowestNanos || event.slowestEnvironment < 0){
+                event.slowestNanos = nanos;
+                event.slowestEnvironment = i;
+            }
+            event.fastestNanos = Math.min(event.fastestNanos, nanos);
+        }
+        event.commit();
+    }
+
+    static Object simulation(){
+        return begin(new SimulationEvent());
+    }
+
+    static void simulation(Object started, int round, int environment,
+            long seed, int population, int flood, int gossip80, int gossip60,
+            int infect){
+        SimulationEvent event = (SimulationEvent)started;
+        event.end();
+        if(!event.shouldCommit()) return;
+        event.round = round;
+        event.environment = environment;
+        event.seed = seed;
+        event.population = population;
+        event.flood = flood;
+        event.gossip80 = gossip80;
+        event.gossip60 = gossip60;
+        event.infect = infect;
+        event.commit();
+    }
+
+    static Object traceFlush(){
+        return begin(new TraceFlushEvent());
+    }
+
+    static void traceFlush(Object started, String file, int events,
+            boolean last){
+        TraceFlushEvent event = (TraceFlushEvent)started;
+        event.end();
+        if(!event.shouldCommit()) return;
+        event.file = file;
+        event.events = events;
+        event.last = last;
+        event.commit();
+    }
+
+    static Object checkpoint(){
+        return begin(new CheckpointEvent());
+    }
+
+    static void checkpoint(Object started, String file, long bytes){
+        CheckpointEvent event = (CheckpointEvent)started;
+        event.end();
+        if(!event.shouldCommit()) return;
+        event.file = file;
+        event.bytes = bytes;
+        event.commit();
+    }
+}
@@ -0,0 +1,108 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @description emits the Java Flight Recorder events of batches, rounds,
+ * environment generation, simulations, trace flushes and checkpoints (see
+ * JfrEventTypes). The events are always registered where JFR exists and
+ * show up in any recording, for example one started with
+ * -XX:StartFlightRecording, so a run can be profiled after the fact.
+ *
+ * Every event is started with one of the methods without arguments, which
+ * returns null if JFR is missing or was turned off with
+ * -Dmobilenetworktesting.jfr=false, and ended with its counterpart that
+ * takes the fields, which ignores null. Without JFR nothing of jdk.jfr is
+ * loaded.
+ * @author Brian Spain
+ */
+
+final class JfrEvents {
+
+    static final boolean ENABLED = enabled();
+
+    private JfrEvents(){
+    }
+
+    private static boolean enabled(){
+        if(!Boolean.parseBoolean(
+                System.getProperty("mobilenetworktesting.jfr", "true"))){
+            return false;
+        }
+        try {
+            return JfrEventTypes.available();
+        } catch (LinkageError ex) {
+            Logger.getLogger(JfrEvents.class.getName()).log(Level.FINE,
+                    "Java Flight Recorder unavailable", ex);
+            return false;
+        }
+    }
+
+    static Object batch(){
+        return ENABLED ? JfrEventTypes.batch() : null;
+    }
+
+    static void batch(Object started, int height, int width, int population,
+            int popInc, int range, int transmitTime, int maxBuffer,
+            int maxTime, int environments, int rounds, int simulationsRun){
+        if(started != null) JfrEventTypes.batch(started, height, width,
+                population, popInc, range, transmitTime, maxBuffer, maxTime,
+                environments, rounds, simulationsRun);
+    }
+
+    static Object generation(){
+        return ENABLED ? JfrEventTypes.generation() : null;
+    }
+
+    static void generation(Object started, int round, int environments){
+        if(started != null) JfrEventTypes.generation(started, round,
+                environments);
+    }
+
+    static Object round(){
+        return ENABLED ? JfrEventTypes.round() : null;
+    }
+
+    /**
+     * @param started value of round()
+     * @param round the round
+     * @param results results of every environment, the slowest and fastest
+     * simulation are taken from them
+     */
+
+    static void round(Object started, int round, SimulationResult[] results){
+        if(started != null) JfrEventTypes.round(started, round, results);
+    }
+
+    static Object simulation(){
+        return ENABLED ? JfrEventTypes.simulation() : null;
+    }
+
+    static void simulation(Object started, int round, int environment,
+            long seed, int population, int flood, int gossip80, int gossip60,
+            int infect){
+        if(started != null) JfrEventTypes.simulation(started, round,
+                environment, seed, population, flood, gossip80, gossip60,
+                infect);
+    }
+
+    static Object traceFlush(){
+        return ENABLED ? JfrEventTypes.traceFlush() : null;
+    }
+
+    static void traceFlush(Object started, String file, int events,
+            boolean last){
+        if(started != null) JfrEventTypes.traceFlush(started, file, events,
+                last);
+    }
+
+    static Object checkpoint(){
+        return ENABLED ? JfrEventTypes.checkpoint() : null;
+    }
+
+    static void checkpoint(Object started, String file, long bytes){
+        if(started != null) JfrEventTypes.checkpoint(started, file, bytes);
+    }
+}
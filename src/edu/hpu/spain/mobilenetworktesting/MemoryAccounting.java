@@ -0,0 +1,362 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.text.DecimalFormat;
+
+/**
+ * @description estimates the heap a batch retains, from its parameters and
+ * before it runs. The estimates add up the objects each part consists of
+ * with the layout of HotSpot: 12 byte object headers, 16 byte array headers
+ * and 4 byte references with compressed references (heaps below 32 GB),
+ * 16, 20 and 8 bytes without, everything aligned to 8 bytes.
+ *
+ * Nodes are estimated at their largest, as if every node took its first
+ * picture for every message type, with the neighbors expected at the
+ * density of the environment in all three of its neighbor lists. Node ids
+ * from 128 on are boxed into their own Integer. Only one round is alive at
+ * a time, GenerateEnvironments() drops the nodes of the last one.
+ *
+ * Policies that retain samples until the end of the batch (reservoir,
+ * stratified and top-k) are counted with their capacity: a sample keeps
+ * only the parameters, seed and outcome of its simulation, and the retained
+ * ones are run again from their seed once the batch ends, into a round of
+ * environments of their own and through the trace buffers.
+ * @author Brian Spain
+ */
+
+public class MemoryAccounting {
+
+    /**
+     * @description estimated bytes of one batch, by part
+     */
+
+    public static final class Report {
+        /** one node before and at the end of a simulation */
+        public long freshNode, node;
+        /** expected neighbors of a node in the first environment */
+        public double neighbors;
+        /** nodes, lists and results of all environments of a round */
+        public long environments;
+        /** one dataCompiler and all of them */
+        public long compiler, compilers;
+        /** one buffered trace chunk and all chunks the writers may hold */
+        public long traceChunk, traceBuffers;
+        /** all flight recorders */
+        public long recorders;
+        /** samples a SamplingPolicy retains and the round they run again in */
+        public long samples;
+        /** sum of the parts */
+        public long total;
+
+        /**
+         * @description throws if the batch does not fit into budget
+         * @param budget heap in bytes the batch may use
+         * @throws IllegalStateException if the estimate exceeds budget
+         */
+
+        public void check(long budget){
+            if(total > budget){
+                throw new IllegalStateException("Batch needs an estimated " +
+                        megabytes(total) + " of heap, the budget is " +
+                        megabytes(budget) + "\n" + this);
+            }
+        }
+
+        @Override
+        public String toString(){
+            return "Node:          " + freshNode + " bytes, " + node +
+                    " bytes with " + new DecimalFormat("#.#").format(neighbors)
+                    + " neighbors\n" +
+                    "Environments:  " + megabytes(environments) + "\n" +
+                    "dataCompiler:  " + megabytes(compiler) + " each, " +
+                    megabytes(compilers) + " in all\n" +
+                    "Trace buffers: " + megabytes(traceChunk) + " per chunk, " +
+                    megabytes(traceBuffers) + " at most\n" +
+                    "Recorders:     " + megabytes(recorders) + "\n" +
+                    "Samples:       " + megabytes(samples) + "\n" +
+                    "Total:         " + megabytes(total);
+        }
+
+        private static String megabytes(long bytes){
+            return new DecimalFormat("#.##").format(bytes / 1048576.0) + " MB";
+        }
+    }
+
+    private static final long COMPRESSED_LIMIT = 32L << 30;
+
+    private final int header, arrayHeader, reference;
+
+    /**
+     * @description layout of the running JVM, compressed references are
+     * assumed below a 32 GB heap
+     */
+
+    public MemoryAccounting(){
+        this(Runtime.getRuntime().maxMemory() < COMPRESSED_LIMIT);
+    }
+
+    /**
+     * @param compressedReferences true for 4 byte references
+     */
+
+    public MemoryAccounting(boolean compressedReferences){
+        this.header = compressedReferences ? 12 : 16;
+        this.arrayHeader = compressedReferences ? 16 : 20;
+        this.reference = compressedReferences ? 4 : 8;
+    }
+
+    private static long align(long bytes){
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * @param fields bytes of the primitive fields
+     * @param references number of reference fields
+     * @return bytes of the object, without what it refers to
+     */
+
+    public long object(int fields, int references){
+        return align(header + fields + (long)references * reference);
+    }
+
+    /**
+     * @param element bytes of one element, 0 for references
+     * @param length length of the array
+     * @return bytes of the array
+     */
+
+    public long array(int element, long length){
+        return align(arrayHeader + (element == 0 ? reference : element) * length);
+    }
+
+    /**
+     * @param size elements in the list
+     * @return bytes of an ArrayList grown to size by add(), without its
+     * elements
+     */
+
+    public long arrayList(long size){
+        long list = object(8, 1);
+        if(size == 0) return list;
+        long capacity = 10;
+        while(capacity < size) capacity += capacity >> 1;
+        return list + array(0, capacity);
+    }
+
+    /**
+     * @return bytes of a Node as it is constructed
+     */
+
+    public long node(){
+        long node = object(8 * 4 + 9 * 8 + 1, 6);
+        long random = object(8 + 1, 1) + object(8, 0);
+        long transmitionData = array(0, 4) + 4 * array(4, 4);
+        long fakeDestination = array(1, 4);
+        long lists = 3 * arrayList(4) + 12 * arrayList(0);
+        return node + random + transmitionData + fakeDestination + lists;
+    }
+
+    /**
+     * @param neighbors neighbors of the node
+     * @param population nodes in the environment, ids from 128 on are boxed
+     * @return bytes of a Node that took its first picture for every message
+     * type, with neighbors in each of its neighbor lists
+     */
+
+    public long node(long neighbors, int population){
+        double boxed = population <= 128 ? 0 :
+                (population - 128) / (double)population;
+        long entries = (long)(neighbors * boxed) * object(4, 0);
+        return node() + 12 * (arrayList(neighbors) - arrayList(0) + entries);
+    }
+
+    /**
+     * @param population nodes in the environment
+     * @param width width of the domain
+     * @param height height of the domain
+     * @param range transmit range
+     * @return expected neighbors of a node, ignoring the edges of the domain
+     */
+
+    public static double expectedNeighbors(int population, int width,
+            int height, int range){
+        double area = Math.max(1.0, (double)width * height);
+        return Math.min(population - 1,
+                (population - 1) * Math.PI * range * range / area);
+    }
+
+    /**
+     * @return bytes of a SimulationResult, with its per generation and per
+     * tick counters at their initial size
+     */
+
+    public long simulationResult(){
+        long protocol = object(4 * 12 + 8 * 6 + 1, 6) + 5 * array(4, 32) +
+                array(8, 32);
+        return object(4 * 2 + 8 * 2, 1) + array(0, 4) + 4 * protocol;
+    }
+
+    /**
+     * @param sketch a sketch with the accuracy and range to estimate
+     * @return bytes of a QuantileSketch
+     */
+
+    public long quantileSketch(QuantileSketch sketch){
+        return object(8 * 4 + 4 * 2 + 8 * 2 + 8 * 2, 1) +
+                array(8, sketch.getBucketCount());
+    }
+
+    /**
+     * @param metrics metrics per observation
+     * @return bytes of a RunningStatistics
+     */
+
+    public long runningStatistics(int metrics){
+        return object(8, 2) + 2 * array(8, metrics);
+    }
+
+    /**
+     * @param maxTime ticks of every simulation
+     * @param coverageInterval ticks per bucket of the coverage curves
+     * @return bytes of a dataCompiler that added simulations of maxTime ticks
+     */
+
+    public long dataCompiler(int maxTime, int coverageInterval){
+        int[] success = {10, 10, 10, 12}, failure = {5, 5, 5, 7},
+                graph = {5, 5, 5, 5};
+        long tables = 0, statistics = 0, sketches = 0;
+        long successSketch = quantileSketch(new QuantileSketch());
+        for(int messageType = 0; messageType < 4; messageType++){
+            tables += 3 * (array(8, success[messageType]) +
+                    array(8, failure[messageType]) + array(8, graph[messageType]));
+            statistics += runningStatistics(success[messageType]) +
+                    runningStatistics(failure[messageType]) +
+                    runningStatistics(graph[messageType]);
+            sketches += array(0, success[messageType]) +
+                    success[messageType] * successSketch;
+        }
+        tables += 9 * array(0, 4);
+        statistics += 3 * array(0, 4);
+        sketches += array(0, 4);
+        int interval = Math.max(1, coverageInterval);
+        long buckets = (maxTime + interval - 1) / interval;
+        long bucket = runningStatistics(2) + quantileSketch(new QuantileSketch(
+                QuantileSketch.DEFAULT_ACCURACY, 0.5,
+                QuantileSketch.DEFAULT_LARGEST));
+        long coverage = array(0, 4) + 4 * (object(4, 3) + 2 * array(0, buckets) +
+                buckets * bucket + array(8, 2));
+        return object(4, 16) + tables + statistics + sketches + coverage;
+    }
+
+    /**
+     * @param events capacity in events
+     * @return bytes of a RecordingEventSink, one byte, four ints and three
+     * doubles per event
+     */
+
+    public long recording(long events){
+        return object(8, 3) + array(1, events) + array(4, 4 * events) +
+                array(8, 3 * events);
+    }
+
+    /**
+     * @return bytes of a TraceSample with its TraceParameters
+     */
+
+    public long traceSample(){
+        return object(8 * 2, 2) + array(4, 4) + object(4 * 7 + 8, 0);
+    }
+
+    /**
+     * @param population nodes in the simulation
+     * @param maxTime ticks of the simulation
+     * @return rough number of events one simulation records: a tick event
+     * per tick, a start and per message type a broadcast and a message per
+     * node, and the nodes of every keyframe
+     */
+
+    public static long eventsPerSimulation(int population, int maxTime){
+        long keyframes = maxTime / AsyncTraceWriter.DEFAULT_KEYFRAME_INTERVAL + 1;
+        return maxTime + 9L * population + keyframes * (population + 1);
+    }
+
+    /**
+     * @param height height of the domain
+     * @param width width of the domain
+     * @param population nodes in the first environment
+     * @param popInc nodes added per environment
+     * @param range transmit range
+     * @param maxTime ticks of every simulation
+     * @param environments environments per round
+     * @param coverageInterval ticks per bucket of the coverage curves
+     * @param sharedBase true if the environments share a base population
+     * @param flightRecorders true if simulations run with flight recorders
+     * @return the estimate of a batch with these parameters and a policy that
+     * retains no samples
+     */
+
+    public Report estimate(int height, int width, int population, int popInc,
+            int range, int maxTime, int environments, int coverageInterval,
+            boolean sharedBase, boolean flightRecorders){
+        return estimate(height, width, population, popInc, range, maxTime,
+                environments, coverageInterval, sharedBase, flightRecorders, 0);
+    }
+
+    /**
+     * @param height height of the domain
+     * @param width width of the domain
+     * @param population nodes in the first environment
+     * @param popInc nodes added per environment
+     * @param range transmit range
+     * @param maxTime ticks of every simulation
+     * @param environments environments per round
+     * @param coverageInterval ticks per bucket of the coverage curves
+     * @param sharedBase true if the environments share a base population
+     * @param flightRecorders true if simulations run with flight recorders
+     * @param samples most samples the SamplingPolicy retains, see
+     * SamplingPolicy.getCapacity()
+     * @return the estimate of a batch with these parameters
+     */
+
+    public Report estimate(int height, int width, int population, int popInc,
+            int range, int maxTime, int environments, int coverageInterval,
+            boolean sharedBase, boolean flightRecorders, int samples){
+        Report report = new Report();
+        report.freshNode = node();
+        report.neighbors = expectedNeighbors(population, width, height, range);
+        report.node = node((long)Math.ceil(report.neighbors), population);
+        long nodes = 0;
+        for(int i = 0; i < environments; i++){
+            int size = population + i * popInc;
+            long neighbors = (long)Math.ceil(
+                    expectedNeighbors(size, width, height, range));
+            nodes += size * node(neighbors, size) + arrayList(size) +
+                    simulationResult();
+        }
+        if(sharedBase){
+            long base = population + Math.max(0, environments - 1) * (long)popInc;
+            nodes += 2 * array(8, base) + 2 * array(4, base);
+        }
+        report.environments = nodes;
+        report.compiler = dataCompiler(maxTime, coverageInterval);
+        report.compilers = environments * report.compiler;
+        report.traceChunk = recording(AsyncTraceWriter.DEFAULT_CHUNK_EVENTS);
+        report.traceBuffers = ShardedTraceOutput.DEFAULT_WRITERS *
+                (AsyncTraceWriter.DEFAULT_QUEUED_CHUNKS + environments) *
+                report.traceChunk;
+        if(flightRecorders){
+            int largest = population + Math.max(0, environments - 1) * popInc;
+            report.recorders = environments *
+                    recording(eventsPerSimulation(largest, maxTime));
+        }
+        if(samples > 0){
+            /* The candidates still running, the retained samples, and the
+            environments and discarded compiler the samples run again in. */
+            report.samples = (samples + environments) * traceSample() +
+                    report.environments + report.compiler;
+        }
+        report.total = report.environments + report.compilers +
+                report.traceBuffers + report.recorders + report.samples;
+        return report;
+    }
+}
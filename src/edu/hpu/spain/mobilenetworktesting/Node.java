@@ -22,6 +22,7 @@ public class Node {
     private final ArrayList<ArrayList<Integer>> eligibleNeighbors;
     private final ArrayList<ArrayList<Integer>> neighbors;  
     private final ArrayList<ArrayList<Integer>> uninfectedNeighbors;
+    private final Random random;
     /**
      * @param id each node has an id in the environment, which corresponds to the 
      * order in which it was created.
@@ -47,6 +48,22 @@ public class Node {
             int direction, int buffer, int transmitSpeed, int range, 
             int rangeDecayThreshold, boolean useFakeDestination){
         
+        this(id, domainWidth, domainHeight, x, y, direction, buffer, 
+                transmitSpeed, range, rangeDecayThreshold, useFakeDestination,
+                new Random().nextLong());
+    }
+    
+    /**
+     * @description same as the constructor above, the random choices the 
+     * node makes (new directions, gossip) follow from seed.
+     * @param seed seed of the node's random number generator
+     */
+    
+    public Node(int id, int domainWidth, int domainHeight, double x, double y, 
+            int direction, int buffer, int transmitSpeed, int range, 
+            int rangeDecayThreshold, boolean useFakeDestination, long seed){
+        
+        this.random = new Random(seed);
         this.id = id;                                                           
         this.domainWidth = domainWidth;
         this.domainHeight = domainHeight;
@@ -133,59 +150,20 @@ public class Node {
 **/
     
     public int[] updateNode(){
-        
-        int[] broadcast= new int[4];
-        
-        for(int i = 0; i < 4; i++){
-            if(transmitionData[2][i]>=0){
-                if(transmitionData[2][i]==transmitSpeed){
-                    broadcast[i]=1;
-                    if(transmitSpeed == 0)
-                        broadcast[i]=2;
-                }
-                else if(transmitionData[2][i]==0){
-                    broadcast[i]=2;
-                }     
-            }
-            else broadcast[i]=0;
-            transmitionData[2][i]--;
-        }
-        
-        Random compass = new Random();
-        
-        if(x>=(domainWidth-1)){
-            direction = compass.nextInt(180) + 90;
-            --x;
-        }
-        else if(x<=(1)){
-            direction = (compass.nextInt(180)+270)%360;
-            ++x;
-        }
-        else if(y>=(domainHeight-1)){
-            direction = compass.nextInt(180) + 180;
-            --y;
-        }
-        else if(y<=(1)){
-            direction = compass.nextInt(180);
-            ++y;
-        }
-        x = x + (Math.cos(Math.toRadians(direction)));
-        y = y + (Math.sin(Math.toRadians(direction)));
-        return broadcast;
+        return updateNode(NullEventSink.INSTANCE);
     }
     
     /**
-     * @description same as updateNode() except this keeps track of the raw data
-     * for reconstruction. If a node changes direction a new line is added to
-     * dataRecord
-     * @param dataRecord where Strings of data are stored for reconstruction
+     * @description same as updateNode(), direction changes are reported to 
+     * sink
+     * @param sink receives a turn event when the node changes direction
      * @return see updateNode()
-     * 
      */
     
-    public int[] updateNode(ArrayList<String> dataRecord){
+    public int[] updateNode(SimulationEventSink sink){
         
         int[] broadcast= new int[4];
+        
         for(int i = 0; i < 4; i++){
             if(transmitionData[2][i]>=0){
                 if(transmitionData[2][i]==transmitSpeed){
@@ -201,28 +179,27 @@ public class Node {
             transmitionData[2][i]--;
         }
         
-
-        Random compass = new Random();
+        Random compass = random;
         
         if(x>=(domainWidth-1)){
             direction = compass.nextInt(180) + 90;
             --x;
-            dataRecord.add("t" + id + " " + x + " " + y + " " + direction);
+            sink.turn(id, x, y, direction);
         }
         else if(x<=(1)){
-            direction = compass.nextInt(180)+270;
+            direction = (compass.nextInt(180)+270)%360;
             ++x;
-            dataRecord.add("t" + id + " " + x + " " + y + " " + direction);
+            sink.turn(id, x, y, direction);
         }
         else if(y>=(domainHeight-1)){
             direction = compass.nextInt(180) + 180;
             --y;
-            dataRecord.add("t" + id + " " + x + " " + y + " " + direction);
+            sink.turn(id, x, y, direction);
         }
         else if(y<=(1)){
             direction = compass.nextInt(180);
             ++y;
-            dataRecord.add("t" + id + " " + x + " " + y + " " + direction);
+            sink.turn(id, x, y, direction);
         }
         x = x + (Math.cos(Math.toRadians(direction)));
         y = y + (Math.sin(Math.toRadians(direction)));
@@ -298,13 +275,39 @@ public class Node {
     }
     
     /**
-     * @description records starting position of the node in dataRecord
-     * @param dataRecord where Strings of data are stored for reconstruction
+     * @description reports the starting position of the node to sink
+     * @param sink receives a start event
+     */
+    
+    public void recordLocation(SimulationEventSink sink){
+        sink.start(id, (int)x, (int)y, direction, buffer);
+    }
+    
+    /**
+     * @description reports the current position, direction and generations
+     * of the node to sink, used for keyframes
+     * @param sink receives a nodeState event
      */
     
-    public void recordLocation(ArrayList<String> dataRecord){
-        dataRecord.add("s " + id + " " + (int)x + " " + (int)y + " " + direction + " " + 
-                buffer);
+    public void recordState(SimulationEventSink sink){
+        sink.nodeState(id, x, y, direction, transmitionData[1][0],
+                transmitionData[1][1], transmitionData[1][2], 
+                transmitionData[1][3]);
+    }
+    
+    /**
+     * @description reports the final state of the node for every message 
+     * type to sink, see SimulationEventSink.nodeResult()
+     * @param sink receives four nodeResult events
+     */
+    
+    public void recordResult(SimulationEventSink sink){
+        for(int messageType = 0; messageType < 4; messageType++){
+            sink.nodeResult(id, messageType, transmitionData[1][messageType],
+                    transmitionData[0][messageType], 
+                    transmitionData[3][messageType], getNeighbors(messageType),
+                    getUninfectedNeighbors(messageType), getAlpha());
+        }
     }
     
     /**
@@ -409,6 +412,19 @@ public class Node {
     **/
     
     public void setEligibleNeighbors(int messageType, ArrayList<Node> nodes){
+        setEligibleNeighbors(messageType, nodes, null);
+    }
+    
+    /**
+     * @description same as setEligibleNeighbors(), the first picture is
+     * counted in result
+     * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
+     * @param nodes all nodes populating the environment.
+     * @param result counters of the running simulation, may be null
+     */
+    
+    public void setEligibleNeighbors(int messageType, ArrayList<Node> nodes,
+            SimulationResult result){
         
         for(int i = 0; i < nodes.size(); i++){
             if(inRange(nodes.get(i))){
@@ -429,6 +445,11 @@ public class Node {
             }
         }
         setUninfectedNeighbors(messageType, nodes);
+        if(result != null){
+            result.firstPicture(messageType, getNeighbors(messageType), 
+                    getUninfectedNeighbors(messageType), 
+                    SimulationResult.thousandths(alpha));
+        }
     }
     
     /**
@@ -536,11 +557,14 @@ public class Node {
      * attempted message transfers for parameter message type
      * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
      * @param target node to send message to
+     * @param sink receives the message event
      * 
      */
     
-    private void infect(int messageType, Node target){
-        if(Math.random() <= rangeDecayFactor(target)){
+    private void infect(int messageType, Node target, SimulationEventSink sink,
+            SimulationResult result){
+        sink.message(id, target.id, messageType, (int)x, (int)y);
+        if(random.nextDouble() <= rangeDecayFactor(target)){
             //-1 indicates the node has not recieved the message
             if(target.transmitionData[0][messageType] == -1){
                 //Set generation
@@ -549,27 +573,21 @@ public class Node {
                 //Set broadcast countdown
                 target.transmitionData[2][messageType] = target.getTimeDelay();
                 target.transmitionData[3][messageType]=0;
+                if(result != null) result.infected(messageType, 
+                        target.transmitionData[1][messageType]);
             }
             //Increment number of attempted message transfer to target
             target.transmitionData[0][messageType]++;
             ++transmitionData[3][messageType]; //increment children
+            if(result != null){
+                result.received(messageType);
+                result.childAdded(messageType, transmitionData[1][messageType],
+                        transmitionData[3][messageType], 
+                        SimulationResult.thousandths(alpha));
+            }
         }
     }
     
-    /**
-     * @description adds a line to dataRecord for reconstruction recording the
-     * message transfer, then calls the standard infect method
-     * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
-     * @param target node to send message to
-     * @param dataRecord where Strings of data are stored for reconstruction
-     * 
-     */
-    
-    private void infect(int messageType, Node target, ArrayList<String> dataRecord){
-        dataRecord.add("m " + this.id + " " + target.id + " " + messageType + " " + (int)x + " " +(int)y);
-        infect(messageType, target);
-    }
-    
     /**
      * @description (For Research Infection Model) If the target node has not 
      * been infected, the alpha, k, k^2 values of the calling node are
@@ -579,10 +597,13 @@ public class Node {
      * generation + 1. If target node has already received this message type, 
      * the number of attempted message transfers for parameter message type.
      * @param target node to send message to
+     * @param sink receives the message event
      * 
      */
     
-    private void infect(Node target){
+    private void infect(Node target, SimulationEventSink sink, 
+            SimulationResult result){
+        sink.infectMessage(id, target.id, k, k2, alpha);
         if(target.transmitionData[0][3] == -1){                                 
             target.alphap  = alpha;                                             
             target.k = k;
@@ -591,36 +612,58 @@ public class Node {
             target.transmitionData[2][3] = target.getTimeDelay();
             target.dp = d;
             target.transmitionData[3][3]=0;
+            if(result != null) result.infected(3, target.transmitionData[1][3]);
         }
         target.transmitionData[0][3]++; //increment to target transfer attempts
         ++transmitionData[3][3]; //increment children
+        if(result != null){
+            result.received(3);
+            result.childAdded(3, transmitionData[1][3], transmitionData[3][3],
+                    SimulationResult.thousandths(alpha));
+        }
     }
     
     /**
-     * @description adds a line to dataRecord for reconstruction recording the 
-     * message transfer, then calls the infect method for Research Infection 
-     * Model 
-     * @param target node to send message to
-     * @param dataRecord where Strings of data are stored for reconstruction
+     * @description depending on the message type, this method executes the
+     * corresponding message transfer protocol
+     * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
+     * @param reciever id of the receiving node
+     * @param Nodes all nodes populating the environment.
      * 
      */
     
-    private void infect(Node target, ArrayList<String> dataRecord){
-        dataRecord.add("m " + this.id + " " + target.id + " " + 3 + " " + k + 
-                " " + k2 + " " + alpha);
-        infect(target);
+    public void broadcast(int messageType, int reciever, ArrayList<Node> Nodes){
+        broadcast(messageType, reciever, Nodes, NullEventSink.INSTANCE);
     }
-
+    
     /**
-     * @description depending on the message type, this method executes the
-     * corresponding message transfer protocol
+     * @description same as broadcast(), every message transfer is reported to
+     * sink
      * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
      * @param reciever id of the receiving node
      * @param Nodes all nodes populating the environment.
+     * @param sink receives a message event for every transfer
      * 
      */
     
-    public void broadcast(int messageType, int reciever, ArrayList<Node> Nodes){
+    public void broadcast(int messageType, int reciever, ArrayList<Node> Nodes,
+            SimulationEventSink sink){
+        broadcast(messageType, reciever, Nodes, sink, null);
+    }
+    
+    /**
+     * @description same as broadcast(), every message transfer is reported to
+     * sink and counted in result
+     * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
+     * @param reciever id of the receiving node
+     * @param Nodes all nodes populating the environment.
+     * @param sink receives a message event for every transfer
+     * @param result counters of the running simulation, may be null
+     * 
+     */
+    
+    public void broadcast(int messageType, int reciever, ArrayList<Node> Nodes,
+            SimulationEventSink sink, SimulationResult result){
         if(this != Nodes.get(reciever) && !fakeDestination[messageType]){  
             
             /*
@@ -628,11 +671,11 @@ public class Node {
                 gossip node will broadcast.
             */
             
-            Random selector = new Random();                               
+            Random selector = random;
             switch (messageType){
                 case 0:
                     if(iseligible(Nodes.get(reciever))){
-                        infect(messageType, Nodes.get(reciever));                    
+                        infect(messageType, Nodes.get(reciever), sink, result);                    
                         if(useFakeDestination)
                             fakeDestination[messageType] = true;
                     }
@@ -640,7 +683,7 @@ public class Node {
                         for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
                             int node = eligibleNeighbors.get(messageType).get(i);
                             if(uninfectedNeighbors.get(messageType).contains(node)){
-                                infect(messageType, Nodes.get(node));                             
+                                infect(messageType, Nodes.get(node), sink, result);                             
                             }
                         }
                     }
@@ -649,20 +692,20 @@ public class Node {
                 case 1:
                     if(transmitionData[1][1] == 1){
                        if(iseligible(Nodes.get(reciever))){
-                            infect(messageType, Nodes.get(reciever));                         
+                            infect(messageType, Nodes.get(reciever), sink, result);                         
                             if(useFakeDestination)
                                 fakeDestination[messageType] = true;
                         }
                         else{
                             for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
                                 int node = eligibleNeighbors.get(messageType).get(i);
-                                infect(messageType, Nodes.get(node));                             
+                                infect(messageType, Nodes.get(node), sink, result);                             
                             }
                         } 
                     }
                     else if(selector.nextInt(100)>=20){ //Gossip 80%
                         if(iseligible(Nodes.get(reciever))){
-                            infect(messageType, Nodes.get(reciever));                         
+                            infect(messageType, Nodes.get(reciever), sink, result);                         
                             if(useFakeDestination)
                                 fakeDestination[messageType] = true;
                         }
@@ -670,7 +713,7 @@ public class Node {
                             for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
                                 int node = eligibleNeighbors.get(messageType).get(i);
                                 if(uninfectedNeighbors.get(messageType).contains(node)){
-                                    infect(messageType, Nodes.get(node));                               
+                                    infect(messageType, Nodes.get(node), sink, result);                               
                                 }
                             }
                         }
@@ -679,20 +722,20 @@ public class Node {
                 case 2:
                     if(transmitionData[1][2] == 1){
                        if(iseligible(Nodes.get(reciever))){
-                            infect(messageType, Nodes.get(reciever));                        
+                            infect(messageType, Nodes.get(reciever), sink, result);                        
                             if(useFakeDestination)
                                 fakeDestination[messageType] = true;
                         }
                         else{
                             for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
                                 int node = eligibleNeighbors.get(messageType).get(i);
-                                infect(messageType, Nodes.get(node));                            
+                                infect(messageType, Nodes.get(node), sink, result);                            
                             }
                         } 
                     }
                     else if(selector.nextInt(100)>=40){
                         if(iseligible(Nodes.get(reciever))){
-                            infect(messageType, Nodes.get(reciever));
+                            infect(messageType, Nodes.get(reciever), sink, result);
                             if(useFakeDestination)
                                 fakeDestination[messageType] = true;
                         }
@@ -700,7 +743,7 @@ public class Node {
                             for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
                                 int node = eligibleNeighbors.get(messageType).get(i);
                                 if(uninfectedNeighbors.get(messageType).contains(node)){
-                                    infect(messageType, Nodes.get(node));                                 
+                                    infect(messageType, Nodes.get(node), sink, result);                                 
                                 }
                             }
                         }
@@ -708,7 +751,7 @@ public class Node {
                     break;
                 case 3:                                                         
                     if(iseligible(Nodes.get(reciever))){
-                        infect(Nodes.get(reciever));                       
+                        infect(Nodes.get(reciever), sink, result);                       
                         if(useFakeDestination)
                             fakeDestination[messageType] = true;
                     }
@@ -722,17 +765,20 @@ public class Node {
                             //originating node infects all eligible neighbor nodes
                             for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
                                 int node = eligibleNeighbors.get(messageType).get(i);
-                                infect(Nodes.get(node));                              
+                                infect(Nodes.get(node), sink, result);                              
                             }
                         }
                         else{
                             if(uninfectedNeighbors.get(messageType).size() > 0){
+                                int before = SimulationResult.thousandths(alpha);
                                 calculateAlpha();
+                                if(result != null) result.alphaChanged(before,
+                                        SimulationResult.thousandths(alpha));
                                 if(alpha == 1){
                                     for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
                                         int node = eligibleNeighbors.get(messageType).get(i);
                                         if(uninfectedNeighbors.get(messageType).contains(node)){
-                                            infect(Nodes.get(node));                                          
+                                            infect(Nodes.get(node), sink, result);                                          
                                         }
                                     }
                                 }
@@ -743,7 +789,7 @@ public class Node {
                                     for(int i = 0; (1.0 - alpha) <= (field/(double)uninfectedNeighbors.get(messageType).size()); i++){
                                         int node = uninfectedNeighbors.get(messageType).get(i);
                                         if(eligibleNeighbors.get(messageType).contains(node)){
-                                            infect(Nodes.get(node));                                          
+                                            infect(Nodes.get(node), sink, result);                                          
                                         }
                                         field--;
                                     }
@@ -756,148 +802,6 @@ public class Node {
         }
     }
     
-     /**
-     * @description Stores reconstruction data for broadcast, otherwise this
-     * method is the same as the standard broadcast method
-     * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
-     * @param reciever id of the receiving node
-     * @param Nodes all nodes populating the environment.
-     * @param dataRecord where Strings of data are stored for reconstruction
-     * 
-     */
-    
-    public void broadcast(int messageType, int reciever, ArrayList<Node> Nodes, 
-            ArrayList<String> dataRecord){
-        if(this != Nodes.get(reciever) && !fakeDestination[messageType]){
-            Random selector = new Random();                                     //This is used for the Gossip Methods                                                              
-            switch (messageType){
-                case 0: //Flood infects all nearby eligible nodes
-                    if(iseligible(Nodes.get(reciever))){
-                        infect(messageType, Nodes.get(reciever), dataRecord);                       
-                        if(useFakeDestination)
-                            fakeDestination[messageType] = true;
-                    }
-                    else{
-                        for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
-                            int node = eligibleNeighbors.get(messageType).get(i);
-                            if(uninfectedNeighbors.get(messageType).contains(node)){
-                                infect(messageType, Nodes.get(node), dataRecord);                             
-                            }
-                        }
-                    }
-                    break;
-
-                case 1:
-                    if(transmitionData[1][1] == 1){
-                       if(iseligible(Nodes.get(reciever))){
-                            infect(messageType, Nodes.get(reciever), dataRecord);                         
-                            if(useFakeDestination)    
-                                fakeDestination[messageType] = true;
-                        }
-                        else{
-                            for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
-                                int node = eligibleNeighbors.get(messageType).get(i);
-                                infect(messageType, Nodes.get(node), dataRecord);                              
-                            }
-                        } 
-                    }
-                    else if(transmitionData[1][1] != 1 && selector.nextInt(100)>=20){//Gossip 80%
-                        if(iseligible(Nodes.get(reciever))){
-                            infect(messageType, Nodes.get(reciever), dataRecord);                         
-                            if(useFakeDestination)
-                                fakeDestination[messageType] = true;
-                        }
-                        else{
-                            for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
-                                int node = eligibleNeighbors.get(messageType).get(i);
-                                if(uninfectedNeighbors.get(messageType).contains(node)){
-                                    infect(messageType, Nodes.get(node), dataRecord);                                  
-                                }
-                            }
-                        }
-                    }
-                    break;
-                case 2:
-                    if(transmitionData[1][2] == 1){
-                       if(iseligible(Nodes.get(reciever))){
-                            infect(messageType, Nodes.get(reciever), dataRecord);                         
-                            if(useFakeDestination)
-                                fakeDestination[messageType] = true;
-                        }
-                        else{
-                            for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
-                                int node = eligibleNeighbors.get(messageType).get(i);
-                                infect(messageType, Nodes.get(node), dataRecord);                             
-                            }
-                        } 
-                    }
-                    else if(selector.nextInt(100)>=40){
-                        if(iseligible(Nodes.get(reciever))){
-                            infect(messageType, Nodes.get(reciever), dataRecord);                          
-                            if(useFakeDestination)
-                                fakeDestination[messageType] = true;
-                        }
-                        else{
-                            for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
-                                int node = eligibleNeighbors.get(messageType).get(i);
-                                if(uninfectedNeighbors.get(messageType).contains(node)){
-                                    infect(messageType, Nodes.get(node), dataRecord);                                  
-                                }
-                            }
-                        }
-                    }
-                    break;
-                case 3:                                                         //Infect
-                    if(iseligible(Nodes.get(reciever))){
-                        infect(Nodes.get(reciever), dataRecord);                     
-                        if(useFakeDestination)
-                            fakeDestination[messageType] = true;
-                    }
-
-                    else{
-                        d = uninfectedNeighbors.get(messageType).size();
-                        
-                        if(transmitionData[1][3] == 1){
-                                k = uninfectedNeighbors.get(messageType).size(); //(k = degree of origin node)
-                                k2 = (int)Math.pow((uninfectedNeighbors.get(messageType).size()), 2);
-
-                                //originating node infects all eligible neighbor nodes
-                                for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
-                                    int node = eligibleNeighbors.get(messageType).get(i);
-                                    infect(Nodes.get(node), dataRecord);                               
-                                }
-                            }
-                            else{
-                                if(uninfectedNeighbors.get(messageType).size() > 0){
-                                    calculateAlpha();                               
-                                    if(alpha == 1){
-                                        for(int i = 0; i < eligibleNeighbors.get(messageType).size(); ++i){
-                                            int node = eligibleNeighbors.get(messageType).get(i);
-                                            if(uninfectedNeighbors.get(messageType).contains(node)){
-                                                infect(Nodes.get(node), dataRecord);                                             
-                                            }
-                                        }
-                                    }
-                                    else{
-                                        //sortByExpectedRange(Nodes, uninfectedNeighbors.get(messageType));
-                                        rangeSort(Nodes, uninfectedNeighbors.get(messageType));
-                                        double field = uninfectedNeighbors.get(messageType).size(); 
-                                        for(int i = 0; (1.0 - alpha) <= (field/(double)uninfectedNeighbors.get(messageType).size()); i++){
-                                            int node = uninfectedNeighbors.get(messageType).get(i);
-                                            if(eligibleNeighbors.get(messageType).contains(node)){
-                                                infect(Nodes.get(node), dataRecord);                                               
-                                            }
-                                            field--;
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                break;
-            }
-        }
-    }
-    
     /**
      * @description calculates alpha for calling node based off alpha and r 
      * values of parent node along with generation and number of uninfected
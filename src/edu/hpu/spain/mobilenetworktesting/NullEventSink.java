@@ -0,0 +1,70 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+/**
+ * @description SimulationEventSink that ignores every event. The methods are
+ * empty so the JIT inlines them away and a simulation that is not recorded
+ * pays nothing for the events.
+ * @author Brian Spain
+ */
+
+public final class NullEventSink implements SimulationEventSink {
+
+    public static final NullEventSink INSTANCE = new NullEventSink();
+
+    private NullEventSink(){
+    }
+
+    @Override
+    public void header(int senderX, int senderY, int recieverX, int recieverY) {
+    }
+
+    @Override
+    public void tick(int t) {
+    }
+
+    @Override
+    public boolean keyframeDue(int t) {
+        return false;
+    }
+
+    @Override
+    public void keyframe(int t, int population) {
+    }
+
+    @Override
+    public void nodeState(int id, double x, double y, int direction,
+            int flood, int gossip80, int gossip60, int infect) {
+    }
+
+    @Override
+    public void start(int id, int x, int y, int direction, int buffer) {
+    }
+
+    @Override
+    public void turn(int id, double x, double y, int direction) {
+    }
+
+    @Override
+    public void broadcast(int id, int messageType, int x, int y) {
+    }
+
+    @Override
+    public void message(int sender, int target, int messageType, int x, int y) {
+    }
+
+    @Override
+    public void infectMessage(int sender, int target, double k, double k2,
+            double alpha) {
+    }
+
+    @Override
+    public void nodeResult(int id, int messageType, int generation,
+            int received, int children, int neighbors, int uninfectedNeighbors,
+            double alpha) {
+    }
+
+    @Override
+    public void finish(int flood, int gossip80, int gossip60, int infect) {
+    }
+}
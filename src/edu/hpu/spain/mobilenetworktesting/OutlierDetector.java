@@ -0,0 +1,186 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @description flags simulations that take far longer than the others.
+ * Every environment index has its own QuantileSketch of simulation times and
+ * a simulation is an outlier if it took longer than the chosen percentile of
+ * the simulations of its environment before it. Environments differ in
+ * population (popInc), so a pooled percentile would flag the largest ones
+ * every round and never the stragglers of the small ones. The first warmup
+ * simulations of an environment are only counted, since the percentile
+ * means little before. Outliers are logged with their seed and parameters
+ * and kept for SimulationBatch, which can run them again in recording mode.
+ * @author Brian Spain
+ */
+
+public class OutlierDetector {
+
+    public static final int DEFAULT_WARMUP = 100;
+
+    /**
+     * @description one simulation that took longer than the threshold
+     */
+
+    public static final class Outlier {
+        private final TraceParameters parameters;
+        private final long seed, nanos, thresholdNanos;
+        private File trace;
+
+        Outlier(TraceParameters parameters, long seed, long nanos,
+                long thresholdNanos){
+            this.parameters = parameters;
+            this.seed = seed;
+            this.nanos = nanos;
+            this.thresholdNanos = thresholdNanos;
+        }
+
+        /**
+         * @return parameters, round and environment of the simulation
+         */
+
+        public TraceParameters getParameters(){
+            return parameters;
+        }
+
+        public long getSeed(){
+            return seed;
+        }
+
+        public long getNanos(){
+            return nanos;
+        }
+
+        /**
+         * @return the percentile the simulation exceeded, in nanoseconds
+         */
+
+        public long getThresholdNanos(){
+            return thresholdNanos;
+        }
+
+        /**
+         * @return trace of the run in recording mode, null if the simulation
+         * was not run again
+         */
+
+        public File getTrace(){
+            return trace;
+        }
+
+        void setTrace(File trace){
+            this.trace = trace;
+        }
+    }
+
+    private final double percentile;
+    private final int warmup, maxOutliers;
+    private final HashMap<Integer, QuantileSketch> latencies;
+    private final ArrayList<Outlier> outliers;
+    private long flagged;
+
+    /**
+     * @param percentile simulations above this percentile are outliers, for
+     * example 0.99
+     */
+
+    public OutlierDetector(double percentile){
+        this(percentile, DEFAULT_WARMUP, 100);
+    }
+
+    /**
+     * @param percentile simulations above this percentile are outliers
+     * @param warmup simulations counted per environment before any of the
+     * environment is flagged
+     * @param maxOutliers outliers kept, later ones are only logged
+     */
+
+    public OutlierDetector(double percentile, int warmup, int maxOutliers){
+        this.percentile = percentile;
+        this.warmup = warmup;
+        this.maxOutliers = maxOutliers;
+        this.latencies = new HashMap<>();
+        this.outliers = new ArrayList<>();
+    }
+
+    /**
+     * @description counts the time of one simulation in the sketch of its
+     * environment
+     * @param parameters parameters, round and environment of the simulation
+     * @param seed seed of the environment
+     * @param nanos wall clock time of the simulation
+     * @return the outlier if the simulation is one and is kept, else null
+     */
+
+    public synchronized Outlier offer(TraceParameters parameters, long seed,
+            long nanos){
+        QuantileSketch latencies = this.latencies.computeIfAbsent(
+                parameters.getEnvironment(), (environment) -> 
+                        new QuantileSketch());
+        double millis = nanos / 1e6;
+        double threshold = latencies.getQuantile(percentile);
+        boolean outlier = latencies.getCount() >= warmup && millis > threshold;
+        latencies.add(millis);
+        if(!outlier) return null;
+        ++flagged;
+        Logger.getLogger(OutlierDetector.class.getName()).log(Level.WARNING,
+                "Slow simulation {0} seed {1}: {2} ms, p{3} is {4} ms",
+                new Object[]{parameters.toFileName("trace"),
+                    Long.toString(seed), millis, 100 * percentile, threshold});
+        if(outliers.size() >= maxOutliers) return null;
+        Outlier kept = new Outlier(parameters, seed, nanos,
+                (long)(threshold * 1e6));
+        outliers.add(kept);
+        return kept;
+    }
+
+    public double getPercentile(){
+        return percentile;
+    }
+
+    /**
+     * @param environment environment index
+     * @return current threshold of the environment in milliseconds, NaN
+     * before any simulation of it
+     */
+
+    public synchronized double getThreshold(int environment){
+        QuantileSketch sketch = latencies.get(environment);
+        return sketch == null ? Double.NaN : sketch.getQuantile(percentile);
+    }
+
+    /**
+     * @return time of every simulation counted, in milliseconds, merged over
+     * the environments
+     */
+
+    public synchronized QuantileSketch getLatencies(){
+        QuantileSketch merged = new QuantileSketch();
+        latencies.values().forEach(merged::merge);
+        return merged;
+    }
+
+    /**
+     * @return number of outliers, including those that were not kept
+     */
+
+    public synchronized long getFlagged(){
+        return flagged;
+    }
+
+    /**
+     * @return the kept outliers, in the order they were found
+     */
+
+    public synchronized List<Outlier> getOutliers(){
+        return Collections.unmodifiableList(new ArrayList<>(outliers));
+    }
+}
@@ -0,0 +1,183 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @description counts and times the phases of the simulations: node
+ * movement, neighbor discovery (first pictures), broadcasts, extraction of
+ * the results, environment generation, adding results to the dataCompiler
+ * and handing events to the trace writers. Every simulation thread adds to
+ * the same striped counters (LongAdder), so threads do not contend on them.
+ *
+ * The metrics are off unless setEnabled(true) is called or the JVM is
+ * started with -Dmobilenetworktesting.metrics=true, and can be switched at
+ * any time. While they are off start() reads one volatile flag and stop()
+ * does nothing. Phases that are running while the metrics are switched on
+ * are not counted.
+ *
+ * report() writes a snapshot periodically from a background thread, to a
+ * file that is replaced as a whole or as a log line.
+ * @author Brian Spain
+ */
+
+public final class PhaseMetrics {
+
+    /**
+     * @description the measured phases
+     */
+
+    public enum Phase { MOVE, DISCOVER, BROADCAST, EXTRACT, GENERATE, COMPILE,
+        TRACE }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final LongAdder[] COUNTS = adders(), NANOS = adders();
+    private static volatile boolean enabled =
+            Boolean.getBoolean("mobilenetworktesting.metrics");
+    private static final SnapshotReporter REPORTER = new SnapshotReporter(
+            PhaseMetrics.class, PhaseMetrics::snapshot,
+            PhaseMetrics::writeProperties);
+
+    private PhaseMetrics(){
+    }
+
+    private static LongAdder[] adders(){
+        LongAdder[] adders = new LongAdder[Phase.values().length];
+        for(int i = 0; i < adders.length; i++){
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    public static boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * @param enabled true counts the phases from now on
+     */
+
+    public static void setEnabled(boolean enabled){
+        PhaseMetrics.enabled = enabled;
+    }
+
+    /**
+     * @return start of a phase to pass to stop(), 0 if the metrics are off
+     */
+
+    public static long start(){
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @description counts one execution of phase
+     * @param phase the phase that ended
+     * @param start value start() returned when the phase began
+     */
+
+    public static void stop(Phase phase, long start){
+        if(start == 0) return;
+        COUNTS[phase.ordinal()].increment();
+        NANOS[phase.ordinal()].add(System.nanoTime() - start);
+    }
+
+    /**
+     * @param phase a phase
+     * @return executions of phase counted since the last reset()
+     */
+
+    public static long getCount(Phase phase){
+        return COUNTS[phase.ordinal()].sum();
+    }
+
+    /**
+     * @param phase a phase
+     * @return nanoseconds spent in phase since the last reset(), summed over
+     * all threads
+     */
+
+    public static long getNanos(Phase phase){
+        return NANOS[phase.ordinal()].sum();
+    }
+
+    /**
+     * @description sets every counter to zero
+     */
+
+    public static void reset(){
+        for(int i = 0; i < PHASES.length; i++){
+            COUNTS[i].reset();
+            NANOS[i].reset();
+        }
+    }
+
+    /**
+     * @return the counters as one line, phase=count/milliseconds for every
+     * phase
+     */
+
+    public static String snapshot(){
+        StringBuilder line = new StringBuilder();
+        for(Phase phase : PHASES){
+            if(line.length() > 0) line.append(' ');
+            line.append(phase.name().toLowerCase()).append('=')
+                    .append(getCount(phase)).append('/')
+                    .append(getNanos(phase) / 1000000).append("ms");
+        }
+        return line.toString();
+    }
+
+    /**
+     * @description writes the counters as properties, phase.count and
+     * phase.nanos for every phase, replacing file as a whole so readers never
+     * see half a snapshot
+     * @param file destination
+     * @throws IOException if the file cannot be written
+     */
+
+    public static void writeSnapshot(File file) throws IOException{
+        REPORTER.write(file);
+    }
+
+    private static void writeProperties(Writer output) throws IOException{
+        for(Phase phase : PHASES){
+            String name = phase.name().toLowerCase();
+            output.write(name + ".count=" + getCount(phase) + "\n");
+            output.write(name + ".nanos=" + getNanos(phase) + "\n");
+        }
+    }
+
+    /**
+     * @description turns the metrics on and starts writing a snapshot every
+     * period milliseconds until stopReporting() is called, replacing the
+     * previous reporter
+     * @param file snapshot file, null logs the snapshot instead
+     * @param period milliseconds between snapshots
+     */
+
+    public static void report(File file, long period){
+        setEnabled(true);
+        REPORTER.start(file, period);
+    }
+
+    /**
+     * @description stops the reporter started by report(), the metrics stay
+     * on
+     */
+
+    public static void stopReporting(){
+        REPORTER.stop();
+    }
+
+    /**
+     * @description writes one snapshot to file or the log
+     * @param file snapshot file, null logs the snapshot instead
+     */
+
+    public static void export(File file){
+        REPORTER.export(file);
+    }
+}
@@ -0,0 +1,189 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * @description fixed size histogram of non-negative values with buckets
+ * growing geometrically, so every quantile it reports is within a relative
+ * error of the true value (the bucket scheme of DDSketch). Values at or
+ * below the smallest bucket are counted as zero and values above the
+ * largest bucket in the largest one, the exact minimum and maximum are kept
+ * besides. Adding a value costs one logarithm, two sketches with the same
+ * accuracy and range are merged by adding their buckets, and writeTo() and
+ * readFrom() move a sketch between processes.
+ * @author Brian Spain
+ */
+
+public class QuantileSketch {
+
+    public static final double DEFAULT_ACCURACY = 0.01;
+    public static final double DEFAULT_SMALLEST = 1e-3, DEFAULT_LARGEST = 1e7;
+
+    private final double accuracy, smallest, largest, logGamma;
+    private final int offset, last;
+    private final long[] buckets;
+    private long zeros, count;
+    private double min, max;
+
+    public QuantileSketch(){
+        this(DEFAULT_ACCURACY, DEFAULT_SMALLEST, DEFAULT_LARGEST);
+    }
+
+    /**
+     * @param accuracy relative error of the reported quantiles
+     * @param smallest values up to this one count as zero
+     * @param largest values above this one fall in the largest bucket
+     */
+
+    public QuantileSketch(double accuracy, double smallest, double largest){
+        this.accuracy = accuracy;
+        this.smallest = smallest;
+        this.largest = largest;
+        this.logGamma = Math.log((1 + accuracy) / (1 - accuracy));
+        this.offset = index(smallest);
+        this.last = index(largest);
+        this.buckets = new long[last - offset + 1];
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+    }
+
+    private int index(double value){
+        return (int)Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * @param value value to add, NaN is ignored
+     */
+
+    public void add(double value){
+        if(Double.isNaN(value)) return;
+        ++count;
+        if(value < min) min = value;
+        if(value > max) max = value;
+        if(value <= smallest){
+            ++zeros;
+            return;
+        }
+        ++buckets[Math.min(index(value), last) - offset];
+    }
+
+    /**
+     * @description adds every value of other, as if they had been added here
+     * @param other sketch with the same accuracy and range, not modified
+     */
+
+    public void merge(QuantileSketch other){
+        if(other.buckets.length != buckets.length ||
+                other.accuracy != accuracy || other.smallest != smallest){
+            throw new IllegalArgumentException("Sketches differ in accuracy or range");
+        }
+        count += other.count;
+        zeros += other.zeros;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        for(int i = 0; i < buckets.length; i++){
+            buckets[i] += other.buckets[i];
+        }
+    }
+
+    public long getCount(){
+        return count;
+    }
+
+    /**
+     * @return number of buckets, fixed by accuracy and range
+     */
+
+    public int getBucketCount(){
+        return buckets.length;
+    }
+
+    /**
+     * @return smallest value added, NaN if there is none
+     */
+
+    public double getMin(){
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * @return largest value added, NaN if there is none
+     */
+
+    public double getMax(){
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return estimate of the quantile, NaN if no value was added
+     */
+
+    public double getQuantile(double quantile){
+        if(count == 0) return Double.NaN;
+        if(quantile <= 0) return min;
+        if(quantile >= 1) return max;
+        long rank = (long)(quantile * (count - 1));
+        long seen = zeros;
+        if(rank < seen) return Math.max(min, Math.min(0, max));
+        for(int i = 0; i < buckets.length; i++){
+            seen += buckets[i];
+            if(rank < seen){
+                double value = 2 * Math.exp((i + offset) * logGamma) /
+                        (1 + Math.exp(logGamma));
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @description writes the sketch, including its accuracy and range
+     * @param output destination
+     * @throws IOException if output cannot be written
+     */
+
+    public void writeTo(DataOutput output) throws IOException{
+        output.writeDouble(accuracy);
+        output.writeDouble(smallest);
+        output.writeDouble(largest);
+        output.writeLong(count);
+        output.writeLong(zeros);
+        output.writeDouble(min);
+        output.writeDouble(max);
+        int first = 0, end = buckets.length;
+        while(first < end && buckets[first] == 0) ++first;
+        while(end > first && buckets[end - 1] == 0) --end;
+        output.writeInt(first);
+        output.writeInt(end - first);
+        for(int i = first; i < end; i++){
+            output.writeLong(buckets[i]);
+        }
+    }
+
+    /**
+     * @param input source positioned at a sketch written by writeTo()
+     * @return the sketch
+     * @throws IOException if input cannot be read or holds no sketch
+     */
+
+    public static QuantileSketch readFrom(DataInput input) throws IOException{
+        QuantileSketch sketch = new QuantileSketch(input.readDouble(),
+                input.readDouble(), input.readDouble());
+        sketch.count = input.readLong();
+        sketch.zeros = input.readLong();
+        sketch.min = input.readDouble();
+        sketch.max = input.readDouble();
+        int first = input.readInt(), length = input.readInt();
+        if(first < 0 || length < 0 || first + length > sketch.buckets.length){
+            throw new IOException("Corrupt quantile sketch");
+        }
+        for(int i = first; i < first + length; i++){
+            sketch.buckets[i] = input.readLong();
+        }
+        return sketch;
+    }
+}
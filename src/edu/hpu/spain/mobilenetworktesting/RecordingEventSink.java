@@ -0,0 +1,267 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.Arrays;
+
+/**
+ * @description SimulationEventSink that stores every event in primitive
+ * arrays. Each event takes one kind byte, four int slots and three double
+ * slots, nothing is converted to a String until the events are replayed
+ * into another sink (for example a TextTraceWriter) after the run.
+ * @author Brian Spain
+ */
+
+public class RecordingEventSink implements SimulationEventSink {
+
+    static final byte HEADER = 0, TICK = 1, START = 2, TURN = 3, BROADCAST = 4,
+            MESSAGE = 5, INFECT_MESSAGE = 6, FINISH = 7, KEYFRAME = 8,
+            NODE_STATE = 9, NODE_RESULT = 10;
+
+    private static final int INTS = 4, DOUBLES = 3;
+
+    private byte[] kinds;
+    private int[] ints;
+    private double[] doubles;
+    private int size;
+    private int keyframeInterval;
+
+    public RecordingEventSink(){
+        this(1024);
+    }
+
+    /**
+     * @param capacity number of events to allocate room for up front
+     */
+
+    public RecordingEventSink(int capacity){
+        capacity = Math.max(capacity, 16);
+        kinds = new byte[capacity];
+        ints = new int[capacity * INTS];
+        doubles = new double[capacity * DOUBLES];
+    }
+
+    /**
+     * @return number of events recorded
+     */
+
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @description asks the simulation for a keyframe every interval ticks
+     * @param interval ticks between keyframes, 0 for no keyframes (default)
+     */
+
+    public void setKeyframeInterval(int interval){
+        this.keyframeInterval = interval;
+    }
+
+    public int getKeyframeInterval(){
+        return keyframeInterval;
+    }
+
+    /**
+     * @description forgets every recorded event but keeps the arrays so the
+     * sink can be reused without allocating.
+     */
+
+    public void clear(){
+        size = 0;
+    }
+
+    /**
+     * @description sends every recorded event, in order, to target
+     * @param target sink to replay the events into
+     */
+
+    public void replayTo(SimulationEventSink target){
+        for(int e = 0; e < size; e++){
+            int i = e * INTS;
+            int d = e * DOUBLES;
+            switch(kinds[e]){
+                case HEADER:
+                    target.header(ints[i], ints[i+1], ints[i+2], ints[i+3]);
+                    break;
+                case TICK:
+                    target.tick(ints[i]);
+                    break;
+                case START:
+                    target.start(ints[i], ints[i+1], ints[i+2], ints[i+3],
+                            (int)doubles[d]);
+                    break;
+                case TURN:
+                    target.turn(ints[i], doubles[d], doubles[d+1], ints[i+1]);
+                    break;
+                case BROADCAST:
+                    target.broadcast(ints[i], ints[i+1], ints[i+2], ints[i+3]);
+                    break;
+                case MESSAGE:
+                    target.message(ints[i], ints[i+1], ints[i+2], ints[i+3],
+                            (int)doubles[d]);
+                    break;
+                case INFECT_MESSAGE:
+                    target.infectMessage(ints[i], ints[i+1], doubles[d],
+                            doubles[d+1], doubles[d+2]);
+                    break;
+                case FINISH:
+                    target.finish(ints[i], ints[i+1], ints[i+2], ints[i+3]);
+                    break;
+                case NODE_RESULT:
+                    target.nodeResult(ints[i], ints[i+1] & 0xff, ints[i+1] >> 8,
+                            ints[i+2], ints[i+3], (int)doubles[d],
+                            (int)doubles[d+1], doubles[d+2]);
+                    break;
+                case KEYFRAME:
+                    target.keyframe(ints[i], ints[i+1]);
+                    break;
+                case NODE_STATE:
+                    target.nodeState(ints[i], doubles[d], doubles[d+1],
+                            ints[i+1], ints[i+2] >> 16, (short)ints[i+2],
+                            ints[i+3] >> 16, (short)ints[i+3]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @param other another recording
+     * @return index of the first event that differs from other, or size()
+     * if one recording is a prefix of the other, -1 if they are identical.
+     * Doubles must be the same bits.
+     */
+
+    int firstDifference(RecordingEventSink other){
+        int common = Math.min(size, other.size);
+        for(int e = 0; e < common; e++){
+            if(kinds[e] != other.kinds[e]) return e;
+            for(int i = e * INTS; i < (e + 1) * INTS; i++){
+                if(ints[i] != other.ints[i]) return e;
+            }
+            for(int d = e * DOUBLES; d < (e + 1) * DOUBLES; d++){
+                if(Double.doubleToLongBits(doubles[d]) !=
+                        Double.doubleToLongBits(other.doubles[d])) return e;
+            }
+        }
+        return size == other.size ? -1 : common;
+    }
+
+    /**
+     * @param event index of an event
+     * @return the kind and raw fields of the event, "end" past the last one
+     */
+
+    String describe(int event){
+        if(event >= size) return "end";
+        int i = event * INTS, d = event * DOUBLES;
+        return "kind " + kinds[event] + " " + ints[i] + " " + ints[i+1] + " " +
+                ints[i+2] + " " + ints[i+3] + " " + doubles[d] + " " +
+                doubles[d+1] + " " + doubles[d+2];
+    }
+
+    /**
+     * @description reserves the next event slot, growing the arrays if needed
+     * @param kind event kind
+     * @return index of the event
+     */
+
+    private int next(byte kind){
+        if(size == kinds.length){
+            int capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            ints = Arrays.copyOf(ints, capacity * INTS);
+            doubles = Arrays.copyOf(doubles, capacity * DOUBLES);
+        }
+        kinds[size] = kind;
+        return size++;
+    }
+
+    private void put(byte kind, int a, int b, int c, int d, double x, double y,
+            double z){
+        int e = next(kind);
+        int i = e * INTS;
+        ints[i] = a;
+        ints[i+1] = b;
+        ints[i+2] = c;
+        ints[i+3] = d;
+        i = e * DOUBLES;
+        doubles[i] = x;
+        doubles[i+1] = y;
+        doubles[i+2] = z;
+    }
+
+    @Override
+    public void header(int senderX, int senderY, int recieverX, int recieverY) {
+        put(HEADER, senderX, senderY, recieverX, recieverY, 0, 0, 0);
+    }
+
+    @Override
+    public void tick(int t) {
+        put(TICK, t, 0, 0, 0, 0, 0, 0);
+    }
+
+    @Override
+    public boolean keyframeDue(int t) {
+        return keyframeInterval > 0 && t % keyframeInterval == 0;
+    }
+
+    @Override
+    public void keyframe(int t, int population) {
+        put(KEYFRAME, t, population, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * @description the four generations are packed two per int slot, which
+     * holds generations up to Short.MAX_VALUE
+     */
+
+    @Override
+    public void nodeState(int id, double x, double y, int direction,
+            int flood, int gossip80, int gossip60, int infect) {
+        put(NODE_STATE, id, direction, (flood << 16) | (gossip80 & 0xffff),
+                (gossip60 << 16) | (infect & 0xffff), x, y, 0);
+    }
+
+    @Override
+    public void start(int id, int x, int y, int direction, int buffer) {
+        put(START, id, x, y, direction, buffer, 0, 0);
+    }
+
+    @Override
+    public void turn(int id, double x, double y, int direction) {
+        put(TURN, id, direction, 0, 0, x, y, 0);
+    }
+
+    @Override
+    public void broadcast(int id, int messageType, int x, int y) {
+        put(BROADCAST, id, messageType, x, y, 0, 0, 0);
+    }
+
+    @Override
+    public void message(int sender, int target, int messageType, int x, int y) {
+        put(MESSAGE, sender, target, messageType, x, y, 0, 0);
+    }
+
+    @Override
+    public void infectMessage(int sender, int target, double k, double k2,
+            double alpha) {
+        put(INFECT_MESSAGE, sender, target, 0, 0, k, k2, alpha);
+    }
+
+    /**
+     * @description the generation shares an int slot with the message type
+     */
+
+    @Override
+    public void nodeResult(int id, int messageType, int generation,
+            int received, int children, int neighbors, int uninfectedNeighbors,
+            double alpha) {
+        put(NODE_RESULT, id, (generation << 8) | messageType, received,
+                children, neighbors, uninfectedNeighbors, alpha);
+    }
+
+    @Override
+    public void finish(int flood, int gossip80, int gossip60, int infect) {
+        put(FINISH, flood, gossip80, gossip60, infect, 0, 0, 0);
+    }
+}
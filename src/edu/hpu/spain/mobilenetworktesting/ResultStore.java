@@ -0,0 +1,296 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @description appends one row per simulation to a memory-mapped columnar
+ * file. Rows are written straight into the mapped block they belong to, so
+ * the heap does not grow with the number of rows.
+ *
+ * Layout, every number little-endian:
+ *
+ * Header, HEADER_BYTES long:
+ * 0: magic "MNTR" (int 0x52544e4d) 4: version (int) 8: rows per block (int)
+ * 12: number of columns (int) 16: number of rows (long), updated with every
+ * full block and on close
+ * 24: one 32 byte descriptor per column: width in bytes (int, 4 for int32,
+ * 8 for int64) followed by the column name, ASCII padded with zeros
+ *
+ * Blocks follow the header. Every block holds rows-per-block rows and is
+ * stored column after column: all values of the first column, then all of
+ * the second and so on, the last block is padded to full size. The value of
+ * column c in row r is at
+ * HEADER_BYTES + (r / rowsPerBlock) * blockBytes + columnOffset[c] +
+ * (r % rowsPerBlock) * width[c]
+ * where blockBytes is rowsPerBlock times the sum of the widths and
+ * columnOffset[c] is rowsPerBlock times the sum of the widths before c.
+ *
+ * Columns are listed in COLUMNS, per message type they are suffixed 0-3
+ * (flood, gossip80, gossip60, infect). seed and the messages are int64
+ * (version 1 stored the messages as int32), the others int32. Generations
+ * of success are -1 for failures, alphas are averages in thousandths as
+ * dataCompiler prints them.
+ * @author Brian Spain
+ */
+
+public class ResultStore implements Closeable {
+
+    public static final int MAGIC = 0x52544e4d;
+    public static final int VERSION = 2;
+    public static final int HEADER_BYTES = 4096;
+    public static final int DEFAULT_ROWS_PER_BLOCK = 65536;
+
+    public static final String[] COLUMNS = {
+        "round", "environment", "seed", "population",
+        "success0", "success1", "success2", "success3",
+        "infected0", "infected1", "infected2", "infected3",
+        "messages0", "messages1", "messages2", "messages3",
+        "highest0", "highest1", "highest2", "highest3",
+        "alphaBefore", "alphaAfter", "alphaFailure"
+    };
+    private static final int SEED = 2, MESSAGES = 12;
+
+    private final String name;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int rowsPerBlock;
+    private final int[] widths, offsets;
+    private final long blockBytes;
+    private MappedByteBuffer block;
+    private long rows;
+
+    /**
+     * @param file file to create, an existing file is overwritten
+     * @throws IOException if the file cannot be created
+     */
+
+    public ResultStore(File file) throws IOException{
+        this(file, DEFAULT_ROWS_PER_BLOCK);
+    }
+
+    /**
+     * @param file file to create, an existing file is overwritten
+     * @param rowsPerBlock rows per block, rounded up to a multiple of 8
+     * @throws IOException if the file cannot be created
+     */
+
+    public ResultStore(File file, int rowsPerBlock) throws IOException{
+        this.rowsPerBlock = Math.max(8, (rowsPerBlock + 7) & ~7);
+        this.widths = new int[COLUMNS.length];
+        this.offsets = new int[COLUMNS.length];
+        int rowBytes = 0;
+        for(int c = 0; c < COLUMNS.length; c++){
+            widths[c] = c == SEED || (c >= MESSAGES && c < MESSAGES + 4) ?
+                    8 : 4;
+            offsets[c] = this.rowsPerBlock * rowBytes;
+            rowBytes += widths[c];
+        }
+        this.blockBytes = (long)this.rowsPerBlock * rowBytes;
+        if(blockBytes > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Blocks of " + rowsPerBlock +
+                    " rows exceed 2 GB");
+        }
+        this.name = file.getName();
+        this.file = new RandomAccessFile(file, "rw");
+        this.file.setLength(0);
+        this.channel = this.file.getChannel();
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, this.rowsPerBlock);
+        header.putInt(12, COLUMNS.length);
+        header.putLong(16, 0);
+        for(int c = 0; c < COLUMNS.length; c++){
+            int position = 24 + 32 * c;
+            header.putInt(position, widths[c]);
+            byte[] name = COLUMNS[c].getBytes(StandardCharsets.US_ASCII);
+            for(int i = 0; i < name.length; i++){
+                header.put(position + 4 + i, name[i]);
+            }
+        }
+    }
+
+    /**
+     * @description appends the row of one finished simulation
+     * @param round round of the simulation
+     * @param environment environment index of the simulation
+     * @param seed seed the environment was generated from
+     * @param population number of nodes
+     * @param result result of the simulation
+     * @throws IOException if the next block cannot be mapped
+     */
+
+    public void append(int round, int environment, long seed, int population,
+            SimulationResult result) throws IOException{
+        int row = (int)(rows % rowsPerBlock);
+        if(row == 0){
+            Object checkpoint = JfrEvents.checkpoint();
+            block = channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_BYTES + rows / rowsPerBlock * blockBytes, blockBytes);
+            block.order(ByteOrder.LITTLE_ENDIAN);
+            JfrEvents.checkpoint(checkpoint, name, 
+                    HEADER_BYTES + (rows / rowsPerBlock + 1) * blockBytes);
+        }
+        int c = 0;
+        putInt(c++, row, round);
+        putInt(c++, row, environment);
+        block.putLong(offsets[c++] + row * 8, seed);
+        putInt(c++, row, population);
+        for(int messageType = 0; messageType < 4; messageType++){
+            putInt(c + messageType, row,
+                    result.getProtocol(messageType).successGeneration);
+            putInt(c + 4 + messageType, row,
+                    result.getProtocol(messageType).infected);
+            block.putLong(offsets[c + 8 + messageType] + row * 8,
+                    result.getProtocol(messageType).messages);
+            putInt(c + 12 + messageType, row,
+                    result.getProtocol(messageType).highestGeneration);
+        }
+        c += 16;
+        SimulationResult.Protocol infect = result.getProtocol(3);
+        putInt(c++, row, average(infect.alphaBefore, infect.activeBefore));
+        putInt(c++, row, average(infect.alphaAfter, infect.activeAfter));
+        putInt(c, row, infect.succeeded ? 0 :
+                average(infect.uninfectedAlpha, infect.uninfectedActive));
+        ++rows;
+        if(row == rowsPerBlock - 1) header.putLong(16, rows);
+    }
+
+    private void putInt(int column, int row, int value){
+        block.putInt(offsets[column] + row * 4, value);
+    }
+
+    private static int average(long thousandths, int nodes){
+        return nodes == 0 ? 0 : (int)(thousandths / nodes);
+    }
+
+    /**
+     * @return number of rows appended
+     */
+
+    public long getRows(){
+        return rows;
+    }
+
+    /**
+     * @description writes the number of rows and closes the file
+     */
+
+    @Override
+    public void close() throws IOException{
+        header.putLong(16, rows);
+        header.force();
+        if(block != null) block.force();
+        channel.close();
+        file.close();
+    }
+
+    /**
+     * @description read access to a file written by a ResultStore
+     */
+
+    public static final class Reader {
+        private final MappedByteBuffer[] blocks;
+        private final int rowsPerBlock, columns;
+        private final long rows, blockBytes;
+        private final String[] names;
+        private final int[] widths, offsets;
+
+        /**
+         * @description maps the header and every block on its own, so files
+         * of any size can be read (a single mapping is limited to 2 GB)
+         * @param file file written by a ResultStore
+         * @throws IOException if the file cannot be read or is no result
+         * store
+         */
+
+        public Reader(File file) throws IOException{
+            try (RandomAccessFile input = new RandomAccessFile(file, "r");
+                    FileChannel channel = input.getChannel()) {
+                long size = channel.size();
+                if(size < HEADER_BYTES){
+                    throw new IOException("Not a result store: " + file);
+                }
+                MappedByteBuffer header = channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                if(header.getInt(0) != MAGIC){
+                    throw new IOException("Not a result store: " + file);
+                }
+                rowsPerBlock = header.getInt(8);
+                columns = header.getInt(12);
+                rows = header.getLong(16);
+                names = new String[columns];
+                widths = new int[columns];
+                offsets = new int[columns];
+                int rowBytes = 0;
+                for(int c = 0; c < columns; c++){
+                    int position = 24 + 32 * c;
+                    widths[c] = header.getInt(position);
+                    byte[] name = new byte[28];
+                    for(int i = 0; i < name.length; i++){
+                        name[i] = header.get(position + 4 + i);
+                    }
+                    int length = 0;
+                    while(length < name.length && name[length] != 0) ++length;
+                    names[c] = new String(name, 0, length, StandardCharsets.US_ASCII);
+                    offsets[c] = rowsPerBlock * rowBytes;
+                    rowBytes += widths[c];
+                }
+                blockBytes = (long)rowsPerBlock * rowBytes;
+                long count = rowsPerBlock <= 0 ? -1 :
+                        (rows + rowsPerBlock - 1) / rowsPerBlock;
+                if(blockBytes > Integer.MAX_VALUE || rows < 0 || count < 0 ||
+                        HEADER_BYTES + count * blockBytes > size){
+                    throw new IOException("Corrupt result store: " + file);
+                }
+                blocks = new MappedByteBuffer[(int)count];
+                for(int b = 0; b < blocks.length; b++){
+                    blocks[b] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            HEADER_BYTES + b * blockBytes, blockBytes);
+                    blocks[b].order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+        }
+
+        public long getRows(){
+            return rows;
+        }
+
+        /**
+         * @param name column name, see COLUMNS
+         * @return index of the column, -1 if there is none
+         */
+
+        public int getColumn(String name){
+            for(int c = 0; c < columns; c++){
+                if(names[c].equals(name)) return c;
+            }
+            return -1;
+        }
+
+        /**
+         * @param column column index
+         * @param row row index
+         * @return the value, int32 columns widened
+         */
+
+        public long get(int column, long row){
+            MappedByteBuffer block = blocks[(int)(row / rowsPerBlock)];
+            int position = offsets[column] +
+                    (int)(row % rowsPerBlock) * widths[column];
+            return widths[column] == 8 ? block.getLong(position) :
+                    block.getInt(position);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+/**
+ * @description running mean and variance of a fixed number of metrics that
+ * are always observed together. Values are added one observation at a time
+ * with Welford's update and two sets of statistics are combined with Chan's
+ * formula, so shards of a batch can be summed up separately and merged
+ * without losing precision. Nothing is allocated after construction.
+ * @author Brian Spain
+ */
+
+public class RunningStatistics {
+
+    private long count;
+    private final double[] mean, squares;
+
+    /**
+     * @param metrics number of values in every observation
+     */
+
+    public RunningStatistics(int metrics){
+        this.mean = new double[metrics];
+        this.squares = new double[metrics];
+    }
+
+    /**
+     * @param values one observation, values beyond the number of metrics are
+     * ignored
+     */
+
+    public void add(double[] values){
+        ++count;
+        for(int i = 0; i < mean.length; i++){
+            double delta = values[i] - mean[i];
+            mean[i] += delta / count;
+            squares[i] += delta * (values[i] - mean[i]);
+        }
+    }
+
+    /**
+     * @description adds every observation of other, as if they had been added
+     * here
+     * @param other statistics over the same metrics, not modified
+     */
+
+    public void merge(RunningStatistics other){
+        if(other.count == 0) return;
+        if(count == 0){
+            count = other.count;
+            System.arraycopy(other.mean, 0, mean, 0, mean.length);
+            System.arraycopy(other.squares, 0, squares, 0, squares.length);
+            return;
+        }
+        long total = count + other.count;
+        for(int i = 0; i < mean.length; i++){
+            double delta = other.mean[i] - mean[i];
+            mean[i] += delta * other.count / total;
+            squares[i] += other.squares[i] +
+                    delta * delta * count * other.count / total;
+        }
+        count = total;
+    }
+
+    /**
+     * @return number of observations
+     */
+
+    public long getCount(){
+        return count;
+    }
+
+    public int getMetrics(){
+        return mean.length;
+    }
+
+    /**
+     * @param metric index of the metric
+     * @return mean of the metric, NaN without observations
+     */
+
+    public double getMean(int metric){
+        return count == 0 ? Double.NaN : mean[metric];
+    }
+
+    /**
+     * @param metric index of the metric
+     * @return population variance of the metric, NaN without observations
+     */
+
+    public double getVariance(int metric){
+        return count == 0 ? Double.NaN : Math.max(0, squares[metric] / count);
+    }
+
+    /**
+     * @param metric index of the metric
+     * @return population standard deviation of the metric
+     */
+
+    public double getStandardDeviation(int metric){
+        return Math.sqrt(getVariance(metric));
+    }
+}
@@ -0,0 +1,483 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @description predicts how long a batch runs and picks the number of worker
+ * threads and the simulations per task for this machine. A short
+ * calibration runs a few simulations of the smallest, the largest and two
+ * smaller populations on copies of the batch environment and fits the time
+ * of one simulation as
+ *
+ *   a + b * population * maxTime + c * population * neighbors * maxTime
+ *
+ * where neighbors is the expected number of neighbors at the density and
+ * range of the environment (moving and discovering neighbors grow with the
+ * population, broadcasts with the neighbors too). With more than one
+ * processor it also runs one simulation per processor at once, to see how
+ * much slower simulations get when they share the machine.
+ *
+ * A round is modelled as its environments split into tasks of consecutive
+ * environments, which the workers take in order, plus starting the workers
+ * and generating the environments. The choice is the worker count and task
+ * size with the shortest predicted batch.
+ * @author Brian Spain
+ */
+
+public class RuntimeEstimator {
+
+    public static final int DEFAULT_CALIBRATION = 5;
+
+    private static final int MIN_POPULATION = 10;
+    private static final int WARMUP_SIMULATIONS = 50;
+    private static final long WARMUP_NANOS = 200000000L;
+    private static final int FEATURES = 3;
+    private static final int[][] MODELS = {{0, 1, 2}, {1, 2}, {0, 2}, {0, 1},
+        {2}, {1}};
+
+    /**
+     * @description prediction and choice of one calibration
+     */
+
+    public static final class Estimate {
+        private final int[] populations;
+        private final int environments, rounds, cores, maxTime, width, height,
+                range;
+        private final double[] coefficients = new double[FEATURES];
+        private final ArrayList<Integer> samplePopulations = new ArrayList<>();
+        private final ArrayList<Double> sampleNanos = new ArrayList<>();
+        private double efficiency = 1;
+        private long threadNanos, taskNanos, calibrationNanos;
+        private double generationNanosPerNode;
+        private int workers, simsPerTask;
+
+        Estimate(int[] populations, int rounds, int cores, int maxTime,
+                int width, int height, int range){
+            this.populations = populations;
+            this.environments = populations.length;
+            this.rounds = rounds;
+            this.cores = cores;
+            this.maxTime = maxTime;
+            this.width = width;
+            this.height = height;
+            this.range = range;
+        }
+
+        double[] features(int population){
+            double neighbors = MemoryAccounting.expectedNeighbors(population,
+                    width, height, range);
+            return new double[]{1, (double)population * maxTime,
+                population * neighbors * maxTime};
+        }
+
+        /**
+         * @param population nodes in the environment
+         * @return predicted nanoseconds of one simulation on an idle machine
+         */
+
+        public double getSimulationNanos(int population){
+            double[] x = features(population);
+            double nanos = 0;
+            for(int f = 0; f < FEATURES; f++){
+                nanos += coefficients[f] * x[f];
+            }
+            return nanos;
+        }
+
+        /**
+         * @param workers threads running the simulations of a round
+         * @param simsPerTask environments a worker takes at once
+         * @return predicted nanoseconds of the batch
+         */
+
+        public double getBatchNanos(int workers, int simsPerTask){
+            int threads = Math.max(1, Math.min(workers, environments));
+            int active = Math.min(threads, cores);
+            double slowdown = cores <= 1 ? 1 :
+                    1 - (1 - efficiency) * (active - 1) / (cores - 1);
+            double[] free = new double[threads];
+            double work = 0;
+            long nodes = 0;
+            for(int first = 0; first < environments; first += simsPerTask){
+                int worker = 0;
+                for(int w = 1; w < threads; w++){
+                    if(free[w] < free[worker]) worker = w;
+                }
+                double task = taskNanos;
+                for(int i = first; i < Math.min(environments, first + simsPerTask); i++){
+                    task += getSimulationNanos(populations[i]) / slowdown;
+                }
+                free[worker] += task;
+                work += task;
+            }
+            for(int population : populations){
+                nodes += population;
+            }
+            /*
+                The round lasts as long as its busiest worker or, with more
+                workers than processors, as long as the processors need for
+                all tasks.
+            */
+            double simulating = Math.max(Arrays.stream(free).max().orElse(0),
+                    work / active);
+            double round = simulating + threads * (double)threadNanos + 
+                    nodes * generationNanosPerNode;
+            return round * rounds;
+        }
+
+        /**
+         * @return workers with the shortest predicted batch
+         */
+
+        public int getWorkers(){
+            return workers;
+        }
+
+        /**
+         * @return simulations per task with the shortest predicted batch
+         */
+
+        public int getSimsPerTask(){
+            return simsPerTask;
+        }
+
+        /**
+         * @return fraction of the single thread speed a simulation keeps
+         * when every processor runs one
+         */
+
+        public double getParallelEfficiency(){
+            return efficiency;
+        }
+
+        /**
+         * @return a, b and c of the cost model
+         */
+
+        public double[] getCoefficients(){
+            return coefficients.clone();
+        }
+
+        /**
+         * @return nanoseconds the calibration took
+         */
+
+        public long getCalibrationNanos(){
+            return calibrationNanos;
+        }
+
+        void choose(){
+            TreeSet<Integer> candidates = new TreeSet<>();
+            for(int w = 1; w <= Math.min(environments, 2 * cores); w++){
+                candidates.add(w);
+            }
+            candidates.add(environments);
+            double best = Double.POSITIVE_INFINITY;
+            for(int w : candidates){
+                int most = (environments + w - 1) / w;
+                TreeSet<Integer> sizes = new TreeSet<>();
+                for(int k = 1; k < most; k *= 2){
+                    sizes.add(k);
+                }
+                sizes.add(most);
+                for(int k : sizes){
+                    double nanos = getBatchNanos(w, k);
+                    if(nanos < best){
+                        best = nanos;
+                        workers = w;
+                        simsPerTask = k;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String toString(){
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.ROOT,
+                    "Calibration: %d populations in %s, %d processors, "
+                    + "parallel efficiency %.2f%n", sampleNanos.size(),
+                    duration(calibrationNanos), cores, efficiency));
+            text.append(String.format(Locale.ROOT,
+                    "Model: %.4g + %.4g*population*maxTime + "
+                    + "%.4g*population*neighbors*maxTime ns%n",
+                    coefficients[0], coefficients[1], coefficients[2]));
+            for(int s = 0; s < sampleNanos.size(); s++){
+                int population = samplePopulations.get(s);
+                text.append(String.format(Locale.ROOT,
+                        "  population %d: measured %s, model %s%n", population,
+                        duration(sampleNanos.get(s).longValue()),
+                        duration((long)getSimulationNanos(population))));
+            }
+            text.append(String.format(Locale.ROOT,
+                    "One thread per environment: %s%n",
+                    duration((long)getBatchNanos(environments, 1))));
+            text.append(String.format(Locale.ROOT,
+                    "Chosen: %d workers, %d simulations per task: %s",
+                    workers, simsPerTask,
+                    duration((long)getBatchNanos(workers, simsPerTask))));
+            return text.toString();
+        }
+
+        private static String duration(long nanos){
+            if(nanos < 1000000000L){
+                return String.format(Locale.ROOT, "%.2f ms", nanos / 1e6);
+            }
+            long seconds = nanos / 1000000000L;
+            if(seconds < 3600){
+                return String.format(Locale.ROOT, "%dm %ds", seconds / 60,
+                        seconds % 60);
+            }
+            return String.format(Locale.ROOT, "%dh %dm", seconds / 3600,
+                    seconds / 60 % 60);
+        }
+    }
+
+    private final SimulationEnvironment environment;
+    private final int maxTime, rounds, environments;
+    private final SimulationEngine engine;
+    private final int cores;
+
+    /**
+     * @param environment environments of the batch, it is copied and not
+     * changed
+     * @param maxTime maximum runtime of the simulations
+     * @param rounds rounds of the batch
+     * @param environments environments per round
+     * @param engine engine running the simulations
+     */
+
+    public RuntimeEstimator(SimulationEnvironment environment, int maxTime,
+            int rounds, int environments, SimulationEngine engine){
+        this.environment = environment;
+        this.maxTime = maxTime;
+        this.rounds = rounds;
+        this.environments = environments;
+        this.engine = engine;
+        this.cores = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @description runs the calibration, fits the model and chooses the
+     * workers and simulations per task
+     * @param simulations simulations per calibrated population
+     * @return the estimate
+     */
+
+    public Estimate calibrate(int simulations){
+        long start = System.nanoTime();
+        int[] populations = new int[environments];
+        for(int i = 0; i < environments; i++){
+            populations[i] = environment.getPopulation(i);
+        }
+        Estimate estimate = new Estimate(populations, rounds, cores, maxTime,
+                environment.getWidth(), environment.getHeight(),
+                environment.getRange());
+        int first = environment.getPopulation(0);
+        int last = environment.getPopulation(environments - 1);
+        TreeSet<Integer> sizes = new TreeSet<>();
+        for(int population : new int[]{first / 4, first / 2, first, last}){
+            sizes.add(Math.max(MIN_POPULATION, population));
+        }
+        /*
+            Simulations of the smallest population warm up the engine
+            before anything is measured.
+        */
+        long warmup = System.nanoTime();
+        for(int s = 0; s < WARMUP_SIMULATIONS && (s == 0 || 
+                System.nanoTime() - warmup < WARMUP_NANOS); s++){
+            measure(sizes.first(), 1);
+        }
+        long nodes = 0, generation = 0;
+        for(int population : sizes){
+            long[] measured = measure(population, simulations);
+            estimate.samplePopulations.add(population);
+            estimate.sampleNanos.add((double)measured[0] / simulations);
+            generation += measured[1];
+            nodes += (long)population * simulations;
+        }
+        estimate.generationNanosPerNode = (double)generation / nodes;
+        fit(estimate);
+        estimate.threadNanos = threadNanos();
+        estimate.taskNanos = taskNanos();
+        if(cores > 1 && environments > 1){
+            estimate.efficiency = efficiency(first,
+                    Math.min(cores, environments), estimate);
+        }
+        estimate.choose();
+        estimate.calibrationNanos = System.nanoTime() - start;
+        return estimate;
+    }
+
+    /**
+     * @return nanoseconds of the simulations and of generating their
+     * environments
+     */
+
+    private long[] measure(int population, int simulations){
+        SimulationEnvironment copy = environment.copy(population, 0, 1);
+        dataCompiler data = new dataCompiler(Math.max(1, maxTime));
+        long simulating = 0, generating = 0;
+        for(int s = 0; s < simulations; s++){
+            long start = System.nanoTime();
+            copy.GenerateEnvironments();
+            long middle = System.nanoTime();
+            engine.simulation(copy.getSimEnvironment(0), maxTime,
+                    copy.getSender(0), copy.getReciever(0), data,
+                    NullEventSink.INSTANCE, new SimulationResult()).run();
+            simulating += System.nanoTime() - middle;
+            generating += middle - start;
+        }
+        return new long[]{simulating, generating};
+    }
+
+    /**
+     * @description least squares fit of the model, dropping terms until no
+     * coefficient is negative
+     */
+
+    private static void fit(Estimate estimate){
+        int samples = estimate.sampleNanos.size();
+        for(int[] model : MODELS){
+            if(model.length > samples) continue;
+            double[][] normal = new double[model.length][model.length + 1];
+            for(int s = 0; s < samples; s++){
+                double[] x = estimate.features(estimate.samplePopulations.get(s));
+                double y = estimate.sampleNanos.get(s);
+                for(int r = 0; r < model.length; r++){
+                    for(int c = 0; c < model.length; c++){
+                        normal[r][c] += x[model[r]] * x[model[c]];
+                    }
+                    normal[r][model.length] += x[model[r]] * y;
+                }
+            }
+            double[] solution = solve(normal);
+            if(solution == null) continue;
+            boolean negative = false;
+            for(double coefficient : solution){
+                negative |= coefficient < 0;
+            }
+            if(negative) continue;
+            Arrays.fill(estimate.coefficients, 0);
+            for(int f = 0; f < model.length; f++){
+                estimate.coefficients[model[f]] = solution[f];
+            }
+            return;
+        }
+    }
+
+    /**
+     * @param system augmented matrix of a linear system
+     * @return its solution by Gaussian elimination, null if it is singular
+     */
+
+    private static double[] solve(double[][] system){
+        int n = system.length;
+        for(int column = 0; column < n; column++){
+            int pivot = column;
+            for(int r = column + 1; r < n; r++){
+                if(Math.abs(system[r][column]) > Math.abs(system[pivot][column])){
+                    pivot = r;
+                }
+            }
+            double[] swap = system[column];
+            system[column] = system[pivot];
+            system[pivot] = swap;
+            double scale = Math.abs(system[column][column]);
+            for(int c = 0; c < n; c++){
+                scale = Math.max(scale, Math.abs(system[column][c]));
+            }
+            if(scale == 0 || Math.abs(system[column][column]) < 1e-12 * scale){
+                return null;
+            }
+            for(int r = 0; r < n; r++){
+                if(r == column) continue;
+                double factor = system[r][column] / system[column][column];
+                for(int c = column; c <= n; c++){
+                    system[r][c] -= factor * system[column][c];
+                }
+            }
+        }
+        double[] solution = new double[n];
+        for(int r = 0; r < n; r++){
+            solution[r] = system[r][n] / system[r][r];
+        }
+        return solution;
+    }
+
+    /**
+     * @return nanoseconds to start and join one thread
+     */
+
+    private static long threadNanos(){
+        int threads = 20;
+        long start = System.nanoTime();
+        for(int t = 0; t < threads; t++){
+            Thread thread = new Thread(() -> { });
+            thread.start();
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Logger.getLogger(RuntimeEstimator.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        return (System.nanoTime() - start) / threads;
+    }
+
+    /**
+     * @return nanoseconds a worker spends taking one task
+     */
+
+    private static long taskNanos(){
+        int tasks = 100000;
+        AtomicInteger next = new AtomicInteger();
+        Runnable[] runnables = new Runnable[tasks];
+        Arrays.fill(runnables, (Runnable)() -> { });
+        long start = System.nanoTime();
+        for(int task = next.getAndIncrement(); task < tasks;
+                task = next.getAndIncrement()){
+            runnables[task].run();
+        }
+        return Math.max(1, (System.nanoTime() - start) / tasks);
+    }
+
+    /**
+     * @return single thread speed kept by threads simulations of population
+     * running at once
+     */
+
+    private double efficiency(int population, int threads, Estimate estimate){
+        SimulationEnvironment copy = environment.copy(population, 0, threads);
+        copy.GenerateEnvironments();
+        dataCompiler[] data = new dataCompiler[threads];
+        ArrayList<Thread> group = new ArrayList<>();
+        for(int i = 0; i < threads; i++){
+            int index = i;
+            data[i] = new dataCompiler(Math.max(1, maxTime));
+            group.add(new Thread(() -> engine.simulation(
+                    copy.getSimEnvironment(index), maxTime,
+                    copy.getSender(index), copy.getReciever(index),
+                    data[index], NullEventSink.INSTANCE,
+                    new SimulationResult()).run()));
+        }
+        long start = System.nanoTime();
+        group.forEach(Thread::start);
+        group.forEach((thread) -> {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Logger.getLogger(RuntimeEstimator.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        });
+        long wall = System.nanoTime() - start - estimate.threadNanos;
+        double alone = estimate.getSimulationNanos(population);
+        return wall <= 0 ? 1 : Math.max(0.05, Math.min(1, alone / wall));
+    }
+}
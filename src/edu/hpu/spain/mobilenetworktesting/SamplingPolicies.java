@@ -0,0 +1,294 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * @description SamplingPolicies for SimulationBatch. every() and evenly()
+ * decide by position in the batch, uniform() by the seed of the environment,
+ * so all three write while the batch runs. reservoir(), stratified() and
+ * topK() need the outcome, they keep the seeds of at most the number of
+ * traces they write and the batch runs those simulations again when it
+ * ends.
+ * @author Brian Spain
+ */
+
+public class SamplingPolicies {
+
+    private SamplingPolicies(){
+    }
+
+    /**
+     * @return policy writing no simulation
+     */
+
+    public static SamplingPolicy none(){
+        return (round, environment, seed) -> SamplingPolicy.Selection.SKIP;
+    }
+
+    /**
+     * @param rounds rounds between recorded rounds
+     * @return policy writing every environment of every rounds-th round, the
+     * rule SimulationBatch has always used with 10000
+     */
+
+    public static SamplingPolicy every(int rounds){
+        int period = Math.max(1, rounds);
+        return (round, environment, seed) -> (round + 1) % period == 0 ?
+                SamplingPolicy.Selection.WRITE : SamplingPolicy.Selection.SKIP;
+    }
+
+    /**
+     * @description spreads budget traces at equal distances over the whole
+     * batch, counting simulations round by round. Consecutive traces fall on
+     * different rounds and environments instead of all environments of one
+     * round.
+     * @param budget number of traces to write
+     * @return policy writing min(budget, simulations) traces
+     */
+
+    public static SamplingPolicy evenly(int budget){
+        return new SamplingPolicy(){
+            private long total = 1;
+            private int environments = 1;
+
+            @Override
+            public void begin(int rounds, int environments) {
+                this.environments = Math.max(1, environments);
+                this.total = Math.max(1L, (long)rounds * this.environments);
+            }
+
+            @Override
+            public SamplingPolicy.Selection select(int round, int environment,
+                    long seed) {
+                long index = (long)round * environments + environment;
+                return (index + 1) * budget / total != index * budget / total ?
+                        SamplingPolicy.Selection.WRITE :
+                        SamplingPolicy.Selection.SKIP;
+            }
+        };
+    }
+
+    /**
+     * @description writes each simulation with probability rate, decided from
+     * the seed of its environment so a batch with the same seed writes the
+     * same traces. Stops after budget traces.
+     * @param rate probability of writing a simulation
+     * @param budget maximum number of traces
+     * @return uniform sampling policy
+     */
+
+    public static SamplingPolicy uniform(double rate, int budget){
+        return new SamplingPolicy(){
+            private int written;
+
+            @Override
+            public SamplingPolicy.Selection select(int round, int environment,
+                    long seed) {
+                if(written >= budget) return SamplingPolicy.Selection.SKIP;
+                double u = (SimulationEnvironment.mixSeed(seed, -2) >>> 11) *
+                        0x1.0p-53;
+                if(u >= rate) return SamplingPolicy.Selection.SKIP;
+                ++written;
+                return SamplingPolicy.Selection.WRITE;
+            }
+        };
+    }
+
+    /**
+     * @param size number of traces to keep
+     * @return reservoir(size, 0)
+     */
+
+    public static SamplingPolicy reservoir(int size){
+        return reservoir(size, 0);
+    }
+
+    /**
+     * @description keeps size simulations chosen uniformly from the whole
+     * batch (reservoir sampling), written when the batch ends
+     * @param size number of traces to keep
+     * @param seed seed of the replacement choices
+     * @return reservoir sampling policy
+     */
+
+    public static SamplingPolicy reservoir(int size, long seed){
+        Reservoir reservoir = new Reservoir(size, random(seed));
+        return new SamplingPolicy(){
+            @Override
+            public SamplingPolicy.Selection select(int round, int environment,
+                    long seed) {
+                return SamplingPolicy.Selection.CANDIDATE;
+            }
+
+            @Override
+            public TraceSample offer(TraceSample sample) {
+                return reservoir.offer(sample);
+            }
+
+            @Override
+            public List<TraceSample> retained() {
+                return reservoir.samples;
+            }
+
+            @Override
+            public int getCapacity() {
+                return Math.max(0, size);
+            }
+        };
+    }
+
+    /**
+     * @description keeps a separate reservoir for every outcome, an outcome
+     * being the set of message types that reached the reciever. Rare outcomes
+     * get as many traces as common ones, up to the number that occurred.
+     * @param perOutcome number of traces to keep per outcome
+     * @param seed seed of the replacement choices
+     * @return stratified sampling policy writing at most 16 * perOutcome
+     * traces
+     */
+
+    public static SamplingPolicy stratified(int perOutcome, long seed){
+        Random random = random(seed);
+        Reservoir[] strata = new Reservoir[16];
+        for(int i = 0; i < strata.length; i++){
+            strata[i] = new Reservoir(perOutcome, random);
+        }
+        return new SamplingPolicy(){
+            @Override
+            public SamplingPolicy.Selection select(int round, int environment,
+                    long seed) {
+                return SamplingPolicy.Selection.CANDIDATE;
+            }
+
+            @Override
+            public TraceSample offer(TraceSample sample) {
+                return strata[sample.getOutcomeBits()].offer(sample);
+            }
+
+            @Override
+            public List<TraceSample> retained() {
+                List<TraceSample> samples = new ArrayList<>();
+                for(Reservoir stratum : strata){
+                    samples.addAll(stratum.samples);
+                }
+                return samples;
+            }
+
+            @Override
+            public int getCapacity() {
+                return strata.length * Math.max(0, perOutcome);
+            }
+        };
+    }
+
+    /**
+     * @description keeps the size simulations with the highest metric, ties
+     * keep the earlier simulation
+     * @param size number of traces to keep
+     * @param metric value a sample is ranked by, see runTime() and
+     * generation()
+     * @return top-K sampling policy
+     */
+
+    public static SamplingPolicy topK(int size,
+            ToDoubleFunction<TraceSample> metric){
+        PriorityQueue<TraceSample> lowest = new PriorityQueue<>(
+                Math.max(1, size), Comparator.comparingDouble(metric));
+        return new SamplingPolicy(){
+            @Override
+            public SamplingPolicy.Selection select(int round, int environment,
+                    long seed) {
+                return size > 0 ? SamplingPolicy.Selection.CANDIDATE :
+                        SamplingPolicy.Selection.SKIP;
+            }
+
+            @Override
+            public TraceSample offer(TraceSample sample) {
+                if(lowest.size() < size){
+                    lowest.add(sample);
+                    return null;
+                }
+                if(metric.applyAsDouble(sample) <=
+                        metric.applyAsDouble(lowest.peek())){
+                    return sample;
+                }
+                lowest.add(sample);
+                return lowest.poll();
+            }
+
+            @Override
+            public List<TraceSample> retained() {
+                return new ArrayList<>(lowest);
+            }
+
+            @Override
+            public int getCapacity() {
+                return Math.max(0, size);
+            }
+        };
+    }
+
+    /**
+     * @return metric ranking samples by run time
+     */
+
+    public static ToDoubleFunction<TraceSample> runTime(){
+        return (sample) -> sample.getNanos();
+    }
+
+    /**
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @return metric ranking samples by the generation the message reached
+     * the reciever in, failures rank below every success
+     */
+
+    public static ToDoubleFunction<TraceSample> generation(int messageType){
+        return (sample) -> sample.getOutcome(messageType);
+    }
+
+    /**
+     * @description the first values of java.util.Random are correlated for
+     * nearby seeds, which made reservoirs seeded 0, 1, 2... keep some
+     * simulations far more often than others, so the seed is mixed first
+     * @param seed seed of a policy
+     * @return random numbers of the policy
+     */
+
+    private static Random random(long seed){
+        return new Random(SimulationEnvironment.mixSeed(seed, -3));
+    }
+
+    /**
+     * @description reservoir sampling (algorithm R) over the offered samples
+     */
+
+    private static final class Reservoir {
+        private final int size;
+        private final Random random;
+        private final List<TraceSample> samples;
+        private long seen;
+
+        Reservoir(int size, Random random){
+            this.size = Math.max(0, size);
+            this.random = random;
+            this.samples = new ArrayList<>(this.size);
+        }
+
+        TraceSample offer(TraceSample sample){
+            ++seen;
+            if(samples.size() < size){
+                samples.add(sample);
+                return null;
+            }
+            long slot = (long)(random.nextDouble() * seen);
+            if(slot >= size) return sample;
+            return samples.set((int)slot, sample);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @description decides which simulations of a SimulationBatch are written as
+ * traces. Before a simulation runs the policy selects it for writing, skips
+ * it or makes it a candidate. Written simulations stream straight to their
+ * shard. Candidates run without a trace and are offered to the policy as a
+ * TraceSample once they finish, holding only their parameters, seed and
+ * outcome. The policy keeps the samples it wants and hands back the ones it
+ * drops. Whatever it retains when the batch ends is run again from its seed
+ * and written then, so a policy that retains at most K samples writes at
+ * most K traces.
+ *
+ * All methods are called from the thread running the batch.
+ * See SamplingPolicies for the implementations.
+ * @author Brian Spain
+ */
+
+public interface SamplingPolicy {
+
+    enum Selection { SKIP, WRITE, CANDIDATE }
+
+    /**
+     * @description called once before the first simulation
+     * @param rounds number of rounds in the batch
+     * @param environments number of environments per round
+     */
+
+    default void begin(int rounds, int environments){
+    }
+
+    /**
+     * @param round round of the simulation
+     * @param environment environment index of the simulation
+     * @param seed seed the environment was generated from
+     * @return what to do with the simulation
+     */
+
+    Selection select(int round, int environment, long seed);
+
+    /**
+     * @param sample finished candidate
+     * @return a sample the policy no longer needs, which can be the offered
+     * one, or null if it kept the sample without dropping another
+     */
+
+    default TraceSample offer(TraceSample sample){
+        return sample;
+    }
+
+    /**
+     * @return the samples to write when the batch ends
+     */
+
+    default List<TraceSample> retained(){
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return most samples retained() holds at a time, 0 for policies that
+     * write their simulations as they run
+     */
+
+    default int getCapacity(){
+        return 0;
+    }
+}
@@ -0,0 +1,362 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @description runs whole SimulationBatch workloads without the Interface
+ * and compares their throughput with a baseline. Every scenario first runs
+ * a warm-up batch that is not measured, then the measured batch, both from
+ * the same seed. Reported are simulations and ticks per second, the 99th
+ * percentile run time of one simulation and the bytes allocated per
+ * simulation.
+ *
+ * Usage: ScalingBenchmark [-quick] [-update] [-tolerance fraction]
+ * [-baseline file] [-phases] [-engine class] [scenario...] where -quick
+ * runs the scenarios
+ * up to 1000 nodes with a tenth of the rounds (compared with baseline
+ * values of their own, the quick. keys), -update writes the measured values as the new
+ * baseline, -phases prints the PhaseMetrics of every measured batch,
+ * -engine measures a SimulationEngine instead of Simulate and scenario
+ * names select scenarios by prefix. An engine is first compared with the
+ * reference by DifferentialHarness on every scenario, a scenario it fails
+ * is not measured and counts as a regression. A
+ * scenario is a regression if a metric is worse than the baseline by more
+ * than the tolerance (default 0.1), the exit status is then 1.
+ *
+ * Baselines only compare on the machine they were measured on. A baseline
+ * records the host and processors it was measured with. The baseline of the
+ * reference machine is checked in as bench/scaling-baseline.properties,
+ * other machines keep theirs in a file named after the host and its
+ * processors (see defaultBaseline()). Without a baseline for this machine
+ * the benchmark fails with exit status 2 before measuring anything, unless
+ * -update is given to record one. Metrics the baseline has no value for are
+ * marked n/a and listed in a warning.
+ * @author Brian Spain
+ */
+
+public class ScalingBenchmark {
+
+    public static final String BASELINE_DIRECTORY = "bench";
+    public static final String REFERENCE_BASELINE = 
+            "scaling-baseline.properties";
+    public static final double DEFAULT_TOLERANCE = 0.1;
+
+    static final int MAX_TIME = 20;
+    static final long SEED = 20170601L;
+
+    /**
+     * @description one workload, the domain is square
+     */
+
+    static final class Scenario {
+        final String name;
+        final int population, size, range, transmitTime, maxBuffer, threads,
+                warmup, rounds;
+
+        Scenario(String name, int population, int size, int range,
+                int transmitTime, int maxBuffer, int threads, int warmup,
+                int rounds){
+            this.name = name;
+            this.population = population;
+            this.size = size;
+            this.range = range;
+            this.transmitTime = transmitTime;
+            this.maxBuffer = maxBuffer;
+            this.threads = threads;
+            this.warmup = warmup;
+            this.rounds = rounds;
+        }
+    }
+
+    /**
+     * @description the measured metrics of one scenario, in the order of
+     * METRICS
+     */
+
+    static final String[] METRICS = {"simsPerSecond", "ticksPerSecond",
+        "p99Millis", "bytesPerSim"};
+    private static final boolean[] HIGHER_IS_BETTER = {true, true, false, false};
+
+    private ScalingBenchmark(){
+    }
+
+    /**
+     * @return the scenarios, populations from 100 to 50000 at the density of
+     * the Interface defaults (100 nodes on 500x500) unless named dense
+     */
+
+    static ArrayList<Scenario> scenarios(){
+        ArrayList<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(new Scenario("p100", 100, 500, 75, 0, 1, 1, 500, 2000));
+        scenarios.add(new Scenario("p100-threads2", 100, 500, 75, 0, 1, 2, 250, 1000));
+        scenarios.add(new Scenario("p100-threads4", 100, 500, 75, 0, 1, 4, 125, 500));
+        scenarios.add(new Scenario("p100-threads6", 100, 500, 75, 0, 1, 6, 100, 400));
+        scenarios.add(new Scenario("p100-transmit11", 100, 500, 75, 11, 1, 1, 500, 2000));
+        scenarios.add(new Scenario("p100-buffer11", 100, 500, 75, 11, 11, 1, 500, 2000));
+        scenarios.add(new Scenario("p100-dense", 100, 250, 75, 0, 1, 1, 500, 2000));
+        scenarios.add(new Scenario("p1000", 1000, side(1000), 75, 0, 1, 1, 20, 100));
+        scenarios.add(new Scenario("p1000-threads6", 1000, side(1000), 75, 0, 1, 6, 5, 20));
+        scenarios.add(new Scenario("p1000-dense", 1000, 500, 75, 0, 1, 1, 5, 20));
+        scenarios.add(new Scenario("p10000", 10000, side(10000), 75, 0, 1, 1, 1, 5));
+        scenarios.add(new Scenario("p50000", 50000, side(50000), 75, 0, 1, 1, 1, 2));
+        return scenarios;
+    }
+
+    /**
+     * @param population number of nodes
+     * @return side of the square domain with the default density
+     */
+
+    private static int side(int population){
+        return (int)Math.round(500 * Math.sqrt(population / 100.0));
+    }
+
+    /**
+     * @description runs the warm-up and the measured batch of scenario
+     * @param scenario workload to run
+     * @param warmup rounds run before the measurement
+     * @param rounds measured rounds
+     * @param traces directory the batches may write traces to
+     * @param phases true counts the PhaseMetrics of the measured batch
+     * @param engine engine running the simulations
+     * @return the metrics, see METRICS
+     */
+
+    static double[] measure(Scenario scenario, int warmup, int rounds,
+            File traces, boolean phases, SimulationEngine engine){
+        if(warmup > 0) batch(scenario, warmup, traces, engine).run();
+        System.gc();
+        PhaseMetrics.reset();
+        PhaseMetrics.setEnabled(phases);
+        SimulationBatch batch = batch(scenario, rounds, traces, engine);
+        batch.run();
+        double seconds = batch.getElapsedNanos() / 1e9;
+        int simulations = batch.getSimulationsRun();
+        long bytes = batch.getAllocatedBytes();
+        return new double[]{
+            simulations / seconds,
+            (double)simulations * MAX_TIME / seconds,
+            batch.getLatencies().getQuantile(0.99),
+            bytes < 0 ? Double.NaN : (double)bytes / simulations
+        };
+    }
+
+    private static SimulationBatch batch(Scenario scenario, int rounds,
+            File traces, SimulationEngine engine){
+        SimulationBatch batch = new SimulationBatch(scenario.size,
+                scenario.size, scenario.population, 0, scenario.range,
+                scenario.range, scenario.maxBuffer, scenario.transmitTime,
+                MAX_TIME, scenario.threads, rounds, false, null);
+        batch.environment.setSeed(SEED);
+        batch.setPrintResults(false);
+        batch.setFlightRecorder(null);
+        batch.setSamplingPolicy(SamplingPolicies.none());
+        batch.setTraceOutput(traces, TraceFormat.BINARY);
+        batch.setEngine(engine);
+        return batch;
+    }
+
+    public static void main(String[] args) throws IOException{
+        boolean quick = false, update = false, phases = false;
+        double tolerance = DEFAULT_TOLERANCE;
+        File baselineFile = defaultBaseline();
+        SimulationEngine engine = SimulationEngine.REFERENCE;
+        ArrayList<String> selected = new ArrayList<>();
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "-quick": quick = true;
+                break;
+                case "-update": update = true;
+                break;
+                case "-phases": phases = true;
+                break;
+                case "-tolerance": tolerance = Double.parseDouble(args[++i]);
+                break;
+                case "-baseline": baselineFile = new File(args[++i]);
+                break;
+                case "-engine": engine = SimulationEngine.forName(args[++i]);
+                break;
+                default: selected.add(args[i]);
+            }
+        }
+        Properties baseline = load(baselineFile);
+        String recorded = baseline.getProperty(MACHINE_KEY);
+        boolean compare = machine().equals(recorded);
+        if(!compare){
+            System.out.println("No baseline for " + machine() + ": " + 
+                    baselineFile + (!baselineFile.isFile() ? 
+                    " does not exist" : " was measured on " + 
+                    (recorded == null ? "an unknown machine" : recorded)) + 
+                    ". Record one with -update.");
+            if(!update) System.exit(2);
+        }
+        Properties measured = new Properties();
+        File traces = Files.createTempDirectory("scaling").toFile();
+        DecimalFormat format = new DecimalFormat("0.##");
+        int regressions = 0;
+        ArrayList<String> missing = new ArrayList<>();
+        System.out.println(String.format(Locale.ROOT, "%-18s %14s %14s %14s %14s",
+                "scenario", METRICS[0], METRICS[1], METRICS[2], METRICS[3]));
+        for(Scenario scenario : scenarios()){
+            if(!isSelected(scenario, selected)) continue;
+            if(quick && scenario.population > 1000) continue;
+            PhaseMetrics.setEnabled(false);
+            int warmup = quick ? Math.max(1, scenario.warmup / 10) : scenario.warmup;
+            int rounds = quick ? Math.max(1, scenario.rounds / 10) : scenario.rounds;
+            if(engine != SimulationEngine.REFERENCE){
+                DifferentialHarness.Report check = new DifferentialHarness(
+                        DifferentialHarness.environment(scenario), MAX_TIME)
+                        .compare(engine, Math.min(rounds,
+                                DifferentialHarness.DEFAULT_ROUNDS),
+                                DifferentialHarness.Mode.EXACT,
+                                DifferentialHarness.DEFAULT_Z);
+                if(!check.passed()){
+                    System.out.println(String.format(Locale.ROOT, "%-18s %s",
+                            scenario.name, check));
+                    ++regressions;
+                    continue;
+                }
+            }
+            double[] metrics = measure(scenario, warmup, rounds, traces, phases,
+                    engine);
+            StringBuilder line = new StringBuilder(
+                    String.format(Locale.ROOT, "%-18s", scenario.name));
+            for(int m = 0; m < METRICS.length; m++){
+                String key = (quick ? "quick." : "") + scenario.name + "." + 
+                        METRICS[m];
+                measured.setProperty(key, Double.toString(metrics[m]));
+                String cell = format.format(metrics[m]);
+                String expected = baseline.getProperty(key);
+                if(compare && expected != null && !Double.isNaN(metrics[m])){
+                    double reference = Double.parseDouble(expected);
+                    double change = reference == 0 ? 0 :
+                            (metrics[m] - reference) / reference;
+                    boolean worse = HIGHER_IS_BETTER[m] ? change < -tolerance :
+                            change > tolerance;
+                    cell += String.format(Locale.ROOT, " %+.0f%%%s", 100 * change,
+                            worse ? "!" : "");
+                    if(worse) ++regressions;
+                }
+                else if(compare && expected == null){
+                    cell += " n/a";
+                    missing.add(key);
+                }
+                line.append(String.format(Locale.ROOT, " %14s", cell));
+            }
+            System.out.println(line);
+            if(phases) System.out.println("  " + PhaseMetrics.snapshot());
+        }
+        deleteTree(traces);
+        if(!missing.isEmpty()){
+            System.out.println("Warning: " + missing.size() + " metrics have no "
+                    + "baseline value and were not compared: " + missing + 
+                    ". Record them with -update.");
+        }
+        if(update){
+            if(!compare) baseline.clear();
+            baseline.putAll(measured);
+            baseline.setProperty(MACHINE_KEY, machine());
+            File parent = baselineFile.getAbsoluteFile().getParentFile();
+            if(parent != null) parent.mkdirs();
+            try (OutputStream output = new FileOutputStream(baselineFile)) {
+                baseline.store(output, "ScalingBenchmark baseline, " +
+                        System.getProperty("java.vm.name") + " " +
+                        System.getProperty("java.version") + ", " +
+                        Runtime.getRuntime().availableProcessors() + " cpus");
+            }
+            System.out.println("Baseline written to " + baselineFile);
+        }
+        if(regressions > 0){
+            System.out.println(regressions + " metrics regressed by more than " +
+                    format.format(100 * tolerance) + "%");
+            System.exit(1);
+        }
+    }
+
+    private static final String MACHINE_KEY = "machine";
+
+    /**
+     * @return host name and processors of this machine, "host/4 cpus"
+     */
+
+    static String machine(){
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException ex) {
+            host = System.getenv().getOrDefault("HOSTNAME", "unknown");
+        }
+        return host + "/" + Runtime.getRuntime().availableProcessors() + 
+                " cpus";
+    }
+
+    /**
+     * @return baseline of this machine: the checked-in reference baseline
+     * if it was measured here, else 
+     * bench/scaling-baseline-host-Ncpus.properties
+     * @throws IOException if the reference baseline cannot be read
+     */
+
+    static File defaultBaseline() throws IOException{
+        File reference = new File(BASELINE_DIRECTORY, REFERENCE_BASELINE);
+        if(machine().equals(load(reference).getProperty(MACHINE_KEY))){
+            return reference;
+        }
+        String name = machine().replace(" ", "").replace('/', '-')
+                .replaceAll("[^A-Za-z0-9._-]", "_");
+        return new File(BASELINE_DIRECTORY, "scaling-baseline-" + name + 
+                ".properties");
+    }
+
+    /**
+     * @param file baseline file
+     * @return the baseline, empty if the file does not exist
+     * @throws IOException if the file cannot be read
+     */
+
+    private static Properties load(File file) throws IOException{
+        Properties baseline = new Properties();
+        if(file.isFile()){
+            try (InputStream input = new FileInputStream(file)) {
+                baseline.load(input);
+            }
+        }
+        return baseline;
+    }
+
+    static boolean isSelected(Scenario scenario,
+            ArrayList<String> selected){
+        if(selected.isEmpty()) return true;
+        for(String prefix : selected){
+            if(scenario.name.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    private static void deleteTree(File file){
+        File[] children = file.listFiles();
+        if(children != null){
+            for(File child : children){
+                deleteTree(child);
+            }
+        }
+        if(!file.delete()){
+            Logger.getLogger(ScalingBenchmark.class.getName()).log(Level.WARNING,
+                    "Could not delete {0}", file);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * @description writes one trace shard per (round, environment) into a
+ * directory and lists every finished shard in the directory's TraceManifest.
+ * Shard names carry the round and the environment index, so environments of
+ * the same round (including popInc variants) never overwrite each other.
+ * They do not name the batch, SimulationBatch gives every batch a directory
+ * of its own.
+ * Shards are spread over several AsyncTraceWriters by environment index so
+ * the environments of a round are written in parallel.
+ * @author Brian Spain
+ */
+
+public class ShardedTraceOutput implements Closeable {
+
+    public static final int DEFAULT_WRITERS = 2;
+
+    private final File directory;
+    private final TraceFormat format;
+    private final TraceManifest manifest;
+    private final AsyncTraceWriter[] writers;
+    private volatile boolean created;
+
+    /**
+     * @param directory directory the shards are written to, created with the
+     * first shard
+     * @param format format of the shards
+     */
+
+    public ShardedTraceOutput(File directory, TraceFormat format){
+        this(directory, format, DEFAULT_WRITERS);
+    }
+
+    /**
+     * @param directory directory the shards are written to, created with the
+     * first shard
+     * @param format format of the shards
+     * @param writers number of writer threads
+     */
+
+    public ShardedTraceOutput(File directory, TraceFormat format, int writers){
+        this.directory = directory;
+        this.format = format;
+        this.manifest = new TraceManifest(directory);
+        this.writers = new AsyncTraceWriter[Math.max(1, writers)];
+        for(int i = 0; i < this.writers.length; i++){
+            this.writers[i] = new AsyncTraceWriter();
+        }
+    }
+
+    /**
+     * @description starts the shard of one simulation
+     * @param parameters simulation parameters, the simulation and environment
+     * fields name the shard
+     * @param seed seed the environment was generated from
+     * @return sink the simulation records into, must be closed when the
+     * simulation is over
+     */
+
+    public StreamingTraceSink open(TraceParameters parameters, long seed){
+        if(!created){
+            directory.mkdirs();
+            created = true;
+        }
+        File shard = new File(directory,
+                parameters.toFileName(format.getExtension()));
+        int writer = Math.max(0, parameters.getEnvironment()) % writers.length;
+        return writers[writer].open(shard, format, parameters, seed, manifest);
+    }
+
+    public File getDirectory(){
+        return directory;
+    }
+
+    public TraceFormat getFormat(){
+        return format;
+    }
+
+    public TraceManifest getManifest(){
+        return manifest;
+    }
+
+    /**
+     * @description waits until every shard has been written and listed
+     */
+
+    @Override
+    public void close(){
+        for(AsyncTraceWriter writer : writers){
+            writer.close();
+        }
+    }
+}
@@ -1,8 +1,10 @@
 
 package edu.hpu.spain.mobilenetworktesting;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.awt.Label;
@@ -21,6 +23,27 @@ public class SimulationBatch implements Runnable{
     private final ArrayList<dataCompiler> data;
     ArrayList<Thread> simGroup;
     private long timer;
+    private File traceDirectory, batchDirectory;
+    private TraceFormat traceFormat;
+    private FlightRecorder.Trigger flightTrigger;
+    private SamplingPolicy samplingPolicy;
+    private File resultFile;
+    private int coverageInterval;
+    private boolean printResults;
+    private QuantileSketch latencies;
+    private long allocatedBytes, elapsedNanos;
+    private int simulationsRun;
+    private File metricsFile;
+    private OutlierDetector outlierDetector;
+    private int outlierCaptures;
+    private long metricsPeriod;
+    private long heapBudget;
+    private volatile BatchProgress progress;
+    private volatile boolean cancelled;
+    private File progressFile;
+    private SimulationEngine engine;
+    private int workers, simsPerTask, calibration;
+    private long progressPeriod;
     Label Running;
     
     /**
@@ -44,33 +67,408 @@ public class SimulationBatch implements Runnable{
             int maxTime, int iterations, int simulations, boolean useFakeDestination,
             Label Running) {
         
+        this(height, width, population, popInc, range, rangeDecayThreshold, 
+                maxBuffer, transmitTime, maxTime, iterations, simulations, 
+                useFakeDestination, false, Running);
+    }
+    
+    /**
+     * @description constructor which passes parameters to environment object.
+     * @param shareBasePopulation if true each environment is the shared base
+     * population plus popInc*i extra nodes, see SimulationEnvironment
+     * @param Running shows the state of the batch, null for batches run 
+     * without the Interface
+     * @see #SimulationBatch(int, int, int, int, int, int, int, int, int, int, 
+     * int, boolean, java.awt.Label) 
+     */
+    
+    public SimulationBatch(int height, int width, int population, int popInc, 
+            int range, int rangeDecayThreshold, int maxBuffer, int transmitTime,
+            int maxTime, int iterations, int simulations, boolean useFakeDestination,
+            boolean shareBasePopulation, Label Running) {
+        
         this.environment = new SimulationEnvironment(height, width, population,
             popInc, range, rangeDecayThreshold, transmitTime, maxBuffer, 
-            iterations, useFakeDestination);
+            iterations, useFakeDestination, shareBasePopulation);
         this.maxTime = maxTime;
         this.iterations = iterations;
         data = new ArrayList<>();
         simGroup = new ArrayList<>();
         this.simulations = simulations;
         this.Running = Running;
+        this.traceDirectory = new File(".");
+        this.traceFormat = TraceFormat.TEXT;
+        this.samplingPolicy = SamplingPolicies.every(10000);
+        this.flightTrigger = FlightRecorder.infectFailsFloodSucceeds();
+        this.coverageInterval = 1;
+        this.printResults = true;
+        this.latencies = new QuantileSketch();
+        this.progress = new BatchProgress(iterations, simulations);
+        this.engine = SimulationEngine.REFERENCE;
+        this.simsPerTask = 1;
+    }
+    
+    /**
+     * @description sets where the reconstruction traces are written, must be
+     * called before run(). Every batch writes into its own subdirectory,
+     * named after the batch seed (see getBatchDirectory()), so a later batch
+     * with the same parameters does not overwrite the shards an earlier one
+     * listed in its manifest.
+     * @param directory directory holding the batch directories
+     * @param format format of the trace shards
+     */
+    
+    public void setTraceOutput(File directory, TraceFormat format){
+        this.traceDirectory = directory;
+        this.traceFormat = format;
+    }
+    
+    /**
+     * @param directory directory holding the batch directories
+     * @param seed batch seed
+     * @return directory the batch with seed writes its trace shards,
+     * manifest, flights and outliers to
+     */
+    
+    public static File getBatchDirectory(File directory, long seed){
+        return new File(directory, String.format("batch_%016x", seed));
+    }
+    
+    /**
+     * @return directory of the trace shards of the batch with the current
+     * seed, see setTraceOutput()
+     */
+    
+    public File getBatchDirectory(){
+        return getBatchDirectory(traceDirectory, environment.getSeed());
+    }
+    
+    /**
+     * @description every simulation that is not fully recorded runs with a
+     * FlightRecorder, the last ticks of the simulations trigger fires for
+     * are written to the flights directory inside the batch directory.
+     * Defaults to FlightRecorder.infectFailsFloodSucceeds(). A recorder
+     * keeps its last ticks in arrays it reuses and skips the start and
+     * result passes over the nodes, nothing is written unless the trigger
+     * fires. Must be called before run().
+     * @param trigger selects the simulations to write, for example
+     * FlightRecorder.infectFailsFloodSucceeds(), null turns the flight
+     * recorders off
+     */
+    
+    public void setFlightRecorder(FlightRecorder.Trigger trigger){
+        this.flightTrigger = trigger;
+    }
+    
+    /**
+     * @description sets which simulations are written to the trace
+     * directory, see SamplingPolicies. Defaults to every environment of every
+     * 10000th round. Must be called before run().
+     * @param policy decides which simulations are written
+     */
+    
+    public void setSamplingPolicy(SamplingPolicy policy){
+        this.samplingPolicy = policy;
+    }
+    
+    /**
+     * @description turns the compiled data and time printed at the end of 
+     * run() on or off, defaults to on
+     * @param printResults false runs silently
+     */
+    
+    public void setPrintResults(boolean printResults){
+        this.printResults = printResults;
+    }
+    
+    /**
+     * @description turns the PhaseMetrics on while run() executes and writes
+     * a snapshot every period milliseconds and when the batch is done. Must
+     * be called before run().
+     * @param file snapshot file, null logs the snapshots
+     * @param period milliseconds between snapshots, 0 turns the reports off
+     */
+    
+    public void setPhaseMetrics(File file, long period){
+        this.metricsFile = file;
+        this.metricsPeriod = period;
+    }
+    
+    /**
+     * @description passes the time of every simulation to detector. Up to
+     * captures of the outliers it keeps are run again from their seed when
+     * the batch is done, recording a full trace into the outliers directory
+     * inside the batch directory. Must be called before run().
+     * @param detector decides which simulations are outliers, null turns
+     * the detection off
+     * @param captures outliers to run again in recording mode
+     */
+    
+    public void setOutlierDetector(OutlierDetector detector, int captures){
+        this.outlierDetector = detector;
+        this.outlierCaptures = captures;
+    }
+    
+    public OutlierDetector getOutlierDetector(){
+        return outlierDetector;
+    }
+    
+    /**
+     * @return run time of every simulation of the last run() in 
+     * milliseconds
+     */
+    
+    public QuantileSketch getLatencies(){
+        return latencies;
+    }
+    
+    /**
+     * @return bytes the simulation threads allocated during the last run(),
+     * -1 if the JVM does not count allocations
+     */
+    
+    public long getAllocatedBytes(){
+        return allocatedBytes;
+    }
+    
+    /**
+     * @return wall clock time of the last run() in nanoseconds
+     */
+    
+    public long getElapsedNanos(){
+        return elapsedNanos;
+    }
+    
+    /**
+     * @return number of simulations the last run() executed
+     */
+    
+    public int getSimulationsRun(){
+        return simulationsRun;
+    }
+    
+    /**
+     * @return compiled data of every environment, filled by run()
+     */
+    
+    public ArrayList<dataCompiler> getData(){
+        return data;
+    }
+    
+    /**
+     * @description groups the ticks of the coverage curves, see 
+     * CoverageCurve. Defaults to every tick. Must be called before run().
+     * @param ticks ticks per point of the curves
+     */
+    
+    public void setCoverageInterval(int ticks){
+        this.coverageInterval = ticks;
+    }
+    
+    /**
+     * @description appends one row per simulation to a columnar file, see
+     * ResultStore for its layout. Must be called before run().
+     * @param file file to write, null writes none
+     */
+    
+    public void setResultStore(File file){
+        this.resultFile = file;
+    }
+    
+    /**
+     * @description runs the simulations with engine instead of Simulate. Must
+     * be called before run().
+     * @param engine engine creating the simulations
+     */
+    
+    public void setEngine(SimulationEngine engine){
+        this.engine = engine;
+    }
+    
+    /**
+     * @description runs the simulations of a round on workers threads, each
+     * taking simsPerTask environments at a time until none are left. By
+     * default every environment has its own thread. Must be called before
+     * run().
+     * @param workers threads per round, 0 for one per environment
+     * @param simsPerTask environments a worker takes at once
+     */
+    
+    public void setWorkers(int workers, int simsPerTask){
+        this.workers = workers;
+        this.simsPerTask = Math.max(1, simsPerTask);
+    }
+    
+    public int getWorkers(){
+        return workers <= 0 ? iterations : Math.min(workers, iterations);
+    }
+    
+    public int getSimsPerTask(){
+        return simsPerTask;
+    }
+    
+    /**
+     * @description runs a short calibration, see RuntimeEstimator, to predict
+     * the runtime of the batch and the best workers and simulations per task
+     * on this machine. Nothing is changed.
+     * @param simulations simulations per calibrated population
+     * @return the prediction
+     */
+    
+    public RuntimeEstimator.Estimate estimateRuntime(int simulations){
+        return new RuntimeEstimator(environment, maxTime, this.simulations, 
+                iterations, engine).calibrate(simulations);
+    }
+    
+    /**
+     * @description makes run() calibrate first, report the prediction and
+     * use the workers and simulations per task it chose. Must be called 
+     * before run().
+     * @param simulations simulations per calibrated population, 0 turns the
+     * calibration off
+     */
+    
+    public void setAutoTune(int simulations){
+        this.calibration = simulations;
+    }
+    
+    /**
+     * @description writes getProgress() to a file every period milliseconds
+     * while the batch runs, see BatchProgress. Must be called before run().
+     * @param file progress file, null logs the progress instead
+     * @param period milliseconds between snapshots, 0 writes none
+     */
+    
+    public void setProgressReport(File file, long period){
+        this.progressFile = file;
+        this.progressPeriod = period;
+    }
+    
+    /**
+     * @return progress of the current or last run, safe to poll from any
+     * thread
+     */
+    
+    public BatchProgress getProgress(){
+        return progress;
+    }
+    
+    /**
+     * @description stops the batch after the round that is running. The
+     * simulations of that round finish, their traces are written and the
+     * results are compiled as usual. A cancelled batch stays cancelled.
+     */
+    
+    public void cancel(){
+        cancelled = true;
+    }
+    
+    public boolean isCancelled(){
+        return cancelled;
+    }
+    
+    /**
+     * @description estimates the heap the batch retains while it runs: the
+     * nodes of one round, the dataCompilers, the buffered trace chunks, the
+     * flight recorders and the samples of the sampling policy, see
+     * MemoryAccounting
+     * @return the estimate by part
+     */
+    
+    public MemoryAccounting.Report estimateMemory(){
+        return new MemoryAccounting().estimate(environment.getHeight(),
+                environment.getWidth(), environment.getPopulation(),
+                environment.getPopInc(), environment.getRange(), maxTime,
+                iterations, coverageInterval,
+                environment.isSharingBasePopulation(), flightTrigger != null,
+                samplingPolicy.getCapacity());
+    }
+    
+    /**
+     * @description makes run() refuse to start if estimateMemory() exceeds
+     * budget. Defaults to no budget. Must be called before run().
+     * @param bytes heap the batch may use, -1 for the maximum heap of the
+     * JVM, 0 for no budget
+     */
+    
+    public void setHeapBudget(long bytes){
+        this.heapBudget = bytes < 0 ? Runtime.getRuntime().maxMemory() : bytes;
     }
     
     /**
-     * @description executes the requested number of simulations on six
-     * simulation threads.
+     * @description executes the requested number of simulations, on one
+     * thread per environment unless setWorkers() or setAutoTune() chose
+     * other workers.
      */
     
     @Override
     public void run(){
-        Running.setText("Running");
+        BatchProgress progress = new BatchProgress(iterations, simulations);
+        this.progress = progress;
+        if(heapBudget > 0){
+            try {
+                estimateMemory().check(heapBudget);
+            } catch (IllegalStateException ex) {
+                Logger.getLogger(SimulationBatch.class.getName()).log(Level.SEVERE, null, ex);
+                progress.finished(BatchProgress.State.OVER_BUDGET);
+                if(Running != null) Running.setText(progress.getStatus());
+                return;
+            }
+        }
+        if(calibration > 0){
+            if(Running != null) Running.setText("Calibrating");
+            RuntimeEstimator.Estimate estimate = estimateRuntime(calibration);
+            if(printResults) System.out.println(estimate);
+            else Logger.getLogger(SimulationBatch.class.getName()).log(
+                    Level.INFO, estimate.toString());
+            setWorkers(estimate.getWorkers(), estimate.getSimsPerTask());
+        }
+        progress.started();
+        if(progressPeriod > 0) progress.report(progressFile, progressPeriod);
+        if(Running != null) Running.setText("Running");
+        Object batchEvent = JfrEvents.batch();
         timer = System.currentTimeMillis();
+        long start = System.nanoTime();
+        latencies = new QuantileSketch();
+        allocatedBytes = 0;
+        simulationsRun = 0;
+        if(metricsPeriod > 0) PhaseMetrics.report(metricsFile, metricsPeriod);
         int simsrun = 0;
+        SimulationResult[] results = new SimulationResult[iterations];
         for(int i = 0; i < iterations; i++){
-            data.add(new dataCompiler());
+            data.add(new dataCompiler(coverageInterval));
+            results[i] = new SimulationResult();
+        }
+        batchDirectory = getBatchDirectory();
+        ShardedTraceOutput traceOutput = new ShardedTraceOutput(batchDirectory,
+                traceFormat);
+        TraceSampler sampler = new TraceSampler(samplingPolicy, traceOutput,
+                simulations, iterations, new Replay());
+        ShardedTraceOutput flightOutput = null;
+        FlightRecorder[] recorders = null;
+        if(flightTrigger != null){
+            flightOutput = new ShardedTraceOutput(
+                    new File(batchDirectory, "flights"), 
+                    TraceFormat.BINARY_DEFLATE);
+            recorders = new FlightRecorder[iterations];
+            for(int i = 0; i < iterations; i++){
+                recorders[i] = new FlightRecorder(flightOutput, flightTrigger);
+            }
+        }
+        ArrayList<OutlierDetector.Outlier> captures = new ArrayList<>();
+        ResultStore store = null;
+        if(resultFile != null){
+            try {
+                store = new ResultStore(resultFile);
+            } catch (IOException ex) {
+                Logger.getLogger(SimulationBatch.class.getName()).log(Level.SEVERE, null, ex);
+            }
         }
         
-        for(int n = 0; n < simulations; n++){
+        for(int n = 0; n < simulations && !cancelled; n++){
             ++simsrun;
+            progress.round(n);
+            Object roundEvent = JfrEvents.round();
            /*
                 generate new environments.
             */
@@ -79,34 +477,73 @@ public class SimulationBatch implements Runnable{
                 clear previous threads.
            */
            simGroup.clear();
+           Runnable[] tasks = new Runnable[iterations];
            /*
-                dataRecords will store each of the array lists of strings of
-                data for reconstruction, which is generated for every 1000th
-                simulation
+                written simulations record into a trace shard, the others,
+                candidates of the sampling policy included, into a flight
+                recorder
            */
-            ArrayList<ArrayList<String>> dataRecords = new ArrayList<>();
+            SimulationEventSink[] dataRecords = new SimulationEventSink[iterations];
+            TraceParameters[] roundParameters = new TraceParameters[iterations];
             
             /*
-                Add a simulation thread for each environment. 
+                Create the simulation of each environment. 
             */
 
             for(int i = 0; i < iterations; i++){
-                if((n+1) % 10000 == 0){
-                    dataRecords.add(new ArrayList<>());
-                    simGroup.add(new Thread(new Simulate(
-                            environment.getSimEnvironment(i), maxTime,
-                            environment.getSender(i), environment.getReciever(i), 
-                            data.get(i), dataRecords.get(i))));
-                    simGroup.get(i).start(); 
+                TraceParameters parameters = new TraceParameters(
+                        environment.getHeight(), environment.getWidth(),
+                        environment.getPopulation(i), environment.getBuffer(),
+                        environment.getTransmitTime(), n, i, 2.0);
+                roundParameters[i] = parameters;
+                dataRecords[i] = sampler.open(parameters,
+                        environment.getEnvironmentSeed(i));
+                if(dataRecords[i] != null){
+                    /*
+                        Written simulations have all raw data stored, named
+                        by all simulation parameters, the round and the
+                        environment index.
+                    */
+                    tasks[i] = simulation(n, i, dataRecords[i], results[i]);
+                }
+                else if(recorders != null){
+                    /*
+                        All other simulations keep their last ticks in a
+                        flight recorder, written only if the trigger fires.
+                        The recorder begins on the worker, right before the
+                        simulation is created, so its time excludes the wait
+                        for a worker.
+                    */
+                    FlightRecorder recorder = recorders[i];
+                    SimulationResult result = results[i];
+                    long seed = environment.getEnvironmentSeed(i);
+                    int round = n, index = i;
+                    tasks[i] = () -> {
+                        recorder.begin(parameters, seed);
+                        simulation(round, index, recorder, result).run();
+                    };
                 }
                 else{
-                    simGroup.add(new Thread(new Simulate(
-                            environment.getSimEnvironment(i), maxTime,
-                            environment.getSender(i), environment.getReciever(i), 
-                            data.get(i))));
-                    simGroup.get(i).start();
+                    tasks[i] = simulation(n, i, NullEventSink.INSTANCE, results[i]);
                 }
             }
+            /*
+                The workers take simsPerTask environments at a time.
+            */
+            AtomicInteger next = new AtomicInteger();
+            for(int w = 0; w < getWorkers(); w++){
+                simGroup.add(new Thread(() -> {
+                    for(int first = next.getAndAdd(simsPerTask); 
+                            first < iterations; 
+                            first = next.getAndAdd(simsPerTask)){
+                        for(int i = first; i < Math.min(iterations, 
+                                first + simsPerTask); i++){
+                            tasks[i].run();
+                        }
+                    }
+                }));
+                simGroup.get(w).start();
+            }
             simGroup.forEach((sim) -> {
                 try {
                     sim.join();
@@ -116,25 +553,72 @@ public class SimulationBatch implements Runnable{
             });
             
             /*
-                Every 1000th simulation has all raw data stored in a text file
-                with a file name containing all simulation parameters.
+                The remaining events go to the trace writers, which finish
+                the shards in the background while the next round runs,
+                finished candidates go to the sampling policy.
             */
             
-            if((n+1) % 10000 == 0){
-                for(ArrayList<String> dataRecord : dataRecords)
-                    try {
-                        dataCompiler.rawDataToFile(environment.getHeight(),
-                            environment.getWidth(),
-                            environment.getPopulation(), 
-                            environment.getBuffer(),
-                            environment.getTransmitTime(), n, 2.0, dataRecord);
-                    } catch (IOException ex) {
-                        Logger.getLogger(SimulationBatch.class.getName()).log(
-                                Level.SEVERE, null, ex);
+            long phase = PhaseMetrics.start();
+            for(int i = 0; i < iterations; i++){
+                sampler.finished(roundParameters[i], dataRecords[i], results[i]);
+            }
+            PhaseMetrics.stop(PhaseMetrics.Phase.TRACE, phase);
+            for(int i = 0; i < iterations; i++){
+                latencies.add(results[i].getNanos() / 1e6);
+                if(allocatedBytes >= 0){
+                    allocatedBytes = results[i].getAllocatedBytes() < 0 ? -1 :
+                            allocatedBytes + results[i].getAllocatedBytes();
+                }
+            }
+            simulationsRun += iterations;
+            if(outlierDetector != null){
+                for(int i = 0; i < iterations; i++){
+                    OutlierDetector.Outlier outlier = outlierDetector.offer(
+                            roundParameters[i], 
+                            environment.getEnvironmentSeed(i), 
+                            results[i].getNanos());
+                    if(outlier != null && captures.size() < outlierCaptures){
+                        captures.add(outlier);
                     }
+                }
+            }
+            JfrEvents.round(roundEvent, n, results);
+            if(store != null){
+                try {
+                    for(int i = 0; i < iterations; i++){
+                        store.append(n, i, environment.getEnvironmentSeed(i),
+                                environment.getPopulation(i), results[i]);
+                    }
+                } catch (IOException ex) {
+                    Logger.getLogger(SimulationBatch.class.getName()).log(Level.SEVERE, null, ex);
+                    store = close(store);
+                }
             }
         }
-        Running.setText("Done");
+        /*
+            Run the samples the policy kept again into their shards and
+            wait for the last shards to be written.
+        */
+        long phase = PhaseMetrics.start();
+        sampler.close();
+        traceOutput.close();
+        if(flightOutput != null) flightOutput.close();
+        PhaseMetrics.stop(PhaseMetrics.Phase.TRACE, phase);
+        if(store != null) close(store);
+        if(!captures.isEmpty()) capture(captures);
+        progress.finished(cancelled ? BatchProgress.State.CANCELLED : 
+                BatchProgress.State.DONE);
+        if(progressPeriod > 0){
+            progress.stopReporting();
+            progress.export(progressFile);
+        }
+        if(Running != null) Running.setText(progress.getStatus());
+        JfrEvents.batch(batchEvent, environment.getHeight(), 
+                environment.getWidth(), environment.getPopulation(), 
+                environment.getPopInc(), environment.getRange(), 
+                environment.getTransmitTime(), environment.getBuffer(), 
+                maxTime, iterations, simulations, simulationsRun);
+        elapsedNanos = System.nanoTime() - start;
         /*
             Compile and output data for each batch of simulations
         */
@@ -143,10 +627,104 @@ public class SimulationBatch implements Runnable{
             compiler.compile();
             return compiler;
         }).forEachOrdered((compiler) -> {
-            compiler.print();
+            if(printResults) compiler.print();
         });
         
         timer = System.currentTimeMillis()-timer;
-        System.out.println("Time: " + (double)timer/60000.0);
+        if(printResults) System.out.println("Time: " + (double)timer/60000.0);
+        if(metricsPeriod > 0){
+            PhaseMetrics.stopReporting();
+            PhaseMetrics.export(metricsFile);
+        }
+    }
+    
+    /**
+     * @param round round of the simulation
+     * @param environment index of the environment
+     * @param sink receives the events of the simulation
+     * @param result result the simulation fills in
+     * @return the simulation of environment, which counts it in the 
+     * progress when it is done
+     */
+    
+    private Runnable simulation(int round, int environment, 
+            SimulationEventSink sink, SimulationResult result){
+        Runnable simulate = engine.simulation(
+                this.environment.getSimEnvironment(environment), maxTime, 
+                this.environment.getSender(environment), 
+                this.environment.getReciever(environment), 
+                data.get(environment), sink, result);
+        if(simulate instanceof Simulate){
+            ((Simulate)simulate).label(round, environment, 
+                    this.environment.getEnvironmentSeed(environment));
+        }
+        BatchProgress current = progress;
+        return () -> {
+            simulate.run();
+            current.completed(environment, result);
+        };
+    }
+    
+    /**
+     * @description runs the outliers again from their seeds, recording full
+     * traces.
+     * @param outliers simulations to run again
+     */
+    
+    private void capture(ArrayList<OutlierDetector.Outlier> outliers){
+        Replay replay = new Replay();
+        ShardedTraceOutput output = new ShardedTraceOutput(
+                new File(batchDirectory, "outliers"), traceFormat);
+        for(OutlierDetector.Outlier outlier : outliers){
+            TraceParameters parameters = outlier.getParameters();
+            StreamingTraceSink sink = output.open(parameters, 
+                    outlier.getSeed());
+            replay.rerun(parameters, sink);
+            sink.close();
+            outlier.setTrace(new File(output.getDirectory(), 
+                    parameters.toFileName(traceFormat.getExtension())));
+        }
+        output.close();
+    }
+    
+    /**
+     * @description runs simulations of earlier rounds again from their
+     * seeds. The environments are generated by a copy of the batch
+     * environment, so the batch can go on with its own rounds. A round is
+     * only generated again when the simulation asked for belongs to another
+     * round than the last one, so every simulation of a round can be run
+     * once per generation.
+     */
+    
+    private final class Replay implements TraceSampler.Rerun {
+        private final SimulationEnvironment replay = environment.copy();
+        private final dataCompiler discarded = new dataCompiler();
+        private int round = -1;
+        
+        @Override
+        public void rerun(TraceParameters parameters, SimulationEventSink sink){
+            int i = parameters.getEnvironment();
+            if(parameters.getSimulation() != round){
+                round = parameters.getSimulation();
+                replay.GenerateEnvironments(round);
+            }
+            engine.simulation(replay.getSimEnvironment(i), maxTime, 
+                    replay.getSender(i), replay.getReciever(i), discarded, 
+                    sink, new SimulationResult()).run();
+        }
+    }
+    
+    /**
+     * @description closes store, logging a failure
+     * @return null, so callers can drop the store in one statement
+     */
+    
+    private static ResultStore close(ResultStore store){
+        try {
+            store.close();
+        } catch (IOException ex) {
+            Logger.getLogger(SimulationBatch.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return null;
     }
-}  
+}
@@ -0,0 +1,57 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.ArrayList;
+
+/**
+ * @description creates the simulation of one environment. REFERENCE is the
+ * engine of Simulate and Node, alternative engines (for example one that
+ * keeps the nodes in flat arrays) must produce the same results and events
+ * from the same environment, which DifferentialHarness checks. A
+ * SimulationBatch runs the engine given to setEngine().
+ *
+ * Engines are created by class name from the command line of
+ * DifferentialHarness and ScalingBenchmark, so they need a public
+ * constructor without arguments.
+ * @author Brian Spain
+ */
+
+public interface SimulationEngine {
+
+    /**
+     * @description the engine of Simulate
+     */
+
+    SimulationEngine REFERENCE = Simulate::new;
+
+    /**
+     * @param Nodes nodes of the environment, in id order
+     * @param maxTime maximum runtime of the simulation
+     * @param sender id of the sender
+     * @param reciever id of the reciever
+     * @param compiler receives the results of the simulation
+     * @param sink receives the events of the simulation
+     * @param result filled in by the simulation
+     * @return the simulation, not yet run
+     */
+
+    Runnable simulation(ArrayList<Node> Nodes, int maxTime, int sender,
+            int reciever, dataCompiler compiler, SimulationEventSink sink,
+            SimulationResult result);
+
+    /**
+     * @param name fully qualified class name of an engine, or "reference"
+     * @return a new instance of the engine
+     * @throws IllegalArgumentException if name is no engine
+     */
+
+    static SimulationEngine forName(String name){
+        if("reference".equals(name)) return REFERENCE;
+        try {
+            return Class.forName(name).asSubclass(SimulationEngine.class)
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException ex) {
+            throw new IllegalArgumentException("No simulation engine: " + name,
+                    ex);
+        }
+    }
+}
@@ -16,9 +16,28 @@ public class SimulationEnvironment {
     
     private final int height, width, population, range, rangeDecayThreshold;
     private final int popInc, maxBuffer, transmitTime;
-    private final boolean useFakeDestination;
+    private final boolean useFakeDestination, shareBasePopulation;
     private int[][] sendersandreceivers;
     
+    /*
+        Every round gets a seed derived from seed and every environment a seed
+        derived from the round seed, so any environment can be reproduced.
+    */
+    private long seed, roundSeed;
+    private int round;
+    private final long[] environmentSeeds;
+    
+    /*
+        Shared base population (only used when shareBasePopulation is set).
+        The starting state of population + (iterations-1)*popInc nodes is
+        generated once per round and never modified afterwards. Environment i
+        is the first population + i*popInc entries, and its Node objects are
+        only built the first time getSimEnvironment(i) is called.
+    */
+    private final double[] baseX, baseY;
+    private final int[] baseDirection, baseBuffer;
+    private final boolean[] materialized;
+    
     /**
      * @description Constructor creates requested number of blank environments
      * @param height max y value of domain
@@ -34,6 +53,28 @@ public class SimulationEnvironment {
             int range, int rangeDecayThreshold, int transmitTime, int maxBuffer, 
             int iterations, boolean useFakeDestination){
         
+        this(height, width, population, popInc, range, rangeDecayThreshold, 
+                transmitTime, maxBuffer, iterations, useFakeDestination, false);
+    }
+    
+    /**
+     * @description Constructor creates requested number of blank environments
+     * @param height max y value of domain
+     * @param width max x value of domain
+     * @param population number of Nodes to populate each environment
+     * @param range transmit range for each Node
+     * @param transmitTime time to transfer message
+     * @param maxBuffer maximum time to set buffer to for each Node
+     * @param iterations number of environments to create
+     * @param shareBasePopulation if true every environment starts from the 
+     * same base population, environment i adds popInc*i extra nodes to it and 
+     * all environments share the same sender and reciever.
+     */
+    
+    public SimulationEnvironment(int height, int width, int population, int popInc,
+            int range, int rangeDecayThreshold, int transmitTime, int maxBuffer, 
+            int iterations, boolean useFakeDestination, boolean shareBasePopulation){
+        
         this.width=width;
         this.height=height;
         this.population = population;
@@ -43,12 +84,24 @@ public class SimulationEnvironment {
         this.transmitTime = transmitTime;
         this.maxBuffer = maxBuffer;
         this.useFakeDestination = useFakeDestination;
+        this.shareBasePopulation = shareBasePopulation;
         //Create ArrayList for each type of quadrant simulation
         SimEnvironments = new ArrayList<>();
         for(int i = 0; i < iterations; i++){
             SimEnvironments.add(new ArrayList<>());
         }
         sendersandreceivers = new int[iterations][2];
+        environmentSeeds = new long[iterations];
+        seed = new Random().nextLong();
+        round = -1;
+        
+        int basePopulation = shareBasePopulation ? 
+                population + Math.max(0, iterations-1)*popInc : 0;
+        baseX = new double[basePopulation];
+        baseY = new double[basePopulation];
+        baseDirection = new int[basePopulation];
+        baseBuffer = new int[basePopulation];
+        materialized = new boolean[iterations];
     }
     
     /**
@@ -58,38 +111,169 @@ public class SimulationEnvironment {
     
     public void GenerateEnvironments(){
         
+        long phase = PhaseMetrics.start();
+        Object generation = JfrEvents.generation();
+        ++round;
+        roundSeed = mixSeed(seed, round);
+        
+        if(shareBasePopulation){
+            generateBasePopulation();
+        }
+        else{
+            SimEnvironments.forEach((SimEnvironment) -> {
+                SimEnvironment.clear();
+            });
+
+            //Populate each simulation, every environment has its own seed
+            for(int index = 0; index < SimEnvironments.size(); index++){
+                environmentSeeds[index] = mixSeed(roundSeed, index + 1);
+                populate(SimEnvironments.get(index), population + index*popInc,
+                        environmentSeeds[index], sendersandreceivers[index]);
+            }
+        }
+        PhaseMetrics.stop(PhaseMetrics.Phase.GENERATE, phase);
+        JfrEvents.generation(generation, round, SimEnvironments.size());
+    }
+    
+    /**
+     * @description generates the environments of an earlier (or later)
+     * round again, exactly as GenerateEnvironments() did or will for it.
+     * The following GenerateEnvironments() continues with round + 1.
+     * @param round the round to generate
+     */
+    
+    public void GenerateEnvironments(int round){
+        this.round = round - 1;
+        GenerateEnvironments();
+    }
+    
+    /**
+     * @return blank environments with the same parameters and seed, so they
+     * generate the same rounds as this one
+     */
+    
+    SimulationEnvironment copy(){
+        return copy(population, popInc, SimEnvironments.size());
+    }
+    
+    /**
+     * @param population nodes in the first environment of the copy
+     * @param popInc nodes added per environment of the copy
+     * @param iterations environments of the copy
+     * @return blank environments with the same domain, node parameters and
+     * seed but another size
+     */
+    
+    SimulationEnvironment copy(int population, int popInc, int iterations){
+        SimulationEnvironment copy = new SimulationEnvironment(height, width, 
+                population, popInc, range, rangeDecayThreshold, transmitTime, 
+                maxBuffer, iterations, useFakeDestination, 
+                shareBasePopulation);
+        copy.setSeed(seed);
+        return copy;
+    }
+    
+    /**
+     * @description fills SimEnvironment with size nodes, everything about the
+     * nodes (including how they move) follows from seed.
+     * @param SimEnvironment empty list that receives the nodes
+     * @param size number of nodes
+     * @param seed environment seed
+     * @param senderandreciever receives the sender and reciever ids
+     */
+    
+    private void populate(ArrayList<Node> SimEnvironment, int size, long seed,
+            int[] senderandreciever){
+        Random random = new Random(seed);
+        SimEnvironment.ensureCapacity(size);
+        for(int i = 0; i < size; i++){
+            double x = width * Math.abs(random.nextDouble()); //startnig x posit for node
+            double y = height * Math.abs(random.nextDouble()); //starting y posit for node
+            int theta = random.nextInt(360); //starting direction angle for node
+            int buffer = random.nextInt(maxBuffer); //starting buffer for node
+
+            SimEnvironment.add(new Node(i, width, height, x, y, theta, 
+            buffer, transmitTime, range, rangeDecayThreshold, useFakeDestination,
+            mixSeed(seed, i)));
+        }
+        //Choose sender and reciever, ensure they aren't the same node.
+        senderandreciever[0] = random.nextInt(size);
+        do{
+            senderandreciever[1] = random.nextInt(size);
+        }while(senderandreciever[0] == senderandreciever[1]);
+        SimEnvironment.get(senderandreciever[0]).setSender();
+    }
+    
+    /**
+     * @description derives a new seed from seed and value (SplitMix64), used 
+     * to give every round, environment and node its own random sequence.
+     * @param seed seed to derive from
+     * @param value round, environment or node number
+     * @return derived seed
+     */
+    
+    static long mixSeed(long seed, long value){
+        long z = seed + (value + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * @description generates the starting state of the shared base population
+     * for this round. Sender and reciever are chosen from the first population
+     * nodes so they exist in every environment. Node objects are not created
+     * here, see materialize().
+     */
+    
+    private void generateBasePopulation(){
+        
         SimEnvironments.forEach((SimEnvironment) -> {
             SimEnvironment.clear();
         });
         
-        Random random = new Random();
-        
-        //Choose sender and reciever, ensure they aren't the same node.
+        Random random = new Random(roundSeed);
         
+        for(int i = 0; i < baseX.length; i++){
+            baseX[i] = width * Math.abs(random.nextDouble());
+            baseY[i] = height * Math.abs(random.nextDouble());
+            baseDirection[i] = random.nextInt(360);
+            baseBuffer[i] = random.nextInt(maxBuffer);
+        }
         
+        int sender = random.nextInt(population);
+        int reciever;
+        do{
+            reciever = random.nextInt(population);
+        }while(sender == reciever);
         
-        //Populate each simulation with identical starting node conditions
-        for(ArrayList<Node> SimEnvironment : SimEnvironments){
-            for(int i = 0; i < (population + 
-                    SimEnvironments.indexOf(SimEnvironment)*popInc); i++){
-                double x = width * Math.abs(random.nextDouble()); //startnig x posit for node
-                double y = height * Math.abs(random.nextDouble()); //starting y posit for node
-                int theta = random.nextInt(360); //starting direction angle for node
-                int buffer = random.nextInt(maxBuffer); //starting buffer for node
-
-                SimEnvironment.add(new Node(i, width, height, x, y, theta, 
-                buffer, transmitTime, range, rangeDecayThreshold, useFakeDestination));
-            }
-            sendersandreceivers[SimEnvironments.indexOf(SimEnvironment)][0] = random.nextInt(population + 
-                    SimEnvironments.indexOf(SimEnvironment)*popInc);
-            do{
-                sendersandreceivers[SimEnvironments.indexOf(SimEnvironment)][1] = random.nextInt(population + 
-                    SimEnvironments.indexOf(SimEnvironment)*popInc);
-            }while(sendersandreceivers[SimEnvironments.indexOf(SimEnvironment)][0] == 
-                    sendersandreceivers[SimEnvironments.indexOf(SimEnvironment)][1]);
-            SimEnvironment.get(sendersandreceivers[SimEnvironments.indexOf(SimEnvironment)][0]).setSender();
+        for(int i = 0; i < sendersandreceivers.length; i++){
+            sendersandreceivers[i][0] = sender;
+            sendersandreceivers[i][1] = reciever;
+            environmentSeeds[i] = roundSeed;
+            materialized[i] = false;
         }
-
+    }
+    
+    /**
+     * @description copies the shared base population into environment index.
+     * Each environment gets its own Node objects since Nodes are modified
+     * while a simulation runs.
+     * @param index index of simulation environment
+     */
+    
+    private void materialize(int index){
+        ArrayList<Node> SimEnvironment = SimEnvironments.get(index);
+        int size = population + index*popInc;
+        SimEnvironment.ensureCapacity(size);
+        for(int i = 0; i < size; i++){
+            SimEnvironment.add(new Node(i, width, height, baseX[i], baseY[i], 
+                    baseDirection[i], baseBuffer[i], transmitTime, range, 
+                    rangeDecayThreshold, useFakeDestination, 
+                    mixSeed(roundSeed, i)));
+        }
+        SimEnvironment.get(sendersandreceivers[index][0]).setSender();
+        materialized[index] = true;
     }
 
     public int getHeight() {
@@ -104,6 +288,10 @@ public class SimulationEnvironment {
         return range;
     }
 
+    public int getPopInc() {
+        return popInc;
+    }
+    
     public int getTransmitTime() {
         return transmitTime;
     }
@@ -112,10 +300,53 @@ public class SimulationEnvironment {
         return population;
     }
     
+    /**
+     * @param index index of simulation environment
+     * @return number of Nodes in the environment at index
+     */
+    
+    public int getPopulation(int index){
+        return population + index*popInc;
+    }
+    
     public int getBuffer(){
         return maxBuffer;
     }
 
+    /**
+     * @description sets the seed the following rounds are derived from. A 
+     * batch started with the same seed and parameters generates the same
+     * environments.
+     * @param seed batch seed
+     */
+    
+    public void setSeed(long seed){
+        this.seed = seed;
+        this.round = -1;
+    }
+    
+    public long getSeed(){
+        return seed;
+    }
+    
+    /**
+     * @return number of the current round, -1 before the first round
+     */
+    
+    public int getRound(){
+        return round;
+    }
+    
+    /**
+     * @param index index of simulation environment
+     * @return seed of the environment in the current round. When the base
+     * population is shared this is the round seed for every environment.
+     */
+    
+    public long getEnvironmentSeed(int index){
+        return environmentSeeds[index];
+    }
+
     public int getReciever(int index) {
         return sendersandreceivers[index][1];
     }
@@ -130,11 +361,23 @@ public class SimulationEnvironment {
      */
     
     public ArrayList<Node> getSimEnvironment(int index) {
+        if(shareBasePopulation && !materialized[index]){
+            materialize(index);
+        }
         return SimEnvironments.get(index);
     }
 
     public ArrayList<ArrayList<Node>> getSimEnvironments() {
+        if(shareBasePopulation){
+            for(int i = 0; i < SimEnvironments.size(); i++){
+                getSimEnvironment(i);
+            }
+        }
         return SimEnvironments;
     }
     
+    public boolean isSharingBasePopulation(){
+        return shareBasePopulation;
+    }
+    
 }
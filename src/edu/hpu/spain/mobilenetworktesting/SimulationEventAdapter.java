@@ -0,0 +1,64 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+/**
+ * @description SimulationEventSink with empty methods, for sinks that only
+ * care about a few events. Never asks for keyframes.
+ * @author Brian Spain
+ */
+
+public abstract class SimulationEventAdapter implements SimulationEventSink {
+
+    @Override
+    public void header(int senderX, int senderY, int recieverX, int recieverY) {
+    }
+
+    @Override
+    public void tick(int t) {
+    }
+
+    @Override
+    public boolean keyframeDue(int t) {
+        return false;
+    }
+
+    @Override
+    public void keyframe(int t, int population) {
+    }
+
+    @Override
+    public void nodeState(int id, double x, double y, int direction,
+            int flood, int gossip80, int gossip60, int infect) {
+    }
+
+    @Override
+    public void start(int id, int x, int y, int direction, int buffer) {
+    }
+
+    @Override
+    public void turn(int id, double x, double y, int direction) {
+    }
+
+    @Override
+    public void broadcast(int id, int messageType, int x, int y) {
+    }
+
+    @Override
+    public void message(int sender, int target, int messageType, int x, int y) {
+    }
+
+    @Override
+    public void infectMessage(int sender, int target, double k, double k2,
+            double alpha) {
+    }
+
+    @Override
+    public void nodeResult(int id, int messageType, int generation,
+            int received, int children, int neighbors, int uninfectedNeighbors,
+            double alpha) {
+    }
+
+    @Override
+    public void finish(int flood, int gossip80, int gossip60, int infect) {
+    }
+}
@@ -0,0 +1,153 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+/**
+ * @description receives the structured events of a running simulation.
+ * Simulate and Node emit every event through one of these, so there is a
+ * single code path whether or not the simulation is being recorded. Use
+ * NullEventSink.INSTANCE when nothing should be recorded and
+ * RecordingEventSink to keep the events for reconstruction.
+ *
+ * All fields are primitives, implementations should not build Strings while
+ * the simulation is running.
+ * @author Brian Spain
+ */
+
+public interface SimulationEventSink {
+
+    /**
+     * @description start of the simulation, called once before any other event
+     * @param senderX starting x of the sender (truncated)
+     * @param senderY starting y of the sender (truncated)
+     * @param recieverX starting x of the reciever (truncated)
+     * @param recieverY starting y of the reciever (truncated)
+     */
+
+    void header(int senderX, int senderY, int recieverX, int recieverY);
+
+    /**
+     * @description start of a time increment
+     * @param t the tick that is about to be simulated
+     */
+
+    void tick(int t);
+
+    /**
+     * @description asked before every tick. If true the simulation reports
+     * its complete state with keyframe() and one nodeState() per node before
+     * calling tick(t).
+     * @param t the tick that is about to be simulated
+     * @return true if the sink wants a keyframe at t
+     */
+
+    boolean keyframeDue(int t);
+
+    /**
+     * @description start of a keyframe, the state of every node at the start
+     * of tick t follows as nodeState() events
+     * @param t the tick that is about to be simulated
+     * @param population number of nodes
+     */
+
+    void keyframe(int t, int population);
+
+    /**
+     * @description complete state of one node, only sent inside a keyframe
+     * @param id node id
+     * @param x x of the node
+     * @param y y of the node
+     * @param direction direction (degrees)
+     * @param flood generation of flood, -1 if not infected
+     * @param gossip80 generation of gossip80, -1 if not infected
+     * @param gossip60 generation of gossip60, -1 if not infected
+     * @param infect generation of the Research Infection Model, -1 if not
+     * infected
+     */
+
+    void nodeState(int id, double x, double y, int direction, int flood,
+            int gossip80, int gossip60, int infect);
+
+    /**
+     * @description starting location of a node
+     * @param id node id
+     * @param x starting x (truncated)
+     * @param y starting y (truncated)
+     * @param direction starting direction (degrees)
+     * @param buffer buffer of the node
+     */
+
+    void start(int id, int x, int y, int direction, int buffer);
+
+    /**
+     * @description node reached the domain edge and changed direction
+     * @param id node id
+     * @param x x after stepping back from the edge
+     * @param y y after stepping back from the edge
+     * @param direction new direction (degrees)
+     */
+
+    void turn(int id, double x, double y, int direction);
+
+    /**
+     * @description node broadcasts a message
+     * @param id node id
+     * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
+     * @param x x of the node (truncated)
+     * @param y y of the node (truncated)
+     */
+
+    void broadcast(int id, int messageType, int x, int y);
+
+    /**
+     * @description message transfer for flood and gossip
+     * @param sender id of the sending node
+     * @param target id of the target node
+     * @param messageType 0-2 indicating flood, gossip80 or gossip60
+     * @param x x of the sender (truncated)
+     * @param y y of the sender (truncated)
+     */
+
+    void message(int sender, int target, int messageType, int x, int y);
+
+    /**
+     * @description message transfer for the Research Infection Model
+     * @param sender id of the sending node
+     * @param target id of the target node
+     * @param k k of the sender
+     * @param k2 k^2 of the sender
+     * @param alpha alpha of the sender
+     */
+
+    void infectMessage(int sender, int target, double k, double k2, double alpha);
+
+    /**
+     * @description final state of one node for one message type, the values
+     * Simulate reads when it extracts the data of the simulation. Sent for
+     * every node and message type right before finish() when the simulation
+     * is recorded.
+     * @param id node id
+     * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
+     * @param generation generation of the node, -1 if not infected
+     * @param received number of times the node received the message minus
+     * one, -1 if it never did
+     * @param children -1 not part of graph, 0 leaf, >0 number of children
+     * @param neighbors neighbors at first picture
+     * @param uninfectedNeighbors uninfected neighbors used for alpha
+     * @param alpha alpha rounded to three decimal places
+     */
+
+    void nodeResult(int id, int messageType, int generation, int received,
+            int children, int neighbors, int uninfectedNeighbors, double alpha);
+
+    /**
+     * @description end of the simulation, called once after every other event.
+     * Each value is the generation the message reached the reciever in, or -1
+     * if the message type failed.
+     * @param flood outcome of flood
+     * @param gossip80 outcome of gossip80
+     * @param gossip60 outcome of gossip60
+     * @param infect outcome of the Research Infection Model
+     */
+
+    void finish(int flood, int gossip80, int gossip60, int infect);
+}
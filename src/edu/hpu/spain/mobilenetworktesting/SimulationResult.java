@@ -0,0 +1,535 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.Arrays;
+
+/**
+ * @description the outcome of one simulation, one Protocol record of named
+ * counters per message type (flood, gossip80, gossip60, infect). It holds
+ * only primitives and is reused: clear() it before the next simulation.
+ *
+ * While a simulation runs the nodes report every infection, reception, new
+ * child, first picture and alpha change, so the counters are current at
+ * any time and can be read for live metrics. Counters that depend on the
+ * generation the message reached the reciever in are kept per generation
+ * and only split into before and after the destination by finish(), which
+ * costs the number of generations instead of a pass over all nodes. Results
+ * rebuilt after the run (from trace node results) are filled with addNode()
+ * instead.
+ *
+ * Infections and broadcasts are also counted per tick of the simulation,
+ * Simulate reports the tick with tick() before it moves the nodes, which
+ * gives the coverage curve of every message type without a trace.
+ *
+ * Alphas are counted in thousandths, the precision Node.getAlpha() rounds
+ * to, so their sums are exact whatever order the nodes are counted in.
+ *
+ * successRow(), failureRow() and graphRow() lay a result out in the columns
+ * dataCompiler prints:
+ *
+ * Success row, flood/gossip (index 0-2)
+ * 0: #successes 1: #infected at success 2: #infected nodes
+ * 3: generation of success 4: highest generation 5: starting neighbors
+ * 6: average neighbors 7: active nodes before destination
+ * 8: active nodes after destination 9: total messages sent
+ * Infect model (index 3) as above, and
+ * 6: average neighbors of active nodes 10: average alpha before destination
+ * 11: average alpha after destination
+ *
+ * Failure row, flood/gossip (index 0-2)
+ * 0: #failures 1: #infected nodes 2: highest generation
+ * 3: starting #neighbors 4: average #neighbors
+ * Infect model (index 3)
+ * 0: #failures 1: #infected nodes 2: highest generation
+ * 3: starting #neighbors 4: average uninfected #neighbors 5: active nodes
+ * 6: average alpha
+ *
+ * Graph row, for simulations every message type succeeded in
+ * 0: # non-leaf nodes 1: # total nodes 2: highest # of children on one
+ * parent 3: lowest # of children on one parent 4: total messages sent
+ * @author Brian Spain
+ */
+
+public class SimulationResult {
+
+    public static final int SUCCESS_COLUMNS = 10, INFECT_SUCCESS_COLUMNS = 12,
+            FAILURE_COLUMNS = 5, INFECT_FAILURE_COLUMNS = 7, GRAPH_COLUMNS = 5;
+
+    private final Protocol[] protocols;
+    private int tick, ticks;
+    private long nanos, allocatedBytes;
+
+    public SimulationResult(){
+        protocols = new Protocol[4];
+        for(int messageType = 0; messageType < 4; messageType++){
+            protocols[messageType] = new Protocol();
+        }
+        clear();
+    }
+
+    /**
+     * @description resets every counter for the next simulation
+     */
+
+    public void clear(){
+        for(Protocol protocol : protocols){
+            protocol.clear();
+        }
+        tick = 0;
+        ticks = 0;
+        nanos = 0;
+        allocatedBytes = -1;
+    }
+
+    /**
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @return the counters of messageType
+     */
+
+    public Protocol getProtocol(int messageType){
+        return protocols[messageType];
+    }
+
+    /**
+     * @return true if every message type reached the reciever
+     */
+
+    public boolean isAllSuccess(){
+        for(Protocol protocol : protocols){
+            if(!protocol.succeeded) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @description the simulation is at tick t, the following events are
+     * counted for it
+     * @param t tick of the simulation, counted from 0
+     */
+
+    public void tick(int t){
+        tick = t;
+        if(t >= ticks) ticks = t + 1;
+    }
+
+    /**
+     * @return number of ticks reported with tick(), 0 for results rebuilt
+     * with addNode()
+     */
+
+    public int getTicks(){
+        return ticks;
+    }
+
+    /**
+     * @description the cost of the simulation, measured by Simulate
+     * @param nanos wall clock time of the run
+     * @param allocatedBytes bytes the simulation thread allocated during the
+     * run, -1 if the JVM cannot tell
+     */
+
+    public void measured(long nanos, long allocatedBytes){
+        this.nanos = nanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * @return wall clock time of the run in nanoseconds
+     */
+
+    public long getNanos(){
+        return nanos;
+    }
+
+    /**
+     * @return bytes allocated during the run, -1 if unknown
+     */
+
+    public long getAllocatedBytes(){
+        return allocatedBytes;
+    }
+
+    /**
+     * @param alpha alpha of a node
+     * @return alpha in thousandths, as Node.getAlpha() rounds it
+     */
+
+    static int thousandths(double alpha){
+        return Math.abs((int)(1000 * alpha));
+    }
+
+    /**
+     * @description a node was infected, or is the sender
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @param generation generation of the node
+     */
+
+    public void infected(int messageType, int generation){
+        Protocol protocol = protocols[messageType];
+        ++protocol.infected;
+        if(generation > protocol.highestGeneration)
+            protocol.highestGeneration = generation;
+        protocol.infectedPerGeneration = count(
+                protocol.infectedPerGeneration, generation, 1);
+        protocol.infectedPerTick = count(protocol.infectedPerTick, tick, 1);
+    }
+
+    /**
+     * @description an infected node broadcast the message
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     */
+
+    public void broadcast(int messageType){
+        Protocol protocol = protocols[messageType];
+        protocol.broadcastsPerTick = count(protocol.broadcastsPerTick, tick, 1);
+    }
+
+    /**
+     * @description an infected node received the message, the sender counts
+     * as having received it once
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     */
+
+    public void received(int messageType){
+        ++protocols[messageType].messages;
+    }
+
+    /**
+     * @description an infected node took its first picture
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @param neighbors neighbors in the first picture
+     * @param uninfectedNeighbors eligible neighbors not yet infected
+     * @param alpha current alpha of the node in thousandths
+     */
+
+    public void firstPicture(int messageType, int neighbors,
+            int uninfectedNeighbors, int alpha){
+        Protocol protocol = protocols[messageType];
+        protocol.neighbors += neighbors;
+        if(uninfectedNeighbors > 0){
+            ++protocol.uninfectedActive;
+            protocol.uninfectedNeighbors += uninfectedNeighbors;
+            protocol.uninfectedAlpha += alpha;
+        }
+    }
+
+    /**
+     * @description the alpha of a node with uninfected infect model
+     * neighbors changed
+     * @param before alpha in thousandths before the change
+     * @param after alpha in thousandths after the change
+     */
+
+    public void alphaChanged(int before, int after){
+        protocols[3].uninfectedAlpha += after - before;
+    }
+
+    /**
+     * @description a node sent the message to one more child
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @param generation generation of the node
+     * @param children children of the node, including the new one
+     * @param alpha alpha of the node in thousandths
+     */
+
+    public void childAdded(int messageType, int generation, int children,
+            int alpha){
+        Protocol protocol = protocols[messageType];
+        if(children == 1){
+            ++protocol.parents;
+            protocol.activePerGeneration = count(
+                    protocol.activePerGeneration, generation, 1);
+            protocol.alphaPerGeneration = count(
+                    protocol.alphaPerGeneration, generation, alpha);
+        }
+        else{
+            protocol.parentsPerChildren[children - 1]--;
+        }
+        protocol.parentsPerChildren = count(protocol.parentsPerChildren,
+                children, 1);
+        if(children > protocol.mostChildren)
+            protocol.mostChildren = children;
+    }
+
+    /**
+     * @description adds the final state of one infected node, for results
+     * rebuilt after the simulation ran. Call finish() once every node has
+     * been added.
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @param generation generation of the node
+     * @param children nodes infected by the node
+     * @param neighbors neighbors of the node
+     * @param uninfectedNeighbors neighbors the node did not infect
+     * @param messages messages received by the node
+     * @param alpha alpha of the node
+     */
+
+    public void addNode(int messageType, int generation, int children,
+            int neighbors, int uninfectedNeighbors, int messages, double alpha){
+        Protocol protocol = protocols[messageType];
+        int milli = (int)Math.round(1000 * alpha);
+        infected(messageType, generation);
+        protocol.messages += messages;
+        firstPicture(messageType, neighbors, uninfectedNeighbors, milli);
+        if(children > 0){
+            ++protocol.parents;
+            protocol.activePerGeneration = count(
+                    protocol.activePerGeneration, generation, 1);
+            protocol.alphaPerGeneration = count(
+                    protocol.alphaPerGeneration, generation, milli);
+            protocol.parentsPerChildren = count(protocol.parentsPerChildren,
+                    children, 1);
+            if(children > protocol.mostChildren)
+                protocol.mostChildren = children;
+        }
+    }
+
+    /**
+     * @description sets the outcome of messageType and splits the counters
+     * kept per generation into before and after the destination
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @param successGeneration generation the message reached the reciever
+     * in, -1 if it failed
+     * @param senderNeighbors neighbors of the sender
+     */
+
+    public void finish(int messageType, int successGeneration,
+            int senderNeighbors){
+        Protocol protocol = protocols[messageType];
+        protocol.succeeded = successGeneration >= 0;
+        protocol.successGeneration = successGeneration;
+        protocol.senderNeighbors = senderNeighbors;
+        protocol.infectedAtSuccess = 0;
+        protocol.activeBefore = 0;
+        protocol.activeAfter = 0;
+        protocol.alphaBefore = 0;
+        protocol.alphaAfter = 0;
+        if(protocol.succeeded){
+            int[] infected = protocol.infectedPerGeneration;
+            int[] active = protocol.activePerGeneration;
+            long[] alpha = protocol.alphaPerGeneration;
+            int split = Math.min(successGeneration, infected.length);
+            for(int g = 0; g < split; g++){
+                protocol.infectedAtSuccess += infected[g];
+            }
+            int generations = Math.min(active.length, 
+                    protocol.highestGeneration + 1);
+            for(int g = 0; g < generations; g++){
+                if(g < successGeneration){
+                    protocol.activeBefore += active[g];
+                    protocol.alphaBefore += alpha[g];
+                }
+                else{
+                    protocol.activeAfter += active[g];
+                    protocol.alphaAfter += alpha[g];
+                }
+            }
+        }
+        protocol.fewestChildren = Integer.MAX_VALUE;
+        for(int c = 1; c < protocol.parentsPerChildren.length; c++){
+            if(protocol.parentsPerChildren[c] > 0){
+                protocol.fewestChildren = c;
+                break;
+            }
+        }
+    }
+
+    private static int[] count(int[] counts, int index, int amount){
+        if(index >= counts.length){
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+        }
+        counts[index] += amount;
+        return counts;
+    }
+
+    private static long[] count(long[] counts, int index, int amount){
+        if(index >= counts.length){
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+        }
+        counts[index] += amount;
+        return counts;
+    }
+
+    /**
+     * @description writes the success columns of messageType, all zero if it
+     * failed
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @param row at least SUCCESS_COLUMNS long, INFECT_SUCCESS_COLUMNS for
+     * the infect model
+     */
+
+    public void successRow(int messageType, double[] row){
+        Protocol protocol = protocols[messageType];
+        Arrays.fill(row, 0);
+        if(!protocol.succeeded) return;
+        row[0] = 1;
+        row[1] = protocol.infectedAtSuccess;
+        row[2] = protocol.infected;
+        row[3] = protocol.successGeneration;
+        row[4] = protocol.highestGeneration;
+        row[5] = protocol.senderNeighbors;
+        row[6] = messageType == 3 ?
+                protocol.neighbors / (double)(protocol.activeBefore + protocol.activeAfter) :
+                protocol.neighbors / (double)protocol.infected;
+        row[7] = protocol.activeBefore;
+        row[8] = protocol.activeAfter;
+        row[9] = protocol.messages;
+        if(messageType == 3){
+            row[10] = average(protocol.alphaBefore, protocol.activeBefore);
+            row[11] = average(protocol.alphaAfter, protocol.activeAfter);
+        }
+    }
+
+    /**
+     * @description writes the failure columns of messageType, all zero if it
+     * succeeded. Flood and gossip count every infected node twice, the
+     * average neighbors is divided by that count as well; the rows keep this
+     * so compiled results stay comparable with earlier batches.
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @param row at least FAILURE_COLUMNS long, INFECT_FAILURE_COLUMNS for
+     * the infect model
+     */
+
+    public void failureRow(int messageType, double[] row){
+        Protocol protocol = protocols[messageType];
+        Arrays.fill(row, 0);
+        if(protocol.succeeded) return;
+        row[0] = 1;
+        row[2] = protocol.highestGeneration;
+        row[3] = protocol.senderNeighbors;
+        if(messageType == 3){
+            row[1] = protocol.infected;
+            row[4] = protocol.uninfectedNeighbors /
+                    (double)protocol.uninfectedActive;
+            row[5] = protocol.uninfectedActive;
+            row[6] = average(protocol.uninfectedAlpha, protocol.uninfectedActive);
+        }
+        else{
+            row[1] = 2 * protocol.infected;
+            row[4] = protocol.neighbors / (double)(2 * protocol.infected);
+        }
+    }
+
+    /**
+     * @description writes the graph columns of messageType, zero (with
+     * Integer.MAX_VALUE fewest children) unless every message type succeeded
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @param row at least GRAPH_COLUMNS long
+     */
+
+    public void graphRow(int messageType, double[] row){
+        Protocol protocol = protocols[messageType];
+        Arrays.fill(row, 0);
+        row[3] = Integer.MAX_VALUE;
+        if(!isAllSuccess()) return;
+        row[0] = protocol.parents;
+        row[1] = protocol.infected;
+        row[2] = protocol.mostChildren;
+        row[3] = protocol.fewestChildren;
+        row[4] = protocol.messages;
+    }
+
+    /**
+     * @return average alpha truncated to three decimal places, 0 without
+     * nodes
+     */
+
+    private static double average(long thousandths, int nodes){
+        return nodes == 0 ? 0 : (thousandths / nodes) / 1000.0;
+    }
+
+    /**
+     * @description counters of one message type. Fields are public so
+     * exporters can read them without a getter per metric, they are only
+     * written through SimulationResult. The fields marked as set by finish()
+     * are zero while the simulation runs.
+     */
+
+    public static final class Protocol {
+        /** true if the message reached the reciever, set by finish() */
+        public boolean succeeded;
+        /** generation the message reached the reciever in, -1 if it failed,
+         * set by finish() */
+        public int successGeneration;
+        /** neighbors of the sender, set by finish() */
+        public int senderNeighbors;
+        /** infected nodes */
+        public int infected;
+        /** infected nodes with a generation below the generation of
+         * success, set by finish() */
+        public int infectedAtSuccess;
+        /** highest generation of an infected node */
+        public int highestGeneration;
+        /** infected nodes with children before and after the destination,
+         * set by finish() */
+        public int activeBefore, activeAfter;
+        /** infected nodes with uninfected neighbors */
+        public int uninfectedActive;
+        /** sum of the neighbors of the infected nodes */
+        public long neighbors;
+        /** sum of the uninfected neighbors of the infected nodes */
+        public long uninfectedNeighbors;
+        /** messages received by all infected nodes */
+        public long messages;
+        /** alphas in thousandths summed over the active nodes before and
+         * after the destination (set by finish()) and over the nodes with
+         * uninfected neighbors */
+        public long alphaBefore, alphaAfter, uninfectedAlpha;
+        /** infected nodes with children */
+        public int parents;
+        /** most and fewest children of one parent, fewest set by finish() */
+        public int mostChildren, fewestChildren;
+
+        private int[] infectedPerGeneration = new int[32];
+        private int[] activePerGeneration = new int[32];
+        private long[] alphaPerGeneration = new long[32];
+        private int[] parentsPerChildren = new int[32];
+        private int[] infectedPerTick = new int[32];
+        private int[] broadcastsPerTick = new int[32];
+
+        /**
+         * @param tick tick of the simulation
+         * @return nodes infected in tick, the sender counts for tick 0
+         */
+
+        public int getInfected(int tick){
+            return tick < infectedPerTick.length ? infectedPerTick[tick] : 0;
+        }
+
+        /**
+         * @param tick tick of the simulation
+         * @return broadcasts started in tick
+         */
+
+        public int getBroadcasts(int tick){
+            return tick < broadcastsPerTick.length ? broadcastsPerTick[tick] : 0;
+        }
+
+        private void clear(){
+            succeeded = false;
+            successGeneration = -1;
+            senderNeighbors = 0;
+            infected = 0;
+            infectedAtSuccess = 0;
+            highestGeneration = 0;
+            activeBefore = 0;
+            activeAfter = 0;
+            uninfectedActive = 0;
+            neighbors = 0;
+            uninfectedNeighbors = 0;
+            messages = 0;
+            alphaBefore = 0;
+            alphaAfter = 0;
+            uninfectedAlpha = 0;
+            parents = 0;
+            mostChildren = 0;
+            fewestChildren = Integer.MAX_VALUE;
+            Arrays.fill(infectedPerGeneration, 0);
+            Arrays.fill(activePerGeneration, 0);
+            Arrays.fill(alphaPerGeneration, 0);
+            Arrays.fill(parentsPerChildren, 0);
+            Arrays.fill(infectedPerTick, 0);
+            Arrays.fill(broadcastsPerTick, 0);
+        }
+    }
+}
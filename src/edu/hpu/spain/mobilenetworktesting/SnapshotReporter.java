@@ -0,0 +1,129 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @description writes snapshots of a running batch, BatchProgress and
+ * PhaseMetrics, periodically from a background thread. A snapshot goes to a
+ * properties file that is replaced as a whole, so readers never see half of
+ * one, or to the log as one line when there is no file.
+ * @author Brian Spain
+ */
+
+final class SnapshotReporter {
+
+    /**
+     * @description writes the properties of one snapshot
+     */
+
+    interface Properties {
+
+        /**
+         * @param output receives the properties, one per line
+         * @throws IOException if output cannot be written
+         */
+
+        void write(Writer output) throws IOException;
+    }
+
+    private final Class<?> owner;
+    private final Supplier<String> line;
+    private final Properties properties;
+    private Thread reporter;
+
+    /**
+     * @param owner class the reporter thread and log records are named after
+     * @param line snapshot as a log line
+     * @param properties snapshot as properties, the time is written before
+     * them
+     */
+
+    SnapshotReporter(Class<?> owner, Supplier<String> line,
+            Properties properties){
+        this.owner = owner;
+        this.line = line;
+        this.properties = properties;
+    }
+
+    /**
+     * @description writes the snapshot to file through a temporary file that
+     * replaces it
+     * @param file destination
+     * @throws IOException if the file cannot be written
+     */
+
+    void write(File file) throws IOException{
+        File temporary = new File(file.getPath() + ".tmp");
+        try (Writer output = Files.newBufferedWriter(temporary.toPath(),
+                StandardCharsets.UTF_8)) {
+            output.write("time=" + System.currentTimeMillis() + "\n");
+            properties.write(output);
+        }
+        Files.move(temporary.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @description writes one snapshot to file or the log
+     * @param file snapshot file, null logs the snapshot instead
+     */
+
+    void export(File file){
+        if(file == null){
+            Logger.getLogger(owner.getName()).log(Level.INFO, line.get());
+            return;
+        }
+        try {
+            write(file);
+        } catch (IOException ex) {
+            Logger.getLogger(owner.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * @description exports a snapshot every period milliseconds until stop()
+     * is called, replacing the previous reporter
+     * @param file snapshot file, null logs the snapshot instead
+     * @param period milliseconds between snapshots
+     */
+
+    synchronized void start(File file, long period){
+        stop();
+        reporter = new Thread(() -> {
+            try {
+                while(!Thread.currentThread().isInterrupted()){
+                    Thread.sleep(period);
+                    export(file);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, owner.getSimpleName());
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    /**
+     * @description stops the reporter started by start()
+     */
+
+    synchronized void stop(){
+        if(reporter == null) return;
+        reporter.interrupt();
+        try {
+            reporter.join();
+        } catch (InterruptedException ex) {
+            Logger.getLogger(owner.getName()).log(Level.SEVERE, null, ex);
+        }
+        reporter = null;
+    }
+}
@@ -0,0 +1,124 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+/**
+ * @description SimulationEventSink that records into a fixed size chunk and
+ * hands every full chunk to an AsyncTraceWriter. A simulation only ever holds
+ * one chunk, however long it runs. Created by AsyncTraceWriter.open().
+ * @author Brian Spain
+ */
+
+public class StreamingTraceSink implements SimulationEventSink {
+
+    private final AsyncTraceWriter writer;
+    private final AsyncTraceWriter.Trace trace;
+    private final int chunkEvents;
+    private RecordingEventSink chunk;
+
+    StreamingTraceSink(AsyncTraceWriter writer, AsyncTraceWriter.Trace trace){
+        this.writer = writer;
+        this.trace = trace;
+        this.chunkEvents = writer.getChunkEvents();
+        this.chunk = writer.chunk();
+    }
+
+    /**
+     * @description hands the chunk to the writer once it is full
+     */
+
+    private void check(){
+        if(chunk.size() >= chunkEvents){
+            writer.submit(trace, chunk, false);
+            chunk = writer.chunk();
+        }
+    }
+
+    /**
+     * @description hands the remaining events to the writer, which finishes
+     * the file. The sink must not be used afterwards.
+     */
+
+    public void close(){
+        if(chunk == null) return;
+        writer.submit(trace, chunk, true);
+        chunk = null;
+    }
+
+    @Override
+    public void header(int senderX, int senderY, int recieverX, int recieverY) {
+        chunk.header(senderX, senderY, recieverX, recieverY);
+        check();
+    }
+
+    @Override
+    public void tick(int t) {
+        chunk.tick(t);
+        check();
+    }
+
+    @Override
+    public boolean keyframeDue(int t) {
+        int interval = trace.keyframeInterval;
+        return interval > 0 && t % interval == 0;
+    }
+
+    @Override
+    public void keyframe(int t, int population) {
+        chunk.keyframe(t, population);
+        check();
+    }
+
+    @Override
+    public void nodeState(int id, double x, double y, int direction,
+            int flood, int gossip80, int gossip60, int infect) {
+        chunk.nodeState(id, x, y, direction, flood, gossip80, gossip60, infect);
+        check();
+    }
+
+    @Override
+    public void start(int id, int x, int y, int direction, int buffer) {
+        chunk.start(id, x, y, direction, buffer);
+        check();
+    }
+
+    @Override
+    public void turn(int id, double x, double y, int direction) {
+        chunk.turn(id, x, y, direction);
+        check();
+    }
+
+    @Override
+    public void broadcast(int id, int messageType, int x, int y) {
+        chunk.broadcast(id, messageType, x, y);
+        check();
+    }
+
+    @Override
+    public void message(int sender, int target, int messageType, int x, int y) {
+        chunk.message(sender, target, messageType, x, y);
+        check();
+    }
+
+    @Override
+    public void infectMessage(int sender, int target, double k, double k2,
+            double alpha) {
+        chunk.infectMessage(sender, target, k, k2, alpha);
+        check();
+    }
+
+    @Override
+    public void nodeResult(int id, int messageType, int generation,
+            int received, int children, int neighbors, int uninfectedNeighbors,
+            double alpha) {
+        chunk.nodeResult(id, messageType, generation, received, children,
+                neighbors, uninfectedNeighbors, alpha);
+        check();
+    }
+
+    @Override
+    public void finish(int flood, int gossip80, int gossip60, int infect) {
+        trace.outcome(flood, gossip80, gossip60, infect);
+        chunk.finish(flood, gossip80, gossip60, infect);
+        check();
+    }
+}
@@ -0,0 +1,120 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * @description parses the text reconstruction format written by
+ * TextTraceWriter and dataCompiler.rawDataToFile() back into events. The older
+ * variant found in the Reconstruction directory is accepted as well: there the
+ * node id follows the record letter without a space ("m11 32 0 4 267"),
+ * broadcasts use "B" and every message is preceded by a "z" line repeating
+ * it, which is skipped. The text format has no tick events, so none are
+ * emitted.
+ * @author Brian Spain
+ */
+
+public class TextTraceReader {
+
+    private TextTraceReader(){
+    }
+
+    /**
+     * @description splits a line into fields, separating a record letter that
+     * is directly followed by the node id ("t60" becomes "t", "60").
+     * @param line a record of the trace
+     * @return the fields of the record
+     */
+
+    private static String[] split(String line){
+        String[] fields = line.split(" ");
+        if(Character.isLetter(fields[0].charAt(0)) && fields[0].length() > 1){
+            String[] split = new String[fields.length + 1];
+            split[0] = fields[0].substring(0, 1);
+            split[1] = fields[0].substring(1);
+            System.arraycopy(fields, 1, split, 2, fields.length - 1);
+            return split;
+        }
+        return fields;
+    }
+
+    /**
+     * @description reads every line of reader and sends the matching event to
+     * sink. The key at the top of the file is skipped.
+     * @param reader text trace
+     * @param sink receives the events
+     * @throws IOException if reading fails or a line cannot be parsed
+     */
+
+    public static void replay(BufferedReader reader, SimulationEventSink sink)
+            throws IOException{
+        String line;
+        int lineNumber = 0;
+        boolean header = false;
+        while((line = reader.readLine()) != null){
+            ++lineNumber;
+            if(line.isEmpty() || line.startsWith("Key:") ||
+                    (line.length() > 1 && line.charAt(1) == ':')){
+                continue;
+            }
+            try {
+                String[] fields = split(line);
+                if(!header){
+                    sink.header(Integer.parseInt(fields[0]),
+                            Integer.parseInt(fields[1]),
+                            Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3]));
+                    header = true;
+                    continue;
+                }
+                switch(line.charAt(0)){
+                    case 's':
+                        sink.start(Integer.parseInt(fields[1]),
+                                Integer.parseInt(fields[2]),
+                                Integer.parseInt(fields[3]),
+                                Integer.parseInt(fields[4]),
+                                Integer.parseInt(fields[5]));
+                        break;
+                    case 'z':
+                        break;
+                    case 't':
+                        sink.turn(Integer.parseInt(fields[1]),
+                                Double.parseDouble(fields[2]),
+                                Double.parseDouble(fields[3]),
+                                Integer.parseInt(fields[4]));
+                        break;
+                    case 'b':
+                    case 'B':
+                        sink.broadcast(Integer.parseInt(fields[1]),
+                                Integer.parseInt(fields[2]),
+                                Integer.parseInt(fields[3]),
+                                Integer.parseInt(fields[4]));
+                        break;
+                    case 'm':
+                        if(fields[3].equals("3")){
+                            sink.infectMessage(Integer.parseInt(fields[1]),
+                                    Integer.parseInt(fields[2]),
+                                    Double.parseDouble(fields[4]),
+                                    Double.parseDouble(fields[5]),
+                                    Double.parseDouble(fields[6]));
+                        }
+                        else{
+                            sink.message(Integer.parseInt(fields[1]),
+                                    Integer.parseInt(fields[2]),
+                                    Integer.parseInt(fields[3]),
+                                    Integer.parseInt(fields[4]),
+                                    Integer.parseInt(fields[5]));
+                        }
+                        break;
+                    default:
+                        throw new IOException("Unknown record on line " +
+                                lineNumber + ": " + line);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+                throw new IOException("Malformed record on line " + lineNumber
+                        + ": " + line, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * @description SimulationEventSink that writes events in the text format used
+ * by the reconstruction files (one line per event, see
+ * dataCompiler.rawDataToFile()). Tick events are not part of the text format
+ * and are skipped.
+ * @author Brian Spain
+ */
+
+public class TextTraceWriter implements TraceOutput {
+
+    static final String KEY = "Key: \n" 
+            + "t: node change direction (node id, x, y, new direction)" + "\n"
+            + "s: node start location (node id, x, y, start direction, buffer)" + "\n"
+            + "m: message transfer (sender id, target id, messageType, sender x, sender y" + "\n"
+            + "b: broadcast (node id, message type, x, y)" + "\n";
+
+    private final Writer writer;
+    private final StringBuilder line;
+    private IOException error;
+
+    /**
+     * @param writer where the lines are written, closed by close()
+     */
+
+    public TextTraceWriter(Writer writer){
+        this.writer = writer;
+        this.line = new StringBuilder(64);
+    }
+
+    /**
+     * @description writes the key explaining the records, which starts every
+     * reconstruction file
+     * @param writer where the key is written
+     * @throws IOException if writing fails
+     */
+
+    public static void writeKey(Writer writer) throws IOException{
+        writer.write(KEY);
+    }
+
+    /**
+     * @description writes the current line. The sink methods cannot throw, so
+     * the first IOException is kept and thrown again by close().
+     */
+
+    private void endLine(){
+        line.append('\n');
+        if(error == null){
+            try {
+                writer.append(line);
+            } catch (IOException ex) {
+                error = ex;
+            }
+        }
+        line.setLength(0);
+    }
+
+    @Override
+    public void header(int senderX, int senderY, int recieverX, int recieverY) {
+        line.append(senderX).append(' ').append(senderY).append(' ')
+                .append(recieverX).append(' ').append(recieverY);
+        endLine();
+    }
+
+    @Override
+    public void tick(int t) {
+    }
+
+    @Override
+    public void start(int id, int x, int y, int direction, int buffer) {
+        line.append("s ").append(id).append(' ').append(x).append(' ')
+                .append(y).append(' ').append(direction).append(' ')
+                .append(buffer);
+        endLine();
+    }
+
+    @Override
+    public void turn(int id, double x, double y, int direction) {
+        line.append('t').append(id).append(' ').append(x).append(' ')
+                .append(y).append(' ').append(direction);
+        endLine();
+    }
+
+    @Override
+    public void broadcast(int id, int messageType, int x, int y) {
+        line.append("b ").append(id).append(' ').append(messageType)
+                .append(' ').append(x).append(' ').append(y);
+        endLine();
+    }
+
+    @Override
+    public void message(int sender, int target, int messageType, int x, int y) {
+        line.append("m ").append(sender).append(' ').append(target)
+                .append(' ').append(messageType).append(' ').append(x)
+                .append(' ').append(y);
+        endLine();
+    }
+
+    @Override
+    public void infectMessage(int sender, int target, double k, double k2,
+            double alpha) {
+        line.append("m ").append(sender).append(' ').append(target)
+                .append(" 3 ").append(k).append(' ').append(k2).append(' ')
+                .append(alpha);
+        endLine();
+    }
+
+    /**
+     * @description the text format has no keyframes, the Reconstruction
+     * files stay as they are
+     */
+
+    @Override
+    public boolean keyframeDue(int t) {
+        return false;
+    }
+
+    @Override
+    public void keyframe(int t, int population) {
+    }
+
+    @Override
+    public void nodeState(int id, double x, double y, int direction,
+            int flood, int gossip80, int gossip60, int infect) {
+    }
+
+    /**
+     * @description the text format has no node results
+     */
+
+    @Override
+    public void nodeResult(int id, int messageType, int generation,
+            int received, int children, int neighbors, int uninfectedNeighbors,
+            double alpha) {
+    }
+
+    /**
+     * @description the text format has no end record, the outcome follows 
+     * from the messages.
+     */
+
+    @Override
+    public void finish(int flood, int gossip80, int gossip60, int infect) {
+    }
+
+    /**
+     * @throws IOException the first error hit while writing, or the error
+     * from closing the writer
+     */
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        if(error != null) throw error;
+    }
+}
@@ -0,0 +1,49 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @description bytes allocated by the current thread, as far as the JVM
+ * keeps count (HotSpot does through com.sun.management.ThreadMXBean). On
+ * other JVMs every count is -1.
+ * @author Brian Spain
+ */
+
+final class ThreadAllocations {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private ThreadAllocations(){
+    }
+
+    private static com.sun.management.ThreadMXBean threads(){
+        try {
+            java.lang.management.ThreadMXBean threads = 
+                    ManagementFactory.getThreadMXBean();
+            if(threads instanceof com.sun.management.ThreadMXBean){
+                com.sun.management.ThreadMXBean hotspot = 
+                        (com.sun.management.ThreadMXBean)threads;
+                if(hotspot.isThreadAllocatedMemorySupported()){
+                    hotspot.setThreadAllocatedMemoryEnabled(true);
+                    return hotspot;
+                }
+            }
+        } catch (LinkageError | UnsupportedOperationException ex) {
+            Logger.getLogger(ThreadAllocations.class.getName()).log(Level.INFO, 
+                    "Allocation counts unavailable", ex);
+        }
+        return null;
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, -1 if unknown
+     */
+
+    static long current(){
+        return THREADS == null ? -1 : 
+                THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
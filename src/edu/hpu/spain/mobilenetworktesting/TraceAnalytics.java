@@ -0,0 +1,212 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @description runs TraceReducers over many trace files in parallel. Every
+ * trace is memory mapped and replayed into the sink of the reducer, worker
+ * threads take the next unread trace until none are left and the
+ * accumulators of the workers are merged at the end. Text and binary traces
+ * can be mixed. Traces that cannot be read are logged and skipped.
+ *
+ * Usage: TraceAnalytics file-or-directory... prints the success, failure and
+ * graph statistics rebuilt from the traces (see TraceReducers.statistics()),
+ * which only version 4 binary traces contribute to.
+ * @author Brian Spain
+ */
+
+public class TraceAnalytics {
+
+    private final int threads;
+    private final AtomicInteger read, skipped;
+
+    public TraceAnalytics(){
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads number of worker threads
+     */
+
+    public TraceAnalytics(int threads){
+        this.threads = Math.max(1, threads);
+        this.read = new AtomicInteger();
+        this.skipped = new AtomicInteger();
+    }
+
+    /**
+     * @param files trace files and directories, directories contribute every
+     * L_* trace they contain
+     * @return the trace files, in file name order per directory
+     */
+
+    public static List<File> traces(File... files){
+        List<File> traces = new ArrayList<>();
+        for(File file : files){
+            if(!file.isDirectory()){
+                traces.add(file);
+                continue;
+            }
+            File[] contained = file.listFiles((dir, name) ->
+                    name.startsWith("L_") && (name.endsWith(".txt") ||
+                    name.endsWith("." + TraceConverter.EXTENSION)));
+            if(contained == null) continue;
+            Arrays.sort(contained);
+            traces.addAll(Arrays.asList(contained));
+        }
+        return traces;
+    }
+
+    /**
+     * @description reads every trace with reducer
+     * @param <A> accumulator type of the reducer
+     * @param traces trace files
+     * @param reducer computation applied to every trace
+     * @return the merged accumulator of all workers
+     */
+
+    public <A> A run(List<File> traces, TraceReducer<A> reducer){
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(threads, Math.max(1, traces.size()));
+        List<A> accumulators = new ArrayList<>(workers);
+        ArrayList<Thread> group = new ArrayList<>(workers);
+        for(int i = 0; i < workers; i++){
+            A accumulator = reducer.create();
+            accumulators.add(accumulator);
+            group.add(new Thread(() -> {
+                int index;
+                while((index = next.getAndIncrement()) < traces.size()){
+                    File trace = traces.get(index);
+                    try {
+                        replay(trace, reducer, accumulator);
+                        read.incrementAndGet();
+                    } catch (IOException ex) {
+                        skipped.incrementAndGet();
+                        Logger.getLogger(TraceAnalytics.class.getName()).log(
+                                Level.SEVERE, "Could not read " + trace, ex);
+                    }
+                }
+            }, "Trace analytics " + i));
+            group.get(i).start();
+        }
+        group.forEach((worker) -> {
+            try {
+                worker.join();
+            } catch (InterruptedException ex) {
+                Logger.getLogger(TraceAnalytics.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        });
+        A result = accumulators.get(0);
+        for(int i = 1; i < accumulators.size(); i++){
+            result = reducer.merge(result, accumulators.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return number of traces read by run() so far
+     */
+
+    public int getRead(){
+        return read.get();
+    }
+
+    /**
+     * @return number of traces skipped by run() so far
+     */
+
+    public int getSkipped(){
+        return skipped.get();
+    }
+
+    private static <A> void replay(File trace, TraceReducer<A> reducer,
+            A accumulator) throws IOException{
+        ByteBuffer mapped = map(trace);
+        TraceParameters parameters = TraceParameters.fromFileName(trace.getName());
+        if(trace.getName().endsWith(".txt")){
+            if(parameters == null){
+                throw new IOException("No simulation parameters in file name " +
+                        trace.getName());
+            }
+            TextTraceReader.replay(new BufferedReader(new InputStreamReader(
+                    new MappedInputStream(mapped), StandardCharsets.UTF_8)),
+                    reducer.map(accumulator, parameters));
+        }
+        else{
+            try (BinaryTraceDecoder decoder = new BinaryTraceDecoder(mapped)) {
+                if(parameters == null) parameters = decoder.getParameters();
+                decoder.replay(reducer.map(accumulator, parameters));
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(File trace) throws IOException{
+        try (RandomAccessFile input = new RandomAccessFile(trace, "r");
+                FileChannel channel = input.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    public static void main(String[] args){
+        File[] files = new File[args.length];
+        for(int i = 0; i < args.length; i++){
+            files[i] = new File(args[i]);
+        }
+        TraceAnalytics analytics = new TraceAnalytics();
+        long time = System.currentTimeMillis();
+        dataCompiler statistics = analytics.run(traces(files),
+                TraceReducers.statistics());
+        time = System.currentTimeMillis() - time;
+        System.out.println(analytics.getRead() + " traces read, " +
+                analytics.getSkipped() + " skipped, " +
+                statistics.getNumSims() + " with node results, " + time + " ms");
+        if(statistics.getNumSims() < analytics.getRead()){
+            System.out.println((analytics.getRead() - statistics.getNumSims())
+                    + " traces without node results left out, the statistics "
+                    + "need binary traces of version 4 or later");
+        }
+        statistics.compile();
+        statistics.print();
+    }
+
+    /**
+     * @description reads a mapped file without copying it to the heap first
+     */
+
+    private static final class MappedInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        MappedInputStream(ByteBuffer buffer){
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read(){
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length){
+            if(!buffer.hasRemaining()) return -1;
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+    }
+}
@@ -0,0 +1,501 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @description index of the traces in a directory (text L_*.txt and binary
+ * L_*.trace). Every trace is read once and summarized: its parameters, the
+ * generation each message type reached the reciever in (-1 if it did not),
+ * the number of messages per type and the number of nodes. The summaries are
+ * kept in a catalog file, update() only reads traces that are new or changed
+ * since the last update. The catalog file is one the caller chooses or, for
+ * a trace output directory of a SimulationBatch (one with a manifest.tsv),
+ * catalog.bin in that directory. Other directories are indexed in memory
+ * only, so nothing is written next to traces that are checked in.
+ *
+ * Outcomes are exact if the trace is listed in the manifest.tsv of the
+ * directory, which has the outcomes the simulation recorded, or if the
+ * trace has a finish event (binary traces). Otherwise, for older text
+ * traces, the outcome is inferred from the first message that reached the
+ * reciever, see Entry.isExact().
+ *
+ * Usage: TraceCatalog [-catalog file] directory [key=value...] lists the
+ * matching traces, keys are L, W, P, MB, TT, SIMNUM, ENV, B and flood,
+ * gossip80, gossip60, infect with the values ok, fail or a generation.
+ * @author Brian Spain
+ */
+
+public class TraceCatalog {
+
+    public static final String FILE_NAME = "catalog.bin";
+
+    private static final int MAGIC = 0x4d4e5443; //"MNTC"
+    private static final int VERSION = 1;
+    private static final String[] MESSAGE_TYPES = 
+            {"flood", "gossip80", "gossip60", "infect"};
+
+    private final File directory, file;
+    private final List<Entry> entries;
+    private boolean loaded;
+
+    /**
+     * @param directory directory holding the traces, the catalog is kept in
+     * it only if it has a manifest
+     */
+
+    public TraceCatalog(File directory){
+        this(directory, new TraceManifest(directory).getFile().exists() ?
+                new File(directory, FILE_NAME) : null);
+    }
+
+    /**
+     * @param directory directory holding the traces
+     * @param file catalog file, null keeps the catalog in memory only
+     */
+
+    public TraceCatalog(File directory, File file){
+        this.directory = directory;
+        this.file = file;
+        this.entries = new ArrayList<>();
+    }
+
+    /**
+     * @description brings the catalog up to date with the directory: traces
+     * that are new or whose size or modification time changed are read,
+     * removed traces are dropped. The catalog file is rewritten if anything
+     * changed. Traces that cannot be read are logged and left out.
+     * @return number of traces that were read
+     * @throws IOException if the catalog file cannot be read or written
+     */
+
+    public synchronized int update() throws IOException{
+        if(!loaded){
+            load();
+            loaded = true;
+        }
+        File[] traces = directory.listFiles((dir, name) -> isTrace(name));
+        if(traces == null) traces = new File[0];
+        Arrays.sort(traces);
+
+        Map<String, int[]> outcomes = new HashMap<>();
+        for(TraceManifest.Entry shard : new TraceManifest(directory).read()){
+            int[] outcome = new int[MESSAGE_TYPES.length];
+            for(int i = 0; i < outcome.length; i++){
+                outcome[i] = shard.getOutcome(i);
+            }
+            outcomes.put(shard.getShard(), outcome);
+        }
+        Map<String, Entry> known = new HashMap<>();
+        entries.forEach((entry) -> {
+            known.put(entry.name, entry);
+        });
+        List<Entry> updated = new ArrayList<>(traces.length);
+        int read = 0;
+        boolean corrected = false;
+        for(File trace : traces){
+            Entry entry = known.get(trace.getName());
+            if(entry == null || entry.bytes != trace.length() ||
+                    entry.modified != trace.lastModified()){
+                try {
+                    entry = index(trace);
+                    ++read;
+                } catch (IOException ex) {
+                    Logger.getLogger(TraceCatalog.class.getName()).log(
+                            Level.SEVERE, "Could not index " + trace, ex);
+                    continue;
+                }
+            }
+            int[] outcome = outcomes.get(entry.name);
+            if(outcome != null && !(entry.exact && 
+                    Arrays.equals(outcome, entry.outcome))){
+                entry = entry.withOutcome(outcome);
+                corrected = true;
+            }
+            updated.add(entry);
+        }
+        boolean changed = read > 0 || corrected || updated.size() != entries.size();
+        entries.clear();
+        entries.addAll(updated);
+        if(changed) save();
+        return read;
+    }
+
+    /**
+     * @param predicate condition on the summary of a trace
+     * @return the traces that match, in file name order
+     */
+
+    public synchronized List<Entry> query(Predicate<Entry> predicate){
+        List<Entry> matches = new ArrayList<>();
+        for(Entry entry : entries){
+            if(predicate.test(entry)) matches.add(entry);
+        }
+        return matches;
+    }
+
+    /**
+     * @return every trace in the catalog, in file name order
+     */
+
+    public synchronized List<Entry> getEntries(){
+        return Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    public File getDirectory(){
+        return directory;
+    }
+
+    /**
+     * @return the catalog file, null if the catalog is kept in memory only
+     */
+
+    public File getFile(){
+        return file;
+    }
+
+    private static boolean isTrace(String name){
+        return name.startsWith("L_") && (name.endsWith(".txt") ||
+                name.endsWith("." + TraceConverter.EXTENSION));
+    }
+
+    /**
+     * @description reads one trace and summarizes it
+     * @param trace text or binary trace
+     * @return summary of the trace
+     * @throws IOException if the trace cannot be read or parsed
+     */
+
+    public static Entry index(File trace) throws IOException{
+        TraceParameters parameters = TraceParameters.fromFileName(trace.getName());
+        Summary summary = new Summary();
+        if(trace.getName().endsWith(".txt")){
+            if(parameters == null){
+                throw new IOException("No simulation parameters in file name " +
+                        trace.getName());
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(trace), StandardCharsets.UTF_8))) {
+                TextTraceReader.replay(reader, summary);
+            }
+        }
+        else{
+            try (BinaryTraceDecoder decoder = BinaryTraceDecoder.open(trace)) {
+                if(parameters == null) parameters = decoder.getParameters();
+                decoder.replay(summary);
+            }
+        }
+        return new Entry(trace.getName(), trace.length(), trace.lastModified(),
+                parameters, summary.outcome, summary.messages,
+                Math.max(summary.nodes, summary.getPopulation()), summary.exact);
+    }
+
+    private void load() throws IOException{
+        entries.clear();
+        if(file == null || !file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION){
+                //unknown catalog, rebuilt by update()
+                return;
+            }
+            int count = in.readInt();
+            for(int i = 0; i < count; i++){
+                String name = in.readUTF();
+                long bytes = in.readLong();
+                long modified = in.readLong();
+                TraceParameters parameters = new TraceParameters(in.readInt(),
+                        in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readInt(), in.readInt(), in.readDouble());
+                int[] outcome = new int[4], messages = new int[4];
+                for(int j = 0; j < 4; j++) outcome[j] = in.readInt();
+                for(int j = 0; j < 4; j++) messages[j] = in.readInt();
+                int nodes = in.readInt();
+                boolean exact = in.readBoolean();
+                entries.add(new Entry(name, bytes, modified, parameters, outcome,
+                        messages, nodes, exact));
+            }
+        }
+    }
+
+    /**
+     * @description writes the catalog to a temporary file which replaces the
+     * old catalog, so a reader never sees half a catalog
+     */
+
+    private void save() throws IOException{
+        if(file == null) return;
+        File temporary = File.createTempFile(file.getName(), ".part",
+                file.getAbsoluteFile().getParentFile());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for(Entry entry : entries){
+                TraceParameters parameters = entry.parameters;
+                out.writeUTF(entry.name);
+                out.writeLong(entry.bytes);
+                out.writeLong(entry.modified);
+                out.writeInt(parameters.getLength());
+                out.writeInt(parameters.getWidth());
+                out.writeInt(parameters.getPopulation());
+                out.writeInt(parameters.getMaxBuffer());
+                out.writeInt(parameters.getTransmitTime());
+                out.writeInt(parameters.getSimulation());
+                out.writeInt(parameters.getEnvironment());
+                out.writeDouble(parameters.getBeta());
+                for(int generation : entry.outcome) out.writeInt(generation);
+                for(int count : entry.messages) out.writeInt(count);
+                out.writeInt(entry.nodes);
+                out.writeBoolean(entry.exact);
+            }
+        } catch (IOException ex) {
+            temporary.delete();
+            throw ex;
+        }
+        Files.move(temporary.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param arguments key=value conditions, see the class description
+     * @return condition that is true when every argument matches
+     */
+
+    static Predicate<Entry> parseQuery(String[] arguments){
+        Predicate<Entry> query = (entry) -> true;
+        for(String argument : arguments){
+            int split = argument.indexOf('=');
+            if(split < 1){
+                throw new IllegalArgumentException("Expected key=value: " + argument);
+            }
+            String key = argument.substring(0, split);
+            String value = argument.substring(split + 1);
+            query = query.and(condition(key, value));
+        }
+        return query;
+    }
+
+    private static Predicate<Entry> condition(String key, String value){
+        int messageType = Arrays.asList(MESSAGE_TYPES).indexOf(key);
+        if(messageType >= 0){
+            if(value.equals("ok")) return (entry) -> entry.succeeded(messageType);
+            if(value.equals("fail")) return (entry) -> !entry.succeeded(messageType);
+            int generation = Integer.parseInt(value);
+            return (entry) -> entry.getOutcome(messageType) == generation;
+        }
+        if(key.equals("B")){
+            double beta = Double.parseDouble(value);
+            return (entry) -> entry.parameters.getBeta() == beta;
+        }
+        int expected = Integer.parseInt(value);
+        switch(key){
+            case "L": return (entry) -> entry.parameters.getLength() == expected;
+            case "W": return (entry) -> entry.parameters.getWidth() == expected;
+            case "P": return (entry) -> entry.parameters.getPopulation() == expected;
+            case "MB": return (entry) -> entry.parameters.getMaxBuffer() == expected;
+            case "TT": return (entry) -> entry.parameters.getTransmitTime() == expected;
+            case "SIMNUM": return (entry) -> entry.parameters.getSimulation() == expected;
+            case "ENV": return (entry) -> entry.parameters.getEnvironment() == expected;
+            default: throw new IllegalArgumentException("Unknown key " + key);
+        }
+    }
+
+    public static void main(String[] args){
+        int first = args.length > 1 && args[0].equals("-catalog") ? 2 : 0;
+        if(args.length <= first){
+            System.out.println("Usage: TraceCatalog [-catalog file] directory "
+                    + "[key=value...]");
+            return;
+        }
+        File directory = new File(args[first]);
+        TraceCatalog catalog = first == 0 ? new TraceCatalog(directory) :
+                new TraceCatalog(directory, new File(args[1]));
+        try {
+            int read = catalog.update();
+            Predicate<Entry> query = parseQuery(
+                    Arrays.copyOfRange(args, first + 1, args.length));
+            long time = System.nanoTime();
+            List<Entry> matches = catalog.query(query);
+            time = System.nanoTime() - time;
+            matches.forEach((entry) -> {
+                System.out.println(entry);
+            });
+            System.out.println(matches.size() + " of " +
+                    catalog.getEntries().size() + " traces (" + read +
+                    " indexed, query " + time / 1000 + " us)");
+        } catch (IOException | IllegalArgumentException ex) {
+            Logger.getLogger(TraceCatalog.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * @description summary of one trace
+     */
+
+    public static final class Entry {
+        private final String name;
+        private final long bytes, modified;
+        private final TraceParameters parameters;
+        private final int[] outcome, messages;
+        private final int nodes;
+        private final boolean exact;
+
+        Entry(String name, long bytes, long modified, TraceParameters parameters,
+                int[] outcome, int[] messages, int nodes, boolean exact){
+            this.name = name;
+            this.bytes = bytes;
+            this.modified = modified;
+            this.parameters = parameters;
+            this.outcome = outcome;
+            this.messages = messages;
+            this.nodes = nodes;
+            this.exact = exact;
+        }
+
+        public String getName(){
+            return name;
+        }
+
+        public TraceParameters getParameters(){
+            return parameters;
+        }
+
+        /**
+         * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
+         * @return generation the message reached the reciever in, -1 if it
+         * did not
+         */
+
+        public int getOutcome(int messageType){
+            return outcome[messageType];
+        }
+
+        public boolean succeeded(int messageType){
+            return outcome[messageType] >= 0;
+        }
+
+        /**
+         * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
+         * @return number of message transfers of the type in the trace
+         */
+
+        public int getMessages(int messageType){
+            return messages[messageType];
+        }
+
+        public int getNodes(){
+            return nodes;
+        }
+
+        /**
+         * @param outcome exact outcome, from the manifest
+         * @return this summary with the outcome
+         */
+
+        Entry withOutcome(int[] outcome){
+            return new Entry(name, bytes, modified, parameters, outcome.clone(),
+                    messages, nodes, true);
+        }
+
+        /**
+         * @return true if the outcome was recorded by the simulation, false
+         * if it was inferred from the messages. An inferred success only
+         * means a message was sent to the reciever: the transfer may have
+         * failed the range decay check or the simulation may have ended
+         * before the reciever processed it.
+         */
+
+        public boolean isExact(){
+            return exact;
+        }
+
+        @Override
+        public String toString(){
+            return name + " outcome=" + Arrays.toString(outcome) +
+                    " messages=" + Arrays.toString(messages) + " nodes=" + nodes +
+                    (exact ? "" : " (inferred)");
+        }
+    }
+
+    /**
+     * @description follows the generations of a trace and counts its
+     * messages. The reciever is the node whose start location matches the
+     * reciever location in the header.
+     */
+
+    private static final class Summary extends TraceState {
+        final int[] outcome = {-1, -1, -1, -1};
+        final int[] messages = new int[4];
+        int nodes, recieverX, recieverY, reciever = -1;
+        boolean exact;
+
+        @Override
+        public void header(int senderX, int senderY, int recieverX,
+                int recieverY) {
+            this.recieverX = recieverX;
+            this.recieverY = recieverY;
+        }
+
+        @Override
+        public void start(int id, int x, int y, int direction, int buffer) {
+            super.start(id, x, y, direction, buffer);
+            ++nodes;
+            if(reciever < 0 && x == recieverX && y == recieverY) reciever = id;
+        }
+
+        private void reached(int target, int messageType){
+            if(!exact && target == reciever && outcome[messageType] < 0){
+                outcome[messageType] = getGeneration(messageType, target);
+            }
+        }
+
+        @Override
+        public void message(int sender, int target, int messageType, int x,
+                int y) {
+            super.message(sender, target, messageType, x, y);
+            ++messages[messageType];
+            reached(target, messageType);
+        }
+
+        @Override
+        public void infectMessage(int sender, int target, double k, double k2,
+                double alpha) {
+            super.infectMessage(sender, target, k, k2, alpha);
+            ++messages[3];
+            reached(target, 3);
+        }
+
+        @Override
+        public void finish(int flood, int gossip80, int gossip60, int infect) {
+            super.finish(flood, gossip80, gossip60, infect);
+            outcome[0] = flood;
+            outcome[1] = gossip80;
+            outcome[2] = gossip60;
+            outcome[3] = infect;
+            exact = true;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @description converts text reconstruction traces into binary traces.
+ * Usage: TraceConverter [-z] file-or-directory... where -z deflates the
+ * blocks. Every L_*.txt trace is written next to the original with the
+ * .trace extension.
+ * @author Brian Spain
+ */
+
+public class TraceConverter {
+
+    public static final String EXTENSION = "trace";
+
+    private TraceConverter(){
+    }
+
+    /**
+     * @description converts one text trace. The simulation parameters are
+     * taken from the file name.
+     * @param text text trace
+     * @param binary where the binary trace is written
+     * @param compress deflate the blocks
+     * @throws IOException if the text trace cannot be read or parsed, or the
+     * binary trace cannot be written
+     */
+
+    public static void convert(File text, File binary, boolean compress)
+            throws IOException{
+        TraceParameters parameters = TraceParameters.fromFileName(text.getName());
+        if(parameters == null){
+            throw new IOException("No simulation parameters in file name " +
+                    text.getName());
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(text), StandardCharsets.UTF_8));
+                BinaryTraceEncoder encoder = new BinaryTraceEncoder(
+                        new BufferedOutputStream(new FileOutputStream(binary)),
+                        parameters, compress)) {
+            TextTraceReader.replay(reader, encoder);
+        }
+    }
+
+    /**
+     * @param text text trace
+     * @return the binary trace file name for text
+     */
+
+    public static File binaryFileFor(File text){
+        String name = text.getName();
+        if(name.endsWith(".txt")) name = name.substring(0, name.length() - 4);
+        return new File(text.getParentFile(), name + "." + EXTENSION);
+    }
+
+    public static void main(String[] args){
+        boolean compress = false;
+        long textBytes = 0, binaryBytes = 0;
+        int converted = 0;
+        for(String arg : args){
+            if(arg.equals("-z")){
+                compress = true;
+                continue;
+            }
+            File file = new File(arg);
+            File[] files = file.isDirectory() ? file.listFiles((dir, name) ->
+                    name.startsWith("L_") && name.endsWith(".txt")) :
+                    new File[]{file};
+            if(files == null) continue;
+            for(File text : files){
+                File binary = binaryFileFor(text);
+                try {
+                    convert(text, binary, compress);
+                    textBytes += text.length();
+                    binaryBytes += binary.length();
+                    ++converted;
+                } catch (IOException ex) {
+                    Logger.getLogger(TraceConverter.class.getName()).log(
+                            Level.SEVERE, "Could not convert " + text, ex);
+                }
+            }
+        }
+        System.out.println("Converted " + converted + " traces: " + textBytes +
+                " bytes -> " + binaryBytes + " bytes");
+    }
+}
@@ -0,0 +1,65 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @description the file formats a trace can be written in.
+ * @author Brian Spain
+ */
+
+public enum TraceFormat {
+    
+    /** text reconstruction format, see TextTraceWriter */
+    TEXT("txt"),
+    /** binary format, see BinaryTraceEncoder */
+    BINARY(TraceConverter.EXTENSION),
+    /** binary format with deflated blocks */
+    BINARY_DEFLATE(TraceConverter.EXTENSION);
+    
+    private final String extension;
+    
+    private TraceFormat(String extension){
+        this.extension = extension;
+    }
+    
+    public String getExtension(){
+        return extension;
+    }
+    
+    /**
+     * @return byte offset of the first record in a file of this format
+     */
+    
+    public int getDataOffset(){
+        return this == TEXT ? 
+                TextTraceWriter.KEY.getBytes(StandardCharsets.UTF_8).length :
+                BinaryTraceEncoder.HEADER_BYTES;
+    }
+    
+    /**
+     * @param out where the trace is written, closed with the returned output
+     * @param parameters simulation parameters of the trace
+     * @return output writing this format to out
+     * @throws IOException if the start of the file cannot be written
+     */
+    
+    public TraceOutput open(OutputStream out, TraceParameters parameters) 
+            throws IOException{
+        switch(this){
+            case TEXT:
+                BufferedWriter writer = new BufferedWriter(
+                        new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                TextTraceWriter.writeKey(writer);
+                return new TextTraceWriter(writer);
+            case BINARY:
+                return new BinaryTraceEncoder(out, parameters, false);
+            default:
+                return new BinaryTraceEncoder(out, parameters, true);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @description append-only, tab separated list of the traces written to a
+ * directory (manifest.tsv). Every line describes one finished shard: its
+ * file name, simulation parameters, seed, the generation each message type
+ * succeeded in (-1 if it failed), its size and the byte offset of its first
+ * record, so traces can be selected without opening them.
+ * @author Brian Spain
+ */
+
+public class TraceManifest {
+
+    public static final String FILE_NAME = "manifest.tsv";
+
+    static final String COLUMNS = "shard\tround\tenvironment\tlength\twidth\t"
+            + "population\tmaxBuffer\ttransmitTime\tbeta\tseed\tflood\t"
+            + "gossip80\tgossip60\tinfect\tbytes\tdataOffset";
+
+    private final File file;
+
+    /**
+     * @param directory directory holding the shards and the manifest
+     */
+
+    public TraceManifest(File directory){
+        this.file = new File(directory, FILE_NAME);
+    }
+
+    public File getFile(){
+        return file;
+    }
+
+    /**
+     * @description adds one shard to the end of the manifest, writing the
+     * column names first if the manifest is new. Lines are written whole, so
+     * several writers can share a manifest.
+     * @param shard file name of the shard, relative to the directory
+     * @param parameters simulation parameters of the shard
+     * @param seed seed the simulation was generated from
+     * @param outcome generation of success for flood, gossip80, gossip60 and
+     * infect, -1 for failure
+     * @param bytes size of the shard
+     * @param dataOffset byte offset of the first record in the shard
+     * @throws IOException if the manifest cannot be written
+     */
+
+    public synchronized void append(String shard, TraceParameters parameters,
+            long seed, int[] outcome, long bytes, int dataOffset)
+            throws IOException{
+        StringBuilder line = new StringBuilder(128);
+        if(!file.exists()) line.append(COLUMNS).append('\n');
+        line.append(shard).append('\t')
+                .append(parameters.getSimulation()).append('\t')
+                .append(parameters.getEnvironment()).append('\t')
+                .append(parameters.getLength()).append('\t')
+                .append(parameters.getWidth()).append('\t')
+                .append(parameters.getPopulation()).append('\t')
+                .append(parameters.getMaxBuffer()).append('\t')
+                .append(parameters.getTransmitTime()).append('\t')
+                .append(parameters.getBeta()).append('\t')
+                .append(seed);
+        for(int generation : outcome){
+            line.append('\t').append(generation);
+        }
+        line.append('\t').append(bytes).append('\t').append(dataOffset)
+                .append('\n');
+        try (Writer writer = new OutputStreamWriter(
+                new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            writer.write(line.toString());
+        }
+    }
+
+    /**
+     * @return every shard listed in the manifest, in the order they were
+     * written. Empty if there is no manifest yet.
+     * @throws IOException if the manifest cannot be read or a line is corrupt
+     */
+
+    public synchronized List<Entry> read() throws IOException{
+        List<Entry> entries = new ArrayList<>();
+        if(!file.exists()) return entries;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            String line;
+            while((line = reader.readLine()) != null){
+                if(line.isEmpty() || line.equals(COLUMNS)) continue;
+                entries.add(parse(line));
+            }
+        }
+        return entries;
+    }
+
+    private static Entry parse(String line) throws IOException{
+        String[] columns = line.split("\t");
+        if(columns.length != 16){
+            throw new IOException("Corrupt manifest line: " + line);
+        }
+        try {
+            TraceParameters parameters = new TraceParameters(
+                    Integer.parseInt(columns[3]), Integer.parseInt(columns[4]),
+                    Integer.parseInt(columns[5]), Integer.parseInt(columns[6]),
+                    Integer.parseInt(columns[7]), Integer.parseInt(columns[1]),
+                    Integer.parseInt(columns[2]), Double.parseDouble(columns[8]));
+            int[] outcome = new int[4];
+            for(int i = 0; i < 4; i++){
+                outcome[i] = Integer.parseInt(columns[10 + i]);
+            }
+            return new Entry(columns[0], parameters, Long.parseLong(columns[9]),
+                    outcome, Long.parseLong(columns[14]),
+                    Integer.parseInt(columns[15]));
+        } catch (NumberFormatException ex) {
+            throw new IOException("Corrupt manifest line: " + line, ex);
+        }
+    }
+
+    /**
+     * @description one line of the manifest
+     */
+
+    public static final class Entry {
+        private final String shard;
+        private final TraceParameters parameters;
+        private final long seed, bytes;
+        private final int[] outcome;
+        private final int dataOffset;
+
+        Entry(String shard, TraceParameters parameters, long seed,
+                int[] outcome, long bytes, int dataOffset){
+            this.shard = shard;
+            this.parameters = parameters;
+            this.seed = seed;
+            this.outcome = outcome;
+            this.bytes = bytes;
+            this.dataOffset = dataOffset;
+        }
+
+        public String getShard(){
+            return shard;
+        }
+
+        public TraceParameters getParameters(){
+            return parameters;
+        }
+
+        public long getSeed(){
+            return seed;
+        }
+
+        /**
+         * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
+         * @return generation the message succeeded in, -1 if it failed
+         */
+
+        public int getOutcome(int messageType){
+            return outcome[messageType];
+        }
+
+        public long getBytes(){
+            return bytes;
+        }
+
+        public int getDataOffset(){
+            return dataOffset;
+        }
+    }
+}
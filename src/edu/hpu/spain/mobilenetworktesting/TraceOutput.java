@@ -0,0 +1,13 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.Closeable;
+
+/**
+ * @description a SimulationEventSink that writes a trace to a stream and must
+ * be closed once the simulation is over.
+ * @author Brian Spain
+ */
+
+public interface TraceOutput extends SimulationEventSink, Closeable {
+}
@@ -0,0 +1,126 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @description the simulation parameters a reconstruction trace was recorded
+ * with. These are the values encoded in the trace file names
+ * (L_*_W_*_P_*_MB_*_TT_*_SIMNUM_*[_ENV_*]_B_*) and in the header of binary
+ * traces.
+ * @author Brian Spain
+ */
+
+public class TraceParameters {
+
+    private static final Pattern FILE_NAME = Pattern.compile(
+            "L_(\\d+)_W_(\\d+)_P_(\\d+)_MB_(\\d+)_TT_(\\d+)_SIMNUM_(\\d+)(?:_ENV_(\\d+))?_B_([0-9.]+?)\\.\\w+$");
+
+    private final int length, width, population, maxBuffer, transmitTime,
+            simulation, environment;
+    private final double beta;
+
+    /**
+     * @param length max y of the domain
+     * @param width max x of the domain
+     * @param population number of Nodes in the simulation
+     * @param maxBuffer maximum buffer value for any node
+     * @param transmitTime total time to transmit the message
+     * @param simulation iteration of the simulation
+     * @param beta beta value used for the simulation
+     */
+
+    public TraceParameters(int length, int width, int population, int maxBuffer,
+            int transmitTime, int simulation, double beta){
+        this(length, width, population, maxBuffer, transmitTime, simulation, 
+                -1, beta);
+    }
+
+    /**
+     * @param length max y of the domain
+     * @param width max x of the domain
+     * @param population number of Nodes in the simulation
+     * @param maxBuffer maximum buffer value for any node
+     * @param transmitTime total time to transmit the message
+     * @param simulation iteration of the simulation
+     * @param environment index of the environment in the batch, -1 if unknown
+     * @param beta beta value used for the simulation
+     */
+
+    public TraceParameters(int length, int width, int population, int maxBuffer,
+            int transmitTime, int simulation, int environment, double beta){
+        this.environment = environment;
+        this.length = length;
+        this.width = width;
+        this.population = population;
+        this.maxBuffer = maxBuffer;
+        this.transmitTime = transmitTime;
+        this.simulation = simulation;
+        this.beta = beta;
+    }
+
+    /**
+     * @param fileName name of a trace file, directories are ignored
+     * @return the parameters in the name, or null if the name does not follow
+     * the trace naming scheme
+     */
+
+    public static TraceParameters fromFileName(String fileName){
+        Matcher matcher = FILE_NAME.matcher(fileName);
+        if(!matcher.find()) return null;
+        return new TraceParameters(Integer.parseInt(matcher.group(1)),
+                Integer.parseInt(matcher.group(2)),
+                Integer.parseInt(matcher.group(3)),
+                Integer.parseInt(matcher.group(4)),
+                Integer.parseInt(matcher.group(5)),
+                Integer.parseInt(matcher.group(6)),
+                matcher.group(7) == null ? -1 : Integer.parseInt(matcher.group(7)),
+                Double.parseDouble(matcher.group(8)));
+    }
+
+    /**
+     * @param extension file extension, without the dot
+     * @return file name following the trace naming scheme, the environment
+     * is only part of the name if it is known
+     */
+
+    public String toFileName(String extension){
+        return "L_" + length + "_W_" + width + "_P_" + population +
+                "_MB_" + maxBuffer + "_TT_" + transmitTime + "_SIMNUM_" +
+                simulation + (environment >= 0 ? "_ENV_" + environment : "") +
+                "_B_" + beta + "." + extension;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getPopulation() {
+        return population;
+    }
+
+    public int getMaxBuffer() {
+        return maxBuffer;
+    }
+
+    public int getTransmitTime() {
+        return transmitTime;
+    }
+
+    public int getSimulation() {
+        return simulation;
+    }
+
+    public int getEnvironment() {
+        return environment;
+    }
+
+    public double getBeta() {
+        return beta;
+    }
+}
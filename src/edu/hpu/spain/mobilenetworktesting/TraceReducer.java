@@ -0,0 +1,38 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+/**
+ * @description per-trace computation run by TraceAnalytics. Every worker
+ * thread creates its own accumulator, folds the traces it reads into it
+ * through the sinks returned by map(), and the accumulators of all workers
+ * are combined with merge() at the end. Accumulators are never shared
+ * between threads while traces are read.
+ * @param <A> type of the accumulator and of the result
+ * @author Brian Spain
+ */
+
+public interface TraceReducer<A> {
+
+    /**
+     * @return a new, empty accumulator
+     */
+
+    A create();
+
+    /**
+     * @param accumulator accumulator of the worker reading the trace
+     * @param parameters simulation parameters of the trace
+     * @return sink that receives every event of one trace and adds it to
+     * accumulator
+     */
+
+    SimulationEventSink map(A accumulator, TraceParameters parameters);
+
+    /**
+     * @param left accumulator, may be modified and returned
+     * @param right accumulator to add to left
+     * @return the combined accumulator
+     */
+
+    A merge(A left, A right);
+}
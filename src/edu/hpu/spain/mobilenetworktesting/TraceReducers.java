@@ -0,0 +1,249 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.Arrays;
+
+/**
+ * @description TraceReducers for TraceAnalytics.
+ * @author Brian Spain
+ */
+
+public class TraceReducers {
+
+    private TraceReducers(){
+    }
+
+    /**
+     * @description counts the message transfers per message type and
+     * generation of the message (generation of the sender + 1). Works on text
+     * and binary traces.
+     * @return reducer whose result is indexed [messageType][generation]
+     */
+
+    public static TraceReducer<long[][]> messagesPerGeneration(){
+        return new TraceReducer<long[][]>(){
+            @Override
+            public long[][] create() {
+                return new long[4][0];
+            }
+
+            @Override
+            public SimulationEventSink map(long[][] counts,
+                    TraceParameters parameters) {
+                return new TraceState(){
+                    @Override
+                    public void message(int sender, int target,
+                            int messageType, int x, int y) {
+                        count(counts, messageType,
+                                Math.max(0, getGeneration(messageType, sender)) + 1);
+                        super.message(sender, target, messageType, x, y);
+                    }
+
+                    @Override
+                    public void infectMessage(int sender, int target, double k,
+                            double k2, double alpha) {
+                        count(counts, 3, Math.max(0, getGeneration(3, sender)) + 1);
+                        super.infectMessage(sender, target, k, k2, alpha);
+                    }
+                };
+            }
+
+            @Override
+            public long[][] merge(long[][] left, long[][] right) {
+                return add(left, right);
+            }
+        };
+    }
+
+    /**
+     * @description histogram of redundant deliveries: for every message type,
+     * how many nodes received k more copies of the message after the first
+     * one. Works on text and binary traces.
+     * @return reducer whose result is indexed [messageType][k]
+     */
+
+    public static TraceReducer<long[][]> broadcastRedundancy(){
+        return new TraceReducer<long[][]>(){
+            @Override
+            public long[][] create() {
+                return new long[4][0];
+            }
+
+            @Override
+            public SimulationEventSink map(long[][] histogram,
+                    TraceParameters parameters) {
+                return new SimulationEventAdapter(){
+                    private final int[][] copies =
+                            new int[4][parameters.getPopulation()];
+
+                    /*
+                        The histogram is kept current per message: a node
+                        moves from bucket k-1 to bucket k with its k-th 
+                        redundant copy.
+                    */
+                    private void received(int target, int messageType){
+                        if(copies[messageType].length <= target){
+                            copies[messageType] = Arrays.copyOf(
+                                    copies[messageType],
+                                    Math.max(target + 1, copies[messageType].length * 2));
+                        }
+                        int k = copies[messageType][target]++;
+                        count(histogram, messageType, k);
+                        if(k > 0) histogram[messageType][k - 1]--;
+                    }
+
+                    @Override
+                    public void message(int sender, int target,
+                            int messageType, int x, int y) {
+                        received(target, messageType);
+                    }
+
+                    @Override
+                    public void infectMessage(int sender, int target, double k,
+                            double k2, double alpha) {
+                        received(target, 3);
+                    }
+                };
+            }
+
+            @Override
+            public long[][] merge(long[][] left, long[][] right) {
+                return add(left, right);
+            }
+        };
+    }
+
+    /**
+     * @description rebuilds the success, failure and graph data that
+     * Simulate hands to dataCompiler from the node results of binary traces,
+     * so the statistics of recorded simulations can be checked against the
+     * ones compiled while they ran.
+     *
+     * Cannot be used on legacy traces: text traces and binary traces older
+     * than version 4 have no node results and add nothing to the compiler,
+     * compare getNumSims() with the number of traces read. Their message
+     * events cannot stand in for the node results, a message is recorded
+     * before the range decay decides whether it arrives, and the neighbors
+     * and alpha of the first picture are not recorded at all.
+     * @return reducer whose result is an uncompiled dataCompiler, holding
+     * only the simulations of traces with node results
+     */
+
+    public static TraceReducer<dataCompiler> statistics(){
+        return new TraceReducer<dataCompiler>(){
+            @Override
+            public dataCompiler create() {
+                return new dataCompiler();
+            }
+
+            @Override
+            public SimulationEventSink map(dataCompiler compiler,
+                    TraceParameters parameters) {
+                return new NodeResults(compiler, parameters.getPopulation());
+            }
+
+            @Override
+            public dataCompiler merge(dataCompiler left, dataCompiler right) {
+                left.merge(right);
+                return left;
+            }
+        };
+    }
+
+    private static void count(long[][] counts, int messageType, int index){
+        if(counts[messageType].length <= index){
+            counts[messageType] = Arrays.copyOf(counts[messageType],
+                    Math.max(index + 1, counts[messageType].length * 2));
+        }
+        counts[messageType][index]++;
+    }
+
+    private static long[][] add(long[][] left, long[][] right){
+        for(int messageType = 0; messageType < left.length; messageType++){
+            if(left[messageType].length < right[messageType].length){
+                left[messageType] = Arrays.copyOf(left[messageType],
+                        right[messageType].length);
+            }
+            for(int i = 0; i < right[messageType].length; i++){
+                left[messageType][i] += right[messageType][i];
+            }
+        }
+        return left;
+    }
+
+    /**
+     * @description collects the node results of one trace and, at the finish
+     * event, adds their final state to a SimulationResult
+     */
+
+    private static final class NodeResults extends SimulationEventAdapter {
+        private final dataCompiler compiler;
+        private final SimulationResult result;
+        private int[][] generation, received, children, neighbors, uninfected;
+        private double[] alpha;
+        private int population;
+
+        NodeResults(dataCompiler compiler, int capacity){
+            this.compiler = compiler;
+            this.result = new SimulationResult();
+            allocate(Math.max(capacity, 16));
+        }
+
+        private void allocate(int capacity){
+            generation = grow(generation, capacity);
+            received = grow(received, capacity);
+            children = grow(children, capacity);
+            neighbors = grow(neighbors, capacity);
+            uninfected = grow(uninfected, capacity);
+            alpha = alpha == null ? new double[capacity] :
+                    Arrays.copyOf(alpha, capacity);
+        }
+
+        private static int[][] grow(int[][] values, int capacity){
+            if(values == null) return new int[4][capacity];
+            for(int i = 0; i < 4; i++){
+                values[i] = Arrays.copyOf(values[i], capacity);
+            }
+            return values;
+        }
+
+        @Override
+        public void nodeResult(int id, int messageType, int generation,
+                int received, int children, int neighbors,
+                int uninfectedNeighbors, double alpha) {
+            if(id >= this.alpha.length) allocate(Math.max(id + 1, this.alpha.length * 2));
+            population = Math.max(population, id + 1);
+            this.generation[messageType][id] = generation;
+            this.received[messageType][id] = received;
+            this.children[messageType][id] = children;
+            this.neighbors[messageType][id] = neighbors;
+            this.uninfected[messageType][id] = uninfectedNeighbors;
+            this.alpha[id] = alpha;
+        }
+
+        @Override
+        public void finish(int flood, int gossip80, int gossip60, int infect) {
+            if(population == 0) return;
+            int sender = 0;
+            while(sender < population && generation[0][sender] != 1) ++sender;
+            if(sender == population) return;
+            result.clear();
+            for(int node = 0; node < population; node++){
+                for(int messageType = 0; messageType < 4; messageType++){
+                    if(received[messageType][node] < 0) continue;
+                    result.addNode(messageType, generation[messageType][node],
+                            children[messageType][node],
+                            neighbors[messageType][node],
+                            uninfected[messageType][node],
+                            received[messageType][node] + 1, alpha[node]);
+                }
+            }
+            result.finish(0, flood, neighbors[0][sender]);
+            result.finish(1, gossip80, neighbors[1][sender]);
+            result.finish(2, gossip60, neighbors[2][sender]);
+            result.finish(3, infect, neighbors[3][sender]);
+            compiler.addData(result);
+            population = 0;
+        }
+    }
+}
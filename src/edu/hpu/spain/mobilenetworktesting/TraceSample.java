@@ -0,0 +1,107 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+/**
+ * @description one finished simulation a SamplingPolicy decides about. It
+ * keeps the parameters and seed that name the shard and reproduce the
+ * simulation, the outcome and the run time, which policies can rank samples
+ * by. No events are kept: the samples a policy retains are run again from
+ * their seed when the batch ends.
+ *
+ * Samples are reused: call begin() before each simulation and finish() once
+ * it is done.
+ * @author Brian Spain
+ */
+
+public class TraceSample {
+
+    private TraceParameters parameters;
+    private long seed, nanos;
+    private final int[] outcome;
+
+    public TraceSample(){
+        this.outcome = new int[4];
+    }
+
+    /**
+     * @description forgets the last simulation and starts a new one
+     * @param parameters parameters of the simulation
+     * @param seed seed the environment was generated from
+     */
+
+    public void begin(TraceParameters parameters, long seed){
+        this.parameters = parameters;
+        this.seed = seed;
+        this.nanos = 0;
+        for(int i = 0; i < outcome.length; i++){
+            outcome[i] = -1;
+        }
+    }
+
+    /**
+     * @description takes the outcome and run time from the result of the
+     * simulation
+     * @param result result the simulation filled in
+     */
+
+    public void finish(SimulationResult result){
+        finish(result.getProtocol(0).successGeneration,
+                result.getProtocol(1).successGeneration,
+                result.getProtocol(2).successGeneration,
+                result.getProtocol(3).successGeneration, result.getNanos());
+    }
+
+    /**
+     * @param flood generation flood reached the reciever in, -1 for failure
+     * @param gossip80 generation gossip80 reached the reciever in
+     * @param gossip60 generation gossip60 reached the reciever in
+     * @param infect generation infect reached the reciever in
+     * @param nanos run time of the simulation
+     */
+
+    public void finish(int flood, int gossip80, int gossip60, int infect,
+            long nanos){
+        this.nanos = nanos;
+        outcome[0] = flood;
+        outcome[1] = gossip80;
+        outcome[2] = gossip60;
+        outcome[3] = infect;
+    }
+
+    public TraceParameters getParameters(){
+        return parameters;
+    }
+
+    public long getSeed(){
+        return seed;
+    }
+
+    /**
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @return generation the message reached the reciever in, -1 for failure
+     */
+
+    public int getOutcome(int messageType){
+        return outcome[messageType];
+    }
+
+    /**
+     * @return one bit per message type that reached the reciever, flood is
+     * the lowest bit
+     */
+
+    public int getOutcomeBits(){
+        int bits = 0;
+        for(int i = 0; i < outcome.length; i++){
+            if(outcome[i] >= 0) bits |= 1 << i;
+        }
+        return bits;
+    }
+
+    /**
+     * @return run time of the simulation
+     */
+
+    public long getNanos(){
+        return nanos;
+    }
+}
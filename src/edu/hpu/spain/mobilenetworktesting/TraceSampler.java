@@ -0,0 +1,135 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @description applies a SamplingPolicy to the simulations of a batch.
+ * open() returns the shard of the output a simulation records into if the
+ * policy writes it, and null for candidates and skipped simulations, which
+ * run without a trace. finished() closes the shard or offers the candidate
+ * as a TraceSample built from its SimulationResult, samples the policy drops
+ * go back to the pool. close() runs the samples the policy retained again
+ * from their seed, recording them into the output, so the traces of a batch
+ * are bounded by its policy before the batch starts.
+ * @author Brian Spain
+ */
+
+public class TraceSampler implements Closeable {
+
+    /**
+     * @description runs a simulation of the batch again
+     */
+
+    public interface Rerun {
+
+        /**
+         * @param parameters parameters of the simulation, the round and
+         * environment index identify it
+         * @param sink receives the events of the simulation
+         */
+
+        void rerun(TraceParameters parameters, SimulationEventSink sink);
+    }
+
+    private final SamplingPolicy policy;
+    private final ShardedTraceOutput output;
+    private final Rerun rerun;
+    private final TraceSample[] candidates;
+    private final ArrayDeque<TraceSample> pool;
+    private int written;
+
+    /**
+     * @param policy decides which simulations are written
+     * @param output where the traces are written
+     * @param rounds number of rounds in the batch
+     * @param environments number of environments per round
+     * @param rerun runs the retained samples again
+     */
+
+    public TraceSampler(SamplingPolicy policy, ShardedTraceOutput output,
+            int rounds, int environments, Rerun rerun){
+        this.policy = policy;
+        this.output = output;
+        this.rerun = rerun;
+        this.candidates = new TraceSample[environments];
+        this.pool = new ArrayDeque<>();
+        policy.begin(rounds, environments);
+    }
+
+    /**
+     * @param parameters parameters of the simulation
+     * @param seed seed the environment was generated from
+     * @return sink to record the simulation into, null if it runs without a
+     * trace
+     */
+
+    public SimulationEventSink open(TraceParameters parameters, long seed){
+        switch(policy.select(parameters.getSimulation(),
+                parameters.getEnvironment(), seed)){
+            case WRITE:
+                ++written;
+                return output.open(parameters, seed);
+            case CANDIDATE:
+                TraceSample sample = pool.isEmpty() ? new TraceSample() :
+                        pool.pop();
+                sample.begin(parameters, seed);
+                candidates[parameters.getEnvironment()] = sample;
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @description to be called once the simulation has finished
+     * @param parameters parameters the simulation was opened with
+     * @param sink sink returned by open()
+     * @param result result the simulation filled in
+     */
+
+    public void finished(TraceParameters parameters, SimulationEventSink sink,
+            SimulationResult result){
+        if(sink instanceof StreamingTraceSink){
+            ((StreamingTraceSink)sink).close();
+        }
+        TraceSample sample = candidates[parameters.getEnvironment()];
+        if(sample == null) return;
+        candidates[parameters.getEnvironment()] = null;
+        sample.finish(result);
+        TraceSample dropped = policy.offer(sample);
+        if(dropped != null) pool.push(dropped);
+    }
+
+    /**
+     * @return number of traces handed to the output so far
+     */
+
+    public int getWritten(){
+        return written;
+    }
+
+    /**
+     * @description runs the retained samples again round by round, recording
+     * them into the output, which the caller still has to close
+     */
+
+    @Override
+    public void close(){
+        List<TraceSample> retained = new ArrayList<>(policy.retained());
+        retained.sort(Comparator.comparingInt(
+                (TraceSample sample) -> sample.getParameters().getSimulation())
+                .thenComparingInt(
+                        (sample) -> sample.getParameters().getEnvironment()));
+        for(TraceSample sample : retained){
+            StreamingTraceSink sink = output.open(sample.getParameters(),
+                    sample.getSeed());
+            rerun.rerun(sample.getParameters(), sink);
+            sink.close();
+            ++written;
+        }
+    }
+}
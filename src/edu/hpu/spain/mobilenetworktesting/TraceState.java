@@ -0,0 +1,202 @@
+
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.Arrays;
+
+/**
+ * @description SimulationEventSink that rebuilds the state of every node
+ * (position, direction and generation per message type) from the events of
+ * a trace. A keyframe sets the state exactly, the events after it move the
+ * nodes one step per tick the same way Node.updateNode() does.
+ *
+ * Between keyframes a message event counts as delivered, message transfers
+ * that failed the range decay check are not part of the trace. Use
+ * BinaryTraceDecoder.stateAt() to seek to a tick.
+ * @author Brian Spain
+ */
+
+public class TraceState implements SimulationEventSink {
+
+    private double[] x, y;
+    private int[] direction;
+    private final int[][] generation;
+    private int population;
+    private int tick;
+    private boolean moving;
+
+    public TraceState(){
+        x = new double[0];
+        y = new double[0];
+        direction = new int[0];
+        generation = new int[4][0];
+        tick = -1;
+    }
+
+    /**
+     * @return tick the state belongs to (the start of it), -1 before the
+     * first tick
+     */
+
+    public int getTick(){
+        return tick;
+    }
+
+    public int getPopulation(){
+        return population;
+    }
+
+    public double getx(int id){
+        return x[id];
+    }
+
+    public double gety(int id){
+        return y[id];
+    }
+
+    public int getDirection(int id){
+        return direction[id];
+    }
+
+    /**
+     * @param messageType 0-3 indicating flood, gossip80, gossip60, or infect
+     * @param id node id
+     * @return generation the node was infected with, -1 if not infected
+     */
+
+    public int getGeneration(int messageType, int id){
+        return generation[messageType][id];
+    }
+
+    /**
+     * @description makes room for nodes 0 to population-1, new nodes are not
+     * infected
+     */
+
+    private void ensure(int population){
+        if(population > this.population){
+            if(population > x.length){
+                int capacity = Math.max(population, x.length * 2);
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                direction = Arrays.copyOf(direction, capacity);
+                for(int i = 0; i < 4; i++){
+                    generation[i] = Arrays.copyOf(generation[i], capacity);
+                }
+            }
+            for(int[] generations : generation){
+                Arrays.fill(generations, this.population, population, -1);
+            }
+            this.population = population;
+        }
+    }
+
+    /**
+     * @description moves every node one step, see Node.updateNode()
+     */
+
+    private void advance(){
+        for(int i = 0; i < population; i++){
+            x[i] = x[i] + (Math.cos(Math.toRadians(direction[i])));
+            y[i] = y[i] + (Math.sin(Math.toRadians(direction[i])));
+        }
+    }
+
+    private void deliver(int sender, int target, int messageType){
+        ensure(Math.max(sender, target) + 1);
+        if(generation[messageType][target] == -1){
+            generation[messageType][target] =
+                    generation[messageType][sender] + 1;
+        }
+    }
+
+    @Override
+    public void header(int senderX, int senderY, int recieverX, int recieverY) {
+    }
+
+    @Override
+    public boolean keyframeDue(int t) {
+        return false;
+    }
+
+    @Override
+    public void keyframe(int t, int population) {
+        ensure(population);
+        this.population = population;
+        tick = t;
+        moving = false;
+    }
+
+    @Override
+    public void nodeState(int id, double x, double y, int direction,
+            int flood, int gossip80, int gossip60, int infect) {
+        ensure(id + 1);
+        this.x[id] = x;
+        this.y[id] = y;
+        this.direction[id] = direction;
+        generation[0][id] = flood;
+        generation[1][id] = gossip80;
+        generation[2][id] = gossip60;
+        generation[3][id] = infect;
+    }
+
+    @Override
+    public void tick(int t) {
+        if(moving) advance();
+        tick = t;
+        moving = true;
+    }
+
+    @Override
+    public void start(int id, int x, int y, int direction, int buffer) {
+        ensure(id + 1);
+        this.x[id] = x;
+        this.y[id] = y;
+        this.direction[id] = direction;
+    }
+
+    @Override
+    public void turn(int id, double x, double y, int direction) {
+        ensure(id + 1);
+        this.x[id] = x;
+        this.y[id] = y;
+        this.direction[id] = direction;
+    }
+
+    /**
+     * @description only the sender broadcasts without having been infected,
+     * it starts every message type with generation 1 (see Node.setSender())
+     */
+
+    @Override
+    public void broadcast(int id, int messageType, int x, int y) {
+        ensure(id + 1);
+        if(generation[messageType][id] == -1){
+            generation[messageType][id] = 1;
+        }
+    }
+
+    @Override
+    public void message(int sender, int target, int messageType, int x, int y) {
+        deliver(sender, target, messageType);
+    }
+
+    @Override
+    public void infectMessage(int sender, int target, double k, double k2,
+            double alpha) {
+        deliver(sender, target, 3);
+    }
+
+    @Override
+    public void nodeResult(int id, int messageType, int generation,
+            int received, int children, int neighbors, int uninfectedNeighbors,
+            double alpha) {
+        ensure(id + 1);
+        this.generation[messageType][id] = generation;
+    }
+
+    @Override
+    public void finish(int flood, int gossip80, int gossip60, int infect) {
+        if(moving) advance();
+        moving = false;
+    }
+}
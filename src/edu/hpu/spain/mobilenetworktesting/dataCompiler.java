@@ -6,7 +6,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 
@@ -22,17 +21,28 @@ public class dataCompiler{
     private final double[][] failureCases;
     private final double[][] successCases;
     private final double[][] graphData;
-    private final long[][] failureCasesSquares;
-    private final long[][] successCasesSquares;
-    private final long[][] graphDataSquares;
+    private final RunningStatistics[] failureStatistics;
+    private final RunningStatistics[] successStatistics;
+    private final RunningStatistics[] graphStatistics;
+    private final QuantileSketch[][] successQuantiles;
+    private final CoverageCurve[] coverage;
+    private final double[][] successRows, failureRows, graphRows;
     private final double[][] failureCasesSD;
     private final double[][] successCasesSD;
     private final double[][] graphDataSD;
-    private int graphCases;
     private int numSims;
     
     
     public dataCompiler(){
+        this(1);
+    }
+    
+    /**
+     * @param coverageInterval ticks per bucket of the coverage curves, 1 
+     * keeps every tick
+     */
+    
+    public dataCompiler(int coverageInterval){
         
         failureCases = new double[4][];
         failureCases[0] = new double[5]; //flood
@@ -48,19 +58,40 @@ public class dataCompiler{
         
         graphData = new double[4][5];
         
-        failureCasesSquares = new long[4][];
-        failureCasesSquares[0] = new long[5]; //flood
-        failureCasesSquares[1] = new long[5]; //gossip80
-        failureCasesSquares[2] = new long[5]; //gossip60
-        failureCasesSquares[3] = new long[7]; //infect model
+        failureStatistics = new RunningStatistics[4];
+        successStatistics = new RunningStatistics[4];
+        graphStatistics = new RunningStatistics[4];
+        for(int messageType = 0; messageType < 4; messageType++){
+            failureStatistics[messageType] = new RunningStatistics(
+                    failureCases[messageType].length);
+            successStatistics[messageType] = new RunningStatistics(
+                    successCases[messageType].length);
+            graphStatistics[messageType] = new RunningStatistics(
+                    graphData[messageType].length);
+        }
         
-        successCasesSquares = new long[4][];
-        successCasesSquares[0] = new long[10]; //flood
-        successCasesSquares[1] = new long[10]; //gossip80
-        successCasesSquares[2] = new long[10]; //gossip60
-        successCasesSquares[3] = new long[12]; //infect model
+        successRows = new double[4][];
+        failureRows = new double[4][];
+        graphRows = new double[4][];
+        for(int messageType = 0; messageType < 4; messageType++){
+            successRows[messageType] = new double[successCases[messageType].length];
+            failureRows[messageType] = new double[failureCases[messageType].length];
+            graphRows[messageType] = new double[graphData[messageType].length];
+        }
+        
+        successQuantiles = new QuantileSketch[4][];
+        for(int messageType = 0; messageType < 4; messageType++){
+            successQuantiles[messageType] = 
+                    new QuantileSketch[successCases[messageType].length];
+            for(int i = 0; i < successQuantiles[messageType].length; i++){
+                successQuantiles[messageType][i] = new QuantileSketch();
+            }
+        }
         
-        graphDataSquares = new long[4][5];
+        coverage = new CoverageCurve[4];
+        for(int messageType = 0; messageType < 4; messageType++){
+            coverage[messageType] = new CoverageCurve(coverageInterval);
+        }
         
         failureCasesSD = new double[4][];
         failureCasesSD[0] = new double[5]; //flood
@@ -79,77 +110,119 @@ public class dataCompiler{
     
     /**
      * @description adds the data points form a single simulation to the 
-     * data set
+     * data set. The success data of a message type only counts for the 
+     * simulations it succeeded in, the failure data only for the ones it 
+     * failed in and the graph data only for simulations every message type
+     * succeeded in.
      * @param simData  data points from a single simulation
      */
     
-    public void addData(ArrayList<double[][]> simData){
+    public void addData(SimulationResult simData){
+        long phase = PhaseMetrics.start();
         ++numSims;
         for(int messageType = 0; messageType < 4; messageType++){
-            for(int i = 0; i < simData.get(0)[messageType].length; i++){
-                successCases[messageType][i] += simData.get(0)[messageType][i];
-                successCasesSquares[messageType][i] += (long)Math.pow(simData.get(0)[messageType][i], 2);                  
-            } 
-        }
-
-        for(int messageType = 0; messageType < 4; messageType++){
-            for(int i = 0; i < simData.get(1)[messageType].length; i++){
-                failureCases[messageType][i] += simData.get(1)[messageType][i];
-                failureCasesSquares[messageType][i] += (long)Math.pow(simData.get(1)[messageType][i], 2);
+            coverage[messageType].add(simData.getProtocol(messageType), 
+                    simData.getTicks());
+            if(simData.getProtocol(messageType).succeeded){
+                double[] row = successRows[messageType];
+                simData.successRow(messageType, row);
+                successStatistics[messageType].add(row);
+                for(int i = 0; i < successQuantiles[messageType].length; i++){
+                    successQuantiles[messageType][i].add(row[i]);
+                }
+            }
+            else{
+                simData.failureRow(messageType, failureRows[messageType]);
+                failureStatistics[messageType].add(failureRows[messageType]);
             }
         }
-        if(simData.get(2)[0][0] > 0){
-            ++graphCases;
+        if(simData.isAllSuccess() && simData.getProtocol(0).parents > 0){
             for(int messageType = 0; messageType < 4; messageType++){
-                for(int i = 0; i < simData.get(2)[messageType].length; i++){
-                    graphData[messageType][i] += simData.get(2)[messageType][i];
-                    graphDataSquares[messageType][i] += (long)Math.pow(simData.get(2)[messageType][i], 2);                  
-                } 
+                simData.graphRow(messageType, graphRows[messageType]);
+                graphStatistics[messageType].add(graphRows[messageType]);
             }
         }
+        PhaseMetrics.stop(PhaseMetrics.Phase.COMPILE, phase);
     }
     
     /**
-     * @desctiption averages totals where necessary and calculates standard 
-     * deviation
+     * @description adds the data of other to this data set, as if every
+     * simulation of other had been added here.
+     * @param other data set to add, not modified
      */
     
-    public void compile(){
+    public void merge(dataCompiler other){
+        numSims += other.numSims;
         for(int messageType = 0; messageType < 4; messageType++){
-            for(int i = 1; i < successCases[messageType].length; i++){
-                successCases[messageType][i] /= successCases[messageType][0];
-                successCasesSquares[messageType][i] /= successCases[messageType][0];
-                if(!Double.isNaN(successCases[messageType][i])){
-                    BigDecimal b1 = new BigDecimal(""+successCasesSquares[messageType][i]);
-                    BigDecimal b2 = new BigDecimal(""+successCases[messageType][i]);             
-                    successCasesSD[messageType][i] = Math.sqrt(b1.subtract(b2.pow(2)).doubleValue());
-                }
+            successStatistics[messageType].merge(
+                    other.successStatistics[messageType]);
+            failureStatistics[messageType].merge(
+                    other.failureStatistics[messageType]);
+            graphStatistics[messageType].merge(
+                    other.graphStatistics[messageType]);
+            for(int i = 0; i < successQuantiles[messageType].length; i++){
+                successQuantiles[messageType][i].merge(
+                        other.successQuantiles[messageType][i]);
             }
+            coverage[messageType].merge(other.coverage[messageType]);
         }
-        
+    }
+    
+    public int getNumSims(){
+        return numSims;
+    }
+    
+    /**
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @param metric index into the success data
+     * @return distribution of the metric over the simulations messageType
+     * succeeded in
+     */
+    
+    public QuantileSketch getSuccessQuantiles(int messageType, int metric){
+        return successQuantiles[messageType][metric];
+    }
+    
+    /**
+     * @param messageType 0 flood, 1 gossip80, 2 gossip60, 3 infect
+     * @return infected nodes and broadcasts of messageType over time
+     */
+    
+    public CoverageCurve getCoverage(int messageType){
+        return coverage[messageType];
+    }
+    
+    /**
+     * @desctiption sets the averages and standard deviations printed by 
+     * print() from the data added so far. The first success and failure
+     * value is the number of simulations instead of an average. Does not
+     * change the data set, so it can be called at any time and more data
+     * added afterwards.
+     */
+    
+    public void compile(){
+        long phase = PhaseMetrics.start();
         for(int messageType = 0; messageType < 4; messageType++){
-            for(int i = 1; i < failureCases[messageType].length; i++){
-                failureCases[messageType][i] /= failureCases[messageType][0];
-                failureCasesSquares[messageType][i] /= failureCases[messageType][0];
-                if(!Double.isNaN(failureCases[messageType][i])){
-                    BigDecimal b1 = new BigDecimal(""+failureCasesSquares[messageType][i]);
-                    BigDecimal b2 = new BigDecimal(""+failureCases[messageType][i]);             
-                    failureCasesSD[messageType][i] = Math.sqrt(b1.subtract(b2.pow(2)).doubleValue());
-                }
-            }
+            compile(successStatistics[messageType], successCases[messageType],
+                    successCasesSD[messageType], 1);
+            compile(failureStatistics[messageType], failureCases[messageType],
+                    failureCasesSD[messageType], 1);
+            compile(graphStatistics[messageType], graphData[messageType],
+                    graphDataSD[messageType], 0);
+        }
+        PhaseMetrics.stop(PhaseMetrics.Phase.COMPILE, phase);
+    }
+    
+    private static void compile(RunningStatistics statistics, double[] means, 
+            double[] deviations, int first){
+        for(int i = 0; i < first; i++){
+            means[i] = statistics.getCount();
+        }
+        for(int i = first; i < means.length; i++){
+            means[i] = statistics.getMean(i);
+            deviations[i] = Double.isNaN(means[i]) ? 0 :
+                    statistics.getStandardDeviation(i);
         }
-        
-        for(int messageType = 0; messageType < 4; messageType++){
-            for(int i = 0; i < graphData[messageType].length; ++i){
-                graphData[messageType][i]/=graphCases;
-                graphDataSquares[messageType][i] /= graphCases;
-                if(!Double.isNaN(graphData[messageType][i])){
-                    BigDecimal b1 = new BigDecimal(""+graphDataSquares[messageType][i]);
-                    BigDecimal b2 = new BigDecimal(""+graphData[messageType][i]);             
-                    graphDataSD[messageType][i] = Math.sqrt(b1.subtract(b2.pow(2)).doubleValue());
-                }
-            }
-        }       
     }
     
     /**
@@ -218,9 +291,81 @@ public class dataCompiler{
             + " // " + truncator.format(graphData[messageType][4]) + " SD: " + truncator.format(graphDataSD[messageType][4]));
             System.out.println();
         }
+        System.out.println("Quantiles (p50 / p90 / p99 / max, within 1%, "
+                + "counts rounded) of generation of success // infected // "
+                + "total messages:");
+        for(int messageType = 0; messageType < 4; messageType++){
+            switch(messageType){
+                case 0: System.out.print("Flood---- ");
+                break;
+                case 1: System.out.print("Gossip80- ");
+                break;
+                case 2: System.out.print("Gossip60- ");
+                break;
+                case 3: System.out.print("Infection ");
+                break;
+            }
+            System.out.println(counts(truncator, successQuantiles[messageType][3])
+                    + " // " + counts(truncator, successQuantiles[messageType][2])
+                    + " // " + counts(truncator, successQuantiles[messageType][9]));
+        }
+        System.out.println("Alpha:    " + quantiles(truncator, successQuantiles[3][10])
+                + " // " + quantiles(truncator, successQuantiles[3][11]));
+        /*
+            At most 20 points of the coverage curves, mean (p90) infected
+            nodes at the end of the tick
+        */
+        int buckets = coverage[0].getBuckets();
+        int step = Math.max(1, (buckets + 19) / 20);
+        int interval = coverage[0].getInterval();
+        System.out.print("Coverage by tick:");
+        for(int bucket = 0; bucket < buckets; bucket += step){
+            System.out.print(" " + ((bucket + 1) * interval - 1));
+        }
+        System.out.println();
+        for(int messageType = 0; messageType < 4; messageType++){
+            switch(messageType){
+                case 0: System.out.print("Flood---- ");
+                break;
+                case 1: System.out.print("Gossip80- ");
+                break;
+                case 2: System.out.print("Gossip60- ");
+                break;
+                case 3: System.out.print("Infection ");
+                break;
+            }
+            for(int bucket = 0; bucket < buckets; bucket += step){
+                System.out.print(truncator.format(
+                        coverage[messageType].getMeanCoverage(bucket)) + " (" +
+                        truncator.format(Math.rint(coverage[messageType]
+                        .getCoverageQuantile(bucket, 0.9))) + ") ");
+            }
+            System.out.println();
+        }
         System.out.println();
     }
     
+    /**
+     * @description the sketch only knows a count to within its accuracy
+     * (7.03 for 7), so quantiles of counts are rounded to whole numbers
+     */
+    
+    private static String counts(DecimalFormat truncator, 
+            QuantileSketch sketch){
+        return truncator.format(Math.rint(sketch.getQuantile(0.5))) + " / " +
+                truncator.format(Math.rint(sketch.getQuantile(0.9))) + " / " +
+                truncator.format(Math.rint(sketch.getQuantile(0.99))) + " / " +
+                truncator.format(sketch.getMax());
+    }
+    
+    private static String quantiles(DecimalFormat truncator, 
+            QuantileSketch sketch){
+        return truncator.format(sketch.getQuantile(0.5)) + " / " +
+                truncator.format(sketch.getQuantile(0.9)) + " / " +
+                truncator.format(sketch.getQuantile(0.99)) + " / " +
+                truncator.format(sketch.getMax());
+    }
+    
     /**
      * @description takes in the parameters of the simulation to be used in the
      * name of the file. The file is output the same directory that the method is contained in.
@@ -239,19 +384,48 @@ public class dataCompiler{
     
     public static void rawDataToFile(int length, int width, int population, int maxBuffer, int transmitTime, 
             int iteration, double beta, ArrayList<String> recordData) throws IOException{
-        String fileName = "L_" + length + "_W_" + width + "_P_" + population + 
-                "_MB_" + maxBuffer + "_TT_" + transmitTime + "_SIMNUM_" + 
-                iteration + "_B_" + beta + ".txt";
-        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
-            new FileOutputStream(fileName), "utf-8"))) {
-            writer.write("Key: \n" +  "t: node change direction (node id, x, y, new direction)" + "\n"
-                                +   "s: node start location (node id, x, y, start direction, buffer)" + "\n"
-                                +   "m: message transfer (sender id, target id, messageType, sender x, sender y" + "\n"
-                                +   "b: broadcast (node id, message type, x, y)" + "\n");
+        try (Writer writer = openRawDataFile(length, width, population, 
+                maxBuffer, transmitTime, iteration, beta)) {
             for(int i = 0; i < recordData.size(); i++){
                 writer.write(recordData.get(i) + "\n");
             }
         }
     }
+    
+    /**
+     * @description same as rawDataToFile() for events kept by a 
+     * RecordingEventSink, the lines are only built here.
+     * @param recordData contains the events for reconstruction that will
+     * be printed to the file
+     * @throws IOException if the file is not created properly and cannot be
+     * found by the FileOutputStream
+     * @see #rawDataToFile(int, int, int, int, int, int, double, java.util.ArrayList) 
+     */
+    
+    public static void rawDataToFile(int length, int width, int population, int maxBuffer, int transmitTime, 
+            int iteration, double beta, RecordingEventSink recordData) throws IOException{
+        try (TextTraceWriter writer = new TextTraceWriter(openRawDataFile(
+                length, width, population, maxBuffer, transmitTime, iteration, 
+                beta))) {
+            recordData.replayTo(writer);
+        }
+    }
+    
+    /**
+     * @description creates the reconstruction file and writes the key
+     * @return writer positioned after the key
+     * @throws IOException if the file cannot be created
+     */
+    
+    private static Writer openRawDataFile(int length, int width, int population, 
+            int maxBuffer, int transmitTime, int iteration, double beta) 
+            throws IOException{
+        String fileName = new TraceParameters(length, width, population, 
+                maxBuffer, transmitTime, iteration, beta).toFileName("txt");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(fileName), "utf-8"));
+        TextTraceWriter.writeKey(writer);
+        return writer;
+    }
 }
 
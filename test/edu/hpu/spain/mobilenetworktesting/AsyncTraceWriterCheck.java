@@ -0,0 +1,76 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+/**
+ * @description checks that traces streamed through an AsyncTraceWriter
+ * decode to the events of the simulations. Several simulations record at
+ * once through small chunks and a short queue, so the chunks of the traces
+ * interleave and the simulations wait on the writer.
+ * @author Brian Spain
+ */
+
+public class AsyncTraceWriterCheck {
+
+    static void run() throws IOException, InterruptedException{
+        File directory = Files.createTempDirectory("checks").toFile();
+        RecordingEventSink[] recorded = new RecordingEventSink[4];
+        for(int i = 0; i < recorded.length; i++){
+            recorded[i] = Checks.simulate(50 + 25 * i, 50);
+        }
+        AsyncTraceWriter writer = new AsyncTraceWriter(64, 2);
+        ArrayList<Thread> simulations = new ArrayList<>();
+        File[] files = new File[recorded.length];
+        for(int i = 0; i < recorded.length; i++){
+            TraceFormat format = i % 2 == 0 ? TraceFormat.BINARY :
+                    TraceFormat.BINARY_DEFLATE;
+            files[i] = new File(directory, "trace" + i + "." + 
+                    format.getExtension());
+            StreamingTraceSink sink = writer.open(files[i], format,
+                    new TraceParameters(500, 500, 50 + 25 * i, 1, 0, i, 2.0));
+            RecordingEventSink events = recorded[i];
+            simulations.add(new Thread(() -> {
+                events.replayTo(sink);
+                sink.close();
+            }));
+        }
+        try {
+            writer.open(new File(directory, "large.mntb"), TraceFormat.BINARY,
+                    new TraceParameters(40000, 500, 10, 1, 0, 0, 2.0));
+            assert false : "A domain too large to encode was accepted";
+        } catch (IllegalArgumentException expected) {
+            //rejected on the caller's thread, nothing was queued
+        }
+        simulations.forEach(Thread::start);
+        for(Thread simulation : simulations){
+            simulation.join();
+        }
+        writer.close();
+        try {
+            for(int i = 0; i < recorded.length; i++){
+                RecordingEventSink expected = new BinaryTraceCheck.FixedPoint();
+                recorded[i].replayTo(expected);
+                RecordingEventSink decoded = new RecordingEventSink();
+                try (BinaryTraceDecoder decoder = 
+                        BinaryTraceDecoder.open(files[i])) {
+                    decoder.replay(decoded);
+                }
+                Checks.assertSameEvents(expected, decoded,
+                        "Events of " + files[i].getName());
+            }
+            assert directory.list().length == recorded.length :
+                    "Temporary files left: " + 
+                    String.join(", ", directory.list());
+        } finally {
+            for(File file : directory.listFiles()){
+                file.delete();
+            }
+            directory.delete();
+        }
+        System.out.println("AsyncTraceWriterCheck: " + recorded.length + 
+                " concurrent traces round trip");
+    }
+}
@@ -0,0 +1,80 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * @description checks that a simulation encoded by BinaryTraceEncoder
+ * decodes to the events it recorded, with positions of turns and node
+ * states rounded to the 1/1024 the format stores.
+ * @author Brian Spain
+ */
+
+public class BinaryTraceCheck {
+
+    /**
+     * @description RecordingEventSink that rounds positions the way the
+     * binary format stores them
+     */
+
+    static final class FixedPoint extends RecordingEventSink {
+        @Override
+        public void turn(int id, double x, double y, int direction) {
+            super.turn(id, round(x), round(y), direction);
+        }
+
+        @Override
+        public void nodeState(int id, double x, double y, int direction,
+                int flood, int gossip80, int gossip60, int infect) {
+            super.nodeState(id, round(x), round(y), direction, flood,
+                    gossip80, gossip60, infect);
+        }
+
+        private static double round(double position){
+            return Math.round(position * BinaryTraceEncoder.FIXED_POINT) /
+                    BinaryTraceEncoder.FIXED_POINT;
+        }
+    }
+
+    static void run() throws IOException{
+        RecordingEventSink recorded = Checks.simulate(100, 50);
+        RecordingEventSink expected = new FixedPoint();
+        recorded.replayTo(expected);
+        for(boolean compress : new boolean[]{false, true}){
+            for(int blockSize : new int[]{64, 1 << 16}){
+                RecordingEventSink decoded = new RecordingEventSink();
+                try (BinaryTraceDecoder decoder = new BinaryTraceDecoder(
+                        encode(recorded, compress, blockSize))) {
+                    decoder.replay(decoded);
+                    assert decoder.getKeyframeTicks().length == 
+                            (Checks.MAX_TIME + 49) / 50 : 
+                            "Keyframes in the index";
+                }
+                Checks.assertSameEvents(expected, decoded, "Decoded events (" +
+                        (compress ? "deflated" : "stored") + ", " + blockSize +
+                        " byte blocks)");
+            }
+        }
+        System.out.println("BinaryTraceCheck: " + recorded.size() +
+                " events round trip");
+    }
+
+    /**
+     * @param events events to encode
+     * @param compress deflate the blocks
+     * @param blockSize bytes per block
+     * @return the binary trace
+     */
+
+    static ByteBuffer encode(RecordingEventSink events, boolean compress,
+            int blockSize) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryTraceEncoder encoder = new BinaryTraceEncoder(bytes,
+                new TraceParameters(500, 500, 100, 1, 0, 0, 2.0), compress,
+                blockSize);
+        events.replayTo(encoder);
+        encoder.close();
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,93 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.File;
+
+/**
+ * @description runs the checks in test/. They use plain assert statements,
+ * so they have to run with assertions enabled (java -ea), which "ant test"
+ * does. A failed check throws an AssertionError and ends the run.
+ * @author Brian Spain
+ */
+
+public class Checks {
+
+    static final long SEED = 20170601L;
+    static final int MAX_TIME = 300;
+
+    public static void main(String[] args) throws Exception{
+        boolean enabled = false;
+        assert enabled = true;
+        if(!enabled){
+            throw new IllegalStateException("Run the checks with -ea");
+        }
+        BinaryTraceCheck.run();
+        AsyncTraceWriterCheck.run();
+        KeyframeSeekCheck.run();
+        FlightRecorderCheck.run();
+        SamplingPolicyCheck.run();
+        OutlierDetectorCheck.run();
+        RunningStatisticsCheck.run();
+        QuantileSketchCheck.run();
+        ResultStoreCheck.run();
+        StatisticsCheck.run();
+        System.out.println("All checks passed");
+    }
+
+    /**
+     * @param population nodes in the environment
+     * @param keyframeInterval ticks between keyframes, 0 for none
+     * @return every event of one simulation of a seeded 500 x 500
+     * environment
+     */
+
+    static RecordingEventSink simulate(int population, int keyframeInterval){
+        RecordingEventSink events = new RecordingEventSink();
+        events.setKeyframeInterval(keyframeInterval);
+        simulate(population, events);
+        return events;
+    }
+
+    /**
+     * @param population nodes in the environment
+     * @param sink receives every event of one simulation of a seeded 
+     * 500 x 500 environment
+     */
+
+    static void simulate(int population, SimulationEventSink sink){
+        SimulationEnvironment environment = new SimulationEnvironment(500, 500,
+                population, 0, 75, 75, 0, 1, 1, false, false);
+        environment.setSeed(SEED);
+        environment.GenerateEnvironments();
+        SimulationEngine.REFERENCE.simulation(environment.getSimEnvironment(0),
+                MAX_TIME, environment.getSender(0), environment.getReciever(0),
+                new dataCompiler(), sink, new SimulationResult()).run();
+    }
+
+    /**
+     * @param file file or directory to delete with everything inside
+     */
+
+    static void delete(File file){
+        File[] children = file.listFiles();
+        if(children != null){
+            for(File child : children){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * @param expected events that should have been seen
+     * @param actual events that were seen
+     * @param what what the events are, for the message
+     */
+
+    static void assertSameEvents(RecordingEventSink expected,
+            RecordingEventSink actual, String what){
+        int event = expected.firstDifference(actual);
+        assert event < 0 : what + " differ at event " + event + " of " + 
+                expected.size() + ": expected " + expected.describe(event) + 
+                ", got " + actual.describe(event);
+    }
+}
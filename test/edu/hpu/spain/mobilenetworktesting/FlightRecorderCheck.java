@@ -0,0 +1,70 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * @description checks that a FlightRecorder, which gets neither the start
+ * locations nor the node results, writes a recording whose closing keyframe
+ * holds the final state a full recording of the same simulation reaches.
+ * Positions may differ by the rounding of the stored positions.
+ * @author Brian Spain
+ */
+
+public class FlightRecorderCheck {
+
+    private static final double TOLERANCE = 1e-2;
+
+    static void run() throws IOException{
+        TraceState full = new TraceState();
+        Checks.simulate(100, 50).replayTo(full);
+        File directory = Files.createTempDirectory("checks").toFile();
+        try {
+            ShardedTraceOutput output = new ShardedTraceOutput(directory,
+                    TraceFormat.BINARY);
+            FlightRecorder recorder = new FlightRecorder(output,
+                    (outcome, nanos) -> true, 40);
+            TraceParameters parameters = new TraceParameters(500, 500, 100, 1,
+                    0, 0, 0, 2.0);
+            recorder.begin(parameters, Checks.SEED);
+            Checks.simulate(100, recorder);
+            output.close();
+            assert recorder.getDumps() == 1 : "The trigger fired once";
+            TraceState recorded = new TraceState();
+            try (BinaryTraceDecoder decoder = BinaryTraceDecoder.open(new File(
+                    directory, parameters.toFileName(
+                            TraceFormat.BINARY.getExtension())))) {
+                int[] keyframes = decoder.getKeyframeTicks();
+                assert keyframes[keyframes.length - 1] == Checks.MAX_TIME :
+                        "The recording ends with a keyframe at " + 
+                        Checks.MAX_TIME;
+                decoder.replay(recorded);
+            }
+            assert recorded.getPopulation() == full.getPopulation() :
+                    "Population";
+            for(int id = 0; id < full.getPopulation(); id++){
+                String node = "Node " + id;
+                assert Math.abs(recorded.getx(id) - full.getx(id)) < TOLERANCE
+                        && Math.abs(recorded.gety(id) - full.gety(id)) <
+                        TOLERANCE : node + ": recorded " + recorded.getx(id) +
+                        ", " + recorded.gety(id) + ", full " + full.getx(id) +
+                        ", " + full.gety(id);
+                assert recorded.getDirection(id) == full.getDirection(id) :
+                        node + " direction";
+                for(int messageType = 0; messageType < 4; messageType++){
+                    assert recorded.getGeneration(messageType, id) ==
+                            full.getGeneration(messageType, id) :
+                            node + " generation of message type " +
+                            messageType + ": recorded " +
+                            recorded.getGeneration(messageType, id) +
+                            ", full " + full.getGeneration(messageType, id);
+                }
+            }
+        } finally {
+            Checks.delete(directory);
+        }
+        System.out.println("FlightRecorderCheck: closing keyframe matches " +
+                "the final state of a full recording");
+    }
+}
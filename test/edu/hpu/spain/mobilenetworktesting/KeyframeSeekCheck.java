@@ -0,0 +1,132 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.IOException;
+
+/**
+ * @description checks that BinaryTraceDecoder.stateAt() seeking from the
+ * nearest keyframe gives the state a replay of the whole trace reaches,
+ * where the replay ignores every keyframe after the first and rebuilds the
+ * nodes from the events alone. Positions may differ by the rounding of the
+ * stored positions.
+ * @author Brian Spain
+ */
+
+public class KeyframeSeekCheck {
+
+    private static final double TOLERANCE = 1e-2;
+
+    /**
+     * @description TraceState that ignores keyframes after the first and
+     * stops at a tick
+     */
+
+    static final class Replay extends TraceState {
+        private final int until;
+        private boolean keyframed, done, ignoring;
+
+        Replay(int until){
+            this.until = until;
+        }
+
+        @Override
+        public void keyframe(int t, int population) {
+            ignoring = keyframed;
+            keyframed = true;
+            if(!ignoring && !done) super.keyframe(t, population);
+        }
+
+        @Override
+        public void nodeState(int id, double x, double y, int direction,
+                int flood, int gossip80, int gossip60, int infect) {
+            if(!ignoring && !done){
+                super.nodeState(id, x, y, direction, flood, gossip80,
+                        gossip60, infect);
+            }
+        }
+
+        @Override
+        public void tick(int t) {
+            ignoring = false;
+            if(done) return;
+            super.tick(t);
+            done = t >= until;
+        }
+
+        @Override
+        public void start(int id, int x, int y, int direction, int buffer) {
+            if(!done) super.start(id, x, y, direction, buffer);
+        }
+
+        @Override
+        public void turn(int id, double x, double y, int direction) {
+            if(!done) super.turn(id, x, y, direction);
+        }
+
+        @Override
+        public void broadcast(int id, int messageType, int x, int y) {
+            if(!done) super.broadcast(id, messageType, x, y);
+        }
+
+        @Override
+        public void message(int sender, int target, int messageType, int x,
+                int y) {
+            if(!done) super.message(sender, target, messageType, x, y);
+        }
+
+        @Override
+        public void infectMessage(int sender, int target, double k,
+                double k2, double alpha) {
+            if(!done) super.infectMessage(sender, target, k, k2, alpha);
+        }
+
+        @Override
+        public void nodeResult(int id, int messageType, int generation,
+                int received, int children, int neighbors,
+                int uninfectedNeighbors, double alpha) {
+        }
+
+        @Override
+        public void finish(int flood, int gossip80, int gossip60, int infect) {
+        }
+    }
+
+    static void run() throws IOException{
+        RecordingEventSink recorded = Checks.simulate(100, 50);
+        int checked = 0;
+        try (BinaryTraceDecoder decoder = new BinaryTraceDecoder(
+                BinaryTraceCheck.encode(recorded, true, 1 << 12))) {
+            for(int tick = 0; tick < Checks.MAX_TIME; tick += 7){
+                TraceState seeked = decoder.stateAt(tick);
+                Replay replayed = new Replay(tick);
+                decoder.replay(replayed);
+                assert seeked.getTick() == tick && replayed.getTick() == tick :
+                        "Tick " + tick + ": seeked to " + seeked.getTick() +
+                        ", replayed to " + replayed.getTick();
+                assert seeked.getPopulation() == replayed.getPopulation() :
+                        "Population at tick " + tick;
+                for(int id = 0; id < seeked.getPopulation(); id++){
+                    String node = "Node " + id + " at tick " + tick;
+                    assert Math.abs(seeked.getx(id) - replayed.getx(id)) <
+                            TOLERANCE && Math.abs(seeked.gety(id) - 
+                            replayed.gety(id)) < TOLERANCE : node + 
+                            ": seeked " + seeked.getx(id) + ", " + 
+                            seeked.gety(id) + ", replayed " + 
+                            replayed.getx(id) + ", " + replayed.gety(id);
+                    assert seeked.getDirection(id) == 
+                            replayed.getDirection(id) : node + " direction";
+                    for(int messageType = 0; messageType < 4; messageType++){
+                        assert seeked.getGeneration(messageType, id) ==
+                                replayed.getGeneration(messageType, id) :
+                                node + " generation of message type " + 
+                                messageType + ": seeked " + 
+                                seeked.getGeneration(messageType, id) + 
+                                ", replayed " + 
+                                replayed.getGeneration(messageType, id);
+                    }
+                }
+                ++checked;
+            }
+        }
+        System.out.println("KeyframeSeekCheck: " + checked + " ticks seeked");
+    }
+}
@@ -0,0 +1,46 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+/**
+ * @description checks that the OutlierDetector compares a simulation only
+ * with the simulations of its own environment: environments that are always
+ * slower, as larger popInc environments are, are not flagged, while a
+ * straggler of a small environment is, even though it is faster than the
+ * usual simulation of the large ones.
+ * @author Brian Spain
+ */
+
+public class OutlierDetectorCheck {
+
+    private static final int ROUNDS = 200, ENVIRONMENTS = 3;
+
+    static void run(){
+        OutlierDetector detector = new OutlierDetector(0.99, 50, 10);
+        for(int round = 0; round < ROUNDS; round++){
+            for(int environment = 0; environment < ENVIRONMENTS; environment++){
+                //1, 10 and 100 ms
+                long nanos = (long)(Math.pow(10, environment) * 1e6);
+                assert detector.offer(parameters(round, environment), round,
+                        nanos) == null : "Environment " + environment +
+                        " of round " + round + " flagged";
+            }
+        }
+        OutlierDetector.Outlier straggler = detector.offer(
+                parameters(ROUNDS, 0), ROUNDS, 5_000_000L);
+        assert straggler != null : "A 5 ms simulation of the 1 ms " +
+                "environment was not flagged";
+        assert straggler.getThresholdNanos() < 2_000_000L :
+                "Threshold of the 1 ms environment " + 
+                straggler.getThresholdNanos();
+        assert detector.getFlagged() == 1 : detector.getFlagged() + 
+                " outliers flagged";
+        assert detector.getLatencies().getCount() == 
+                ROUNDS * ENVIRONMENTS + 1 : "Merged latencies";
+        System.out.println("OutlierDetectorCheck: outliers are flagged " +
+                "within their environment");
+    }
+
+    private static TraceParameters parameters(int round, int environment){
+        return new TraceParameters(500, 500, 100 + 100 * environment, 1, 0,
+                round, environment, 2.0);
+    }
+}
@@ -0,0 +1,80 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @description checks that every quantile a QuantileSketch reports is
+ * within its relative accuracy of the exact quantile, for integer, log
+ * normal and exponential values, and that merged and serialized sketches
+ * report the same quantiles as the sketch of all values.
+ * @author Brian Spain
+ */
+
+public class QuantileSketchCheck {
+
+    private static final int VALUES = 20000;
+
+    static void run() throws IOException{
+        Random random = new Random(Checks.SEED);
+        double[][] distributions = new double[3][VALUES];
+        for(int n = 0; n < VALUES; n++){
+            distributions[0][n] = random.nextInt(1000);
+            distributions[1][n] = Math.exp(2 * random.nextGaussian());
+            distributions[2][n] = -Math.log(1 - random.nextDouble()) * 50;
+        }
+        int checked = 0;
+        for(double accuracy : new double[]{0.01, 0.05}){
+            for(double[] values : distributions){
+                QuantileSketch sketch = new QuantileSketch(accuracy,
+                        QuantileSketch.DEFAULT_SMALLEST,
+                        QuantileSketch.DEFAULT_LARGEST),
+                        first = new QuantileSketch(accuracy,
+                        QuantileSketch.DEFAULT_SMALLEST,
+                        QuantileSketch.DEFAULT_LARGEST),
+                        second = new QuantileSketch(accuracy,
+                        QuantileSketch.DEFAULT_SMALLEST,
+                        QuantileSketch.DEFAULT_LARGEST);
+                for(int n = 0; n < values.length; n++){
+                    sketch.add(values[n]);
+                    (n % 3 == 0 ? first : second).add(values[n]);
+                }
+                first.merge(second);
+                QuantileSketch copy = copy(sketch);
+                double[] sorted = values.clone();
+                Arrays.sort(sorted);
+                assert sketch.getMin() == sorted[0] && 
+                        sketch.getMax() == sorted[VALUES - 1] : 
+                        "Minimum and maximum are exact";
+                for(int q = 0; q <= 100; q++){
+                    double quantile = q / 100.0;
+                    double exact = sorted[(int)(quantile * (VALUES - 1))];
+                    double estimate = sketch.getQuantile(quantile);
+                    assert Math.abs(estimate - exact) <= 
+                            accuracy * exact * (1 + 1e-9) :
+                            "Quantile " + quantile + " at accuracy " + 
+                            accuracy + ": " + estimate + ", exact " + exact;
+                    assert first.getQuantile(quantile) == estimate : 
+                            "Merged sketch, quantile " + quantile;
+                    assert copy.getQuantile(quantile) == estimate : 
+                            "Serialized sketch, quantile " + quantile;
+                    ++checked;
+                }
+            }
+        }
+        System.out.println("QuantileSketchCheck: " + checked +
+                " quantiles within their accuracy");
+    }
+
+    private static QuantileSketch copy(QuantileSketch sketch) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        return QuantileSketch.readFrom(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
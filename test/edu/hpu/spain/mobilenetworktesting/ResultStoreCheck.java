@@ -0,0 +1,71 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @description checks that rows appended to a ResultStore read back from a
+ * reopened file, across several blocks and with message counts beyond the
+ * int range.
+ * @author Brian Spain
+ */
+
+public class ResultStoreCheck {
+
+    private static final int ROWS_PER_BLOCK = 7, ROWS = 30;
+
+    static void run() throws IOException{
+        File file = File.createTempFile("results", ".bin");
+        try {
+            SimulationResult result = new SimulationResult();
+            try (ResultStore store = new ResultStore(file, ROWS_PER_BLOCK)) {
+                for(int row = 0; row < ROWS; row++){
+                    for(int messageType = 0; messageType < 4; messageType++){
+                        SimulationResult.Protocol protocol = 
+                                result.getProtocol(messageType);
+                        protocol.infected = row + messageType;
+                        protocol.successGeneration = 
+                                row % 2 == 0 ? messageType + 1 : -1;
+                        protocol.messages = 3_000_000_000L * messageType + row;
+                    }
+                    store.append(row / 5, row % 5, Checks.SEED + row * 
+                            0x100000000L, 100 + row, result);
+                }
+                assert store.getRows() == ROWS : "Rows written";
+            }
+            ResultStore.Reader reader = new ResultStore.Reader(file);
+            assert reader.getRows() == ROWS : "Rows read " + reader.getRows();
+            int round = reader.getColumn("round"),
+                    environment = reader.getColumn("environment"),
+                    seed = reader.getColumn("seed"),
+                    population = reader.getColumn("population");
+            for(long row = 0; row < ROWS; row++){
+                String where = "Row " + row;
+                assert reader.get(round, row) == row / 5 : where + " round";
+                assert reader.get(environment, row) == row % 5 : 
+                        where + " environment";
+                assert reader.get(seed, row) == Checks.SEED + 
+                        row * 0x100000000L : where + " seed";
+                assert reader.get(population, row) == 100 + row : 
+                        where + " population";
+                for(int messageType = 0; messageType < 4; messageType++){
+                    assert reader.get(reader.getColumn("infected" + 
+                            messageType), row) == row + messageType :
+                            where + " infected" + messageType;
+                    assert reader.get(reader.getColumn("success" + 
+                            messageType), row) == 
+                            (row % 2 == 0 ? messageType + 1 : -1) :
+                            where + " success" + messageType;
+                    assert reader.get(reader.getColumn("messages" + 
+                            messageType), row) == 
+                            3_000_000_000L * messageType + row :
+                            where + " messages" + messageType;
+                }
+            }
+        } finally {
+            file.delete();
+        }
+        System.out.println("ResultStoreCheck: " + ROWS + " rows in blocks of " +
+                ROWS_PER_BLOCK + " round trip");
+    }
+}
@@ -0,0 +1,90 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.util.Random;
+
+/**
+ * @description checks that RunningStatistics merged from shards agree with
+ * the statistics of all observations added in order, and both with a two
+ * pass computation. One metric sits on a large offset, where the naive sum
+ * of squares loses its precision.
+ * @author Brian Spain
+ */
+
+public class RunningStatisticsCheck {
+
+    private static final int OBSERVATIONS = 10000, METRICS = 3;
+    private static final double TOLERANCE = 1e-6;
+
+    static void run(){
+        Random random = new Random(Checks.SEED);
+        double[][] observations = new double[OBSERVATIONS][];
+        for(int n = 0; n < OBSERVATIONS; n++){
+            observations[n] = new double[]{
+                random.nextInt(40),
+                1e9 + random.nextGaussian(),
+                Math.exp(3 * random.nextGaussian())
+            };
+        }
+        RunningStatistics sequential = new RunningStatistics(METRICS);
+        for(double[] observation : observations){
+            sequential.add(observation);
+        }
+        check(sequential, observations, "Sequential");
+        for(int shards : new int[]{1, 2, 7, 64}){
+            RunningStatistics[] parts = new RunningStatistics[shards + 1];
+            for(int s = 0; s < parts.length; s++){
+                parts[s] = new RunningStatistics(METRICS);
+            }
+            for(double[] observation : observations){
+                parts[random.nextInt(shards)].add(observation);
+            }
+            RunningStatistics merged = new RunningStatistics(METRICS);
+            for(RunningStatistics part : parts){
+                merged.merge(part);
+            }
+            check(merged, observations, "Merged from " + shards + " shards");
+            for(int metric = 0; metric < METRICS; metric++){
+                assert close(merged.getMean(metric), sequential.getMean(metric))
+                        && close(merged.getVariance(metric),
+                                sequential.getVariance(metric)) :
+                        "Merged from " + shards + " shards, metric " + metric +
+                        " differs from the sequential statistics";
+            }
+        }
+        System.out.println("RunningStatisticsCheck: merged statistics equal " +
+                "the sequential ones");
+    }
+
+    /**
+     * @description compares statistics with a two pass computation
+     */
+
+    private static void check(RunningStatistics statistics,
+            double[][] observations, String what){
+        assert statistics.getCount() == observations.length :
+                what + ": count " + statistics.getCount();
+        for(int metric = 0; metric < METRICS; metric++){
+            double sum = 0;
+            for(double[] observation : observations){
+                sum += observation[metric];
+            }
+            double mean = sum / observations.length, squares = 0;
+            for(double[] observation : observations){
+                squares += (observation[metric] - mean) * 
+                        (observation[metric] - mean);
+            }
+            double variance = squares / observations.length;
+            assert close(statistics.getMean(metric), mean) : what + 
+                    ", metric " + metric + ": mean " + 
+                    statistics.getMean(metric) + ", two pass " + mean;
+            assert close(statistics.getVariance(metric), variance) : what + 
+                    ", metric " + metric + ": variance " + 
+                    statistics.getVariance(metric) + ", two pass " + variance;
+        }
+    }
+
+    private static boolean close(double value, double expected){
+        return Math.abs(value - expected) <= 
+                TOLERANCE * Math.max(1, Math.abs(expected));
+    }
+}
@@ -0,0 +1,190 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @description checks the SamplingPolicies: how many traces the positional
+ * policies write, that the retaining policies hand every candidate back
+ * exactly once unless they keep it, that a reservoir keeps every
+ * simulation about equally often, and that the simulations a batch runs
+ * again for its retained samples reproduce the outcomes they had.
+ * @author Brian Spain
+ */
+
+public class SamplingPolicyCheck {
+
+    private static final int ROUNDS = 100, ENVIRONMENTS = 3;
+
+    static void run() throws IOException{
+        assert written(SamplingPolicies.every(10)) == 10 * ENVIRONMENTS :
+                "every(10) writes every environment of every 10th round";
+        assert written(SamplingPolicies.none()) == 0 : "none() writes nothing";
+        for(int budget : new int[]{1, 7, 299, 300, 1000}){
+            assert written(SamplingPolicies.evenly(budget)) ==
+                    Math.min(budget, ROUNDS * ENVIRONMENTS) :
+                    "evenly(" + budget + ")";
+        }
+        assert written(SamplingPolicies.uniform(0.5, 20)) == 20 :
+                "uniform() stops at its budget";
+        int uniform = written(SamplingPolicies.uniform(0.1, 1000));
+        assert uniform > 10 && uniform < 60 : 
+                "uniform(0.1) wrote " + uniform + " of 300";
+
+        offerAll(SamplingPolicies.reservoir(5, 1), 5);
+        offerAll(SamplingPolicies.stratified(2, 1), 2 * 8);
+        List<TraceSample> top = offerAll(SamplingPolicies.topK(3,
+                SamplingPolicies.generation(0)), 3);
+        Set<Integer> generations = new HashSet<>();
+        for(TraceSample sample : top){
+            generations.add(sample.getOutcome(0));
+        }
+        assert generations.equals(new HashSet<>(Arrays.asList(
+                ROUNDS * ENVIRONMENTS - 1, ROUNDS * ENVIRONMENTS - 2,
+                ROUNDS * ENVIRONMENTS - 3))) : 
+                "topK kept generations " + generations;
+
+        int trials = 2000, size = 5, simulations = 20;
+        int[] kept = new int[simulations];
+        for(int trial = 0; trial < trials; trial++){
+            SamplingPolicy reservoir = SamplingPolicies.reservoir(size, trial);
+            for(int i = 0; i < simulations; i++){
+                reservoir.offer(sample(i));
+            }
+            for(TraceSample sample : reservoir.retained()){
+                ++kept[(int)sample.getSeed()];
+            }
+        }
+        double expected = (double)trials * size / simulations;
+        for(int i = 0; i < simulations; i++){
+            assert Math.abs(kept[i] - expected) < 0.15 * expected :
+                    "Reservoir kept simulation " + i + " " + kept[i] + 
+                    " times, expected about " + expected;
+        }
+        rerun();
+        System.out.println("SamplingPolicyCheck: policies agree with their " +
+                "budgets, reservoir is uniform, retained samples rerun");
+    }
+
+    /**
+     * @description runs a seeded batch with a reservoir and compares the
+     * outcome of every trace it wrote at the end, listed in the manifest
+     * from the finish event of the rerun, with the outcome the simulation
+     * had in the batch, stored in a ResultStore
+     */
+
+    private static void rerun() throws IOException{
+        File directory = Files.createTempDirectory("checks").toFile();
+        File results = new File(directory, "results.bin");
+        int rounds = 4, environments = 3;
+        try {
+            SimulationBatch batch = new SimulationBatch(500, 500, 60, 20, 75,
+                    75, 1, 0, Checks.MAX_TIME, environments, rounds, false,
+                    null);
+            batch.environment.setSeed(Checks.SEED);
+            batch.setPrintResults(false);
+            batch.setTraceOutput(directory, TraceFormat.BINARY);
+            batch.setSamplingPolicy(SamplingPolicies.reservoir(3, 1));
+            batch.setResultStore(results);
+            batch.run();
+            File written = batch.getBatchDirectory();
+            assert written.getParentFile().equals(directory) :
+                    "Batch directory " + written;
+            List<TraceManifest.Entry> entries = 
+                    new TraceManifest(written).read();
+            assert entries.size() == 3 : entries.size() + " traces written";
+            ResultStore.Reader reader = new ResultStore.Reader(results);
+            for(TraceManifest.Entry entry : entries){
+                long row = (long)entry.getParameters().getSimulation() * 
+                        environments + entry.getParameters().getEnvironment();
+                for(int messageType = 0; messageType < 4; messageType++){
+                    assert entry.getOutcome(messageType) == reader.get(
+                            reader.getColumn("success" + messageType), row) :
+                            "Rerun of " + entry.getShard() + 
+                            " changed the outcome of message type " + 
+                            messageType;
+                }
+            }
+        } finally {
+            Checks.delete(directory);
+        }
+    }
+
+    /**
+     * @param policy a policy that writes while the batch runs
+     * @return simulations it selected for writing
+     */
+
+    private static int written(SamplingPolicy policy){
+        policy.begin(ROUNDS, ENVIRONMENTS);
+        int written = 0;
+        for(int round = 0; round < ROUNDS; round++){
+            for(int environment = 0; environment < ENVIRONMENTS; environment++){
+                long seed = SimulationEnvironment.mixSeed(Checks.SEED,
+                        round * ENVIRONMENTS + environment);
+                SamplingPolicy.Selection selection = policy.select(round,
+                        environment, seed);
+                assert selection != SamplingPolicy.Selection.CANDIDATE :
+                        "Positional policies have no candidates";
+                if(selection == SamplingPolicy.Selection.WRITE) ++written;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * @description offers a candidate per simulation, every candidate must
+     * come back once, either dropped or retained
+     * @param policy a policy that retains samples
+     * @param most most samples the policy may retain
+     * @return the retained samples
+     */
+
+    private static List<TraceSample> offerAll(SamplingPolicy policy, int most){
+        policy.begin(ROUNDS, ENVIRONMENTS);
+        Set<TraceSample> returned = Collections.newSetFromMap(
+                new IdentityHashMap<>());
+        int offered = 0;
+        for(int round = 0; round < ROUNDS; round++){
+            for(int environment = 0; environment < ENVIRONMENTS; environment++){
+                if(policy.select(round, environment, offered) !=
+                        SamplingPolicy.Selection.CANDIDATE) continue;
+                TraceSample dropped = policy.offer(sample(offered++));
+                if(dropped != null){
+                    assert returned.add(dropped) : "Dropped a sample twice";
+                }
+            }
+        }
+        List<TraceSample> retained = policy.retained();
+        assert retained.size() <= most : "Retained " + retained.size() + 
+                " samples, at most " + most + " allowed";
+        for(TraceSample sample : retained){
+            assert returned.add(sample) : "Retained a dropped sample";
+        }
+        assert returned.size() == offered : offered + " offered, " + 
+                returned.size() + " handed back";
+        return retained;
+    }
+
+    /**
+     * @param index index of the simulation, used as its seed
+     * @return a finished sample, flood reached the reciever in generation
+     * index, gossip80 in every second and infect in every third simulation
+     */
+
+    private static TraceSample sample(int index){
+        TraceSample sample = new TraceSample();
+        sample.begin(new TraceParameters(500, 500, 100, 1, 0, index, 2.0),
+                index);
+        int other = index % 2 == 0 ? 1 : -1;
+        sample.finish(index, other, -1, index % 3 == 0 ? 2 : -1, 0);
+        return sample;
+    }
+}
@@ -0,0 +1,117 @@
+package edu.hpu.spain.mobilenetworktesting;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * @description checks the counters the nodes keep while a simulation runs
+ * against the full scan of the nodes they replaced. Seeded simulations are
+ * recorded into version 4 binary traces, TraceReducers.statistics() rebuilds
+ * their statistics from the node results with SimulationResult.addNode(),
+ * and the rebuilt data set must print the same statistics as the one the
+ * simulations were compiled into while they ran. The coverage curves are
+ * left out, traces do not carry them.
+ * @author Brian Spain
+ */
+
+public class StatisticsCheck {
+
+    private static final int ROUNDS = 8, ENVIRONMENTS = 3;
+
+    static void run() throws IOException{
+        File directory = Files.createTempDirectory("checks").toFile();
+        try {
+            SimulationEnvironment environment = new SimulationEnvironment(500,
+                    500, 80, 40, 75, 75, 0, 1, ENVIRONMENTS, false, false);
+            environment.setSeed(Checks.SEED);
+            dataCompiler live = new dataCompiler();
+            for(int round = 0; round < ROUNDS; round++){
+                environment.GenerateEnvironments();
+                for(int i = 0; i < ENVIRONMENTS; i++){
+                    RecordingEventSink events = new RecordingEventSink();
+                    SimulationEngine.REFERENCE.simulation(
+                            environment.getSimEnvironment(i), Checks.MAX_TIME,
+                            environment.getSender(i), 
+                            environment.getReciever(i), live, events,
+                            new SimulationResult()).run();
+                    TraceParameters parameters = new TraceParameters(500, 500,
+                            environment.getPopulation(i), 1, 0, round, i, 2.0);
+                    File trace = new File(directory, parameters.toFileName(
+                            TraceConverter.EXTENSION));
+                    try (BinaryTraceEncoder encoder = new BinaryTraceEncoder(
+                            new BufferedOutputStream(new FileOutputStream(trace)),
+                            parameters, true)) {
+                        events.replayTo(encoder);
+                    }
+                }
+            }
+            List<File> traces = TraceAnalytics.traces(directory);
+            assert traces.size() == ROUNDS * ENVIRONMENTS : 
+                    traces.size() + " traces";
+            dataCompiler rebuilt = new TraceAnalytics(1).run(traces,
+                    TraceReducers.statistics());
+            assert rebuilt.getNumSims() == live.getNumSims() : 
+                    rebuilt.getNumSims() + " simulations rebuilt of " +
+                    live.getNumSims();
+            for(int messageType = 0; messageType < 4; messageType++){
+                int metrics = messageType == 3 ? 
+                        SimulationResult.INFECT_SUCCESS_COLUMNS :
+                        SimulationResult.SUCCESS_COLUMNS;
+                for(int metric = 0; metric < metrics; metric++){
+                    QuantileSketch expected = live.getSuccessQuantiles(
+                            messageType, metric);
+                    QuantileSketch actual = rebuilt.getSuccessQuantiles(
+                            messageType, metric);
+                    String what = "Success metric " + metric + 
+                            " of message type " + messageType;
+                    assert actual.getCount() == expected.getCount() :
+                            what + " count";
+                    assert Double.compare(actual.getMin(), expected.getMin())
+                            == 0 && Double.compare(actual.getMax(), 
+                            expected.getMax()) == 0 : what + ": rebuilt " +
+                            actual.getMin() + " to " + actual.getMax() + 
+                            ", live " + expected.getMin() + " to " +
+                            expected.getMax();
+                }
+            }
+            String expected = statistics(live), actual = statistics(rebuilt);
+            assert actual.equals(expected) : "Rebuilt statistics\n" + actual +
+                    "\ndiffer from the live ones\n" + expected;
+            assert live.getSuccessQuantiles(0, 0).getCount() > 0 &&
+                    live.getSuccessQuantiles(3, 0).getCount() < 
+                    live.getNumSims() : "The simulations should include " +
+                    "successes and failures";
+        } finally {
+            Checks.delete(directory);
+        }
+        System.out.println("StatisticsCheck: statistics of " + 
+                ROUNDS * ENVIRONMENTS + " simulations rebuilt from traces");
+    }
+
+    /**
+     * @return what compiler prints, up to the coverage curves
+     */
+
+    private static String statistics(dataCompiler compiler){
+        compiler.compile();
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        try (PrintStream capture = new PrintStream(printed, true, "UTF-8")) {
+            System.setOut(capture);
+            compiler.print();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            System.setOut(out);
+        }
+        String text = new String(printed.toByteArray(), StandardCharsets.UTF_8);
+        return text.substring(0, text.indexOf("Coverage by tick:"));
+    }
+}